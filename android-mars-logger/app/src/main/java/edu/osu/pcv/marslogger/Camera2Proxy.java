@@ -12,10 +12,12 @@ import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureFailure;
 import android.hardware.camera2.CaptureRequest;
 import android.hardware.camera2.CaptureResult;
 import android.hardware.camera2.TotalCaptureResult;
 import android.hardware.camera2.params.MeteringRectangle;
+import android.hardware.camera2.params.OisSample;
 import android.hardware.camera2.params.StreamConfigurationMap;
 import android.media.ImageReader;
 import android.media.MediaRecorder;
@@ -26,19 +28,32 @@ import android.support.annotation.NonNull;
 import android.util.Log;
 import android.util.Range;
 import android.util.Size;
-import android.util.SizeF;
 import android.view.OrientationEventListener;
 import android.view.Surface;
 import android.view.SurfaceHolder;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 
-public class Camera2Proxy {
+import edu.osu.pcv.marslogger.camera.BinaryOisSampleSink;
+import edu.osu.pcv.marslogger.camera.CaptureStatsPublisher;
+import edu.osu.pcv.marslogger.camera.CsvFrameMetadataSink;
+import edu.osu.pcv.marslogger.camera.EncodedFrameListener;
+import edu.osu.pcv.marslogger.camera.FrameCadenceMonitor;
+import edu.osu.pcv.marslogger.camera.FrameCadenceSink;
+import edu.osu.pcv.marslogger.camera.FrameJoinSink;
+import edu.osu.pcv.marslogger.camera.FrameJoiner;
+import edu.osu.pcv.marslogger.camera.FrameMetadata;
+import edu.osu.pcv.marslogger.camera.FrameMetadataQueue;
+import edu.osu.pcv.marslogger.camera.FrameMetadataSchema;
+import edu.osu.pcv.marslogger.camera.FrameMetadataSink;
+import edu.osu.pcv.marslogger.camera.FrameMetadataWriter;
+import edu.osu.pcv.marslogger.camera.IntrinsicsTrackSink;
+import edu.osu.pcv.marslogger.camera.TeeFrameMetadataSink;
+import edu.osu.pcv.marslogger.util.RollingMedian;
+
+public class Camera2Proxy implements EncodedFrameListener {
 
     private static final String TAG = "Camera2Proxy";
 
@@ -67,12 +82,31 @@ public class Camera2Proxy {
     private int mDeviceOrientation = 0;
     private int mZoom = 1;
 
-    private BufferedWriter mFrameMetadataWriter = null;
-
-    // https://stackoverflow.com/questions/3786825/volatile-boolean-vs-atomicboolean
-    private volatile boolean mRecordingMetadata = false;
+    // frames that may wait for the metadata writer, about 2 s at 30 fps
+    private static final int FRAME_METADATA_QUEUE_CAPACITY = 64;
+    // frames of either stream that wait for their counterpart in the frame join
+    private static final int FRAME_JOIN_WINDOW = 2 * FRAME_METADATA_QUEUE_CAPACITY;
+    // frames between onCaptureStarted and onCaptureCompleted, above the pipeline depth
+    private static final int PENDING_FRAME_CAPACITY = 8;
+    // whether the capture result csv repeats fx and fy on every line, for consumers that
+    // do not read _intrinsics.csv yet
+    private static final boolean CAPTURE_RESULT_FOCAL_LENGTH_PIXEL = false;
+
+    // non-null while recording, read once per frame by the capture callback
+    private volatile FrameMetadataWriter mFrameMetadataWriter = null;
+    // the record of frames that are shown but not written, used by the capture callback
+    private final FrameMetadata mPreviewFrame = new FrameMetadata();
+    // the extra capture result keys to record, compiled for the configured camera
+    private volatile CaptureResultSchema mCaptureResultSchema = null;
+    // whether the configured camera reports OIS samples, which are then recorded
+    private volatile boolean mOisDataAvailable = false;
+    // joins the recorded capture results with the encoded frames, non-null while recording
+    private volatile FrameJoinSink mFrameJoin = null;
+    // flags dropped frames and cadence jitter, non-null while recording
+    private volatile FrameCadenceSink mFrameCadence = null;
 
     private FocalLengthHelper mFocalLengthHelper = new FocalLengthHelper();
+    private final CaptureStatsPublisher mCaptureStats;
 
     private CameraDevice.StateCallback mStateCallback = new CameraDevice.StateCallback() {
         @Override
@@ -95,40 +129,117 @@ public class Camera2Proxy {
         }
     };
 
+    /**
+     * @param captureResultFile path of the csv file; the changes of the camera intrinsics
+     *                          are written to _intrinsics.csv next to it, the capture
+     *                          results joined with the encoded frames to _frames.csv, the
+     *                          frame drops and cadence jitter to _frame_events.csv, and
+     *                          OIS samples, if the camera reports them, to _ois.bin.
+     */
     public void startRecordingCaptureResult(String captureResultFile) {
+        String basePath = captureResultFile;
+        int extension = captureResultFile.lastIndexOf('.');
+        if (extension > captureResultFile.lastIndexOf(File.separatorChar)) {
+            basePath = captureResultFile.substring(0, extension);
+        }
         try {
-            mFrameMetadataWriter = new BufferedWriter(
-                    new FileWriter(captureResultFile, false));
-            String header = "Timestamp[nanosec],fx[px],fy[px],Frame No.," +
-                    "Exposure time[nanosec],Sensor frame duration[nanosec]," +
-                    "Frame readout time[nanosec]," +
-                    "ISO,Focal length,Focus distance,AF mode";
-
-            mFrameMetadataWriter.write(header + "\n");
-            mRecordingMetadata = true;
+            CaptureResultSchema keys = mCaptureResultSchema;
+            FrameMetadataSchema schema =
+                    keys == null ? FrameMetadataSchema.EMPTY : keys.getSchema();
+            FrameMetadataSink sink = new CsvFrameMetadataSink(captureResultFile, schema,
+                    CAPTURE_RESULT_FOCAL_LENGTH_PIXEL);
+            FrameJoinSink join;
+            FrameCadenceSink cadence;
+            try {
+                sink = new TeeFrameMetadataSink(sink,
+                        new IntrinsicsTrackSink(basePath + "_intrinsics.csv"));
+                join = new FrameJoinSink(basePath + "_frames.csv", FRAME_JOIN_WINDOW,
+                        FRAME_METADATA_QUEUE_CAPACITY);
+                sink = new TeeFrameMetadataSink(sink, join);
+                cadence = new FrameCadenceSink(basePath + "_frame_events.csv",
+                        FrameCadenceMonitor.DEFAULT_JITTER_TOLERANCE,
+                        FRAME_METADATA_QUEUE_CAPACITY);
+                sink = new TeeFrameMetadataSink(sink, cadence);
+                if (mOisDataAvailable) {
+                    sink = new TeeFrameMetadataSink(sink,
+                            new BinaryOisSampleSink(basePath + "_ois.bin"));
+                }
+            } catch (IOException err) {
+                sink.close();
+                throw err;
+            }
+            FrameMetadataWriter writer = new FrameMetadataWriter(
+                    sink, FRAME_METADATA_QUEUE_CAPACITY, schema, PENDING_FRAME_CAPACITY);
+            writer.start();
+            mFrameJoin = join;
+            mFrameCadence = cadence;
+            mFrameMetadataWriter = writer;
         } catch (IOException err) {
             System.err.println("IOException in opening frameMetadataWriter at "
                     + captureResultFile + ":" + err.getMessage());
         }
     }
 
+    /**
+     * Hands the presentation time of an encoded frame to the frame join and the cadence
+     * monitor of the recording.  (Call from the encoder thread.)
+     */
+    @Override
+    public void onFrameEncoded(long presentationTimeUs) {
+        FrameJoinSink join = mFrameJoin;
+        if (join != null) {
+            join.onFrameEncoded(presentationTimeUs);
+        }
+        FrameCadenceSink cadence = mFrameCadence;
+        if (cadence != null) {
+            cadence.onFrameEncoded(presentationTimeUs);
+        }
+    }
+
     public void stopRecordingCaptureResult() {
-        if (mRecordingMetadata) {
-            mRecordingMetadata = false;
-            try {
-                mFrameMetadataWriter.flush();
-                mFrameMetadataWriter.close();
-            } catch (IOException err) {
-                System.err.println("IOException in closing frameMetadataWriter: " +
-                        err.getMessage());
-            }
+        FrameMetadataWriter writer = mFrameMetadataWriter;
+        if (writer != null) {
+            FrameJoinSink join = mFrameJoin;
+            FrameCadenceSink cadence = mFrameCadence;
+            mFrameJoin = null;
+            mFrameCadence = null;
             mFrameMetadataWriter = null;
+            writer.stop();
+            if (join != null) {
+                FrameJoiner joiner = join.getJoiner();
+                Log.d(TAG, "Joined " + joiner.getMatchedCount() + " frames, " +
+                        joiner.getUnmatchedMetadataCount() + " capture results and " +
+                        joiner.getUnmatchedEncodedCount() + " encoded frames unmatched");
+            }
+            if (cadence != null) {
+                logCadence(cadence.getCaptureMonitor());
+                logCadence(cadence.getEncodedMonitor());
+            }
+            FrameMetadataQueue queue = writer.getQueue();
+            Log.d(TAG, "Frame metadata queue high-water mark " + queue.getHighWaterMark() +
+                    " of " + queue.capacity() + ", dropped " + writer.getDropCount() +
+                    " frames and " + writer.getStartDropCount() + " frame starts, " +
+                    writer.getWriteErrorCount() + " write errors");
+        }
+    }
+
+    private static void logCadence(FrameCadenceMonitor monitor) {
+        long[] histogram = new long[FrameCadenceMonitor.HISTOGRAM_SIZE];
+        for (int i = 0; i < histogram.length; ++i) {
+            histogram[i] = monitor.getHistogramCount(i);
         }
+        Log.d(TAG, "Cadence of " + monitor.getFrameCount() + " " + monitor.getName() +
+                " frames: " + monitor.getDropCount() + " drops of " +
+                monitor.getMissingFrameCount() + " frames, " + monitor.getDuplicateCount() +
+                " duplicates, " + monitor.getJitterCount() + " jitter, max jitter " +
+                monitor.getMaxJitter() + " ns, intervals in periods " +
+                Arrays.toString(histogram));
     }
 
     @TargetApi(Build.VERSION_CODES.M)
     public Camera2Proxy(Activity activity) {
         mActivity = activity;
+        mCaptureStats = ((CameraCaptureActivity) activity).getCaptureStats();
         mCameraManager = (CameraManager) mActivity.getSystemService(Context.CAMERA_SERVICE);
         mOrientationEventListener = new OrientationEventListener(mActivity) {
             @Override
@@ -151,6 +262,8 @@ public class Camera2Proxy {
                     map.getOutputSizes(MediaRecorder.class), width, height, width);
 
             mFocalLengthHelper.setLensParams(mCameraCharacteristics);
+            mCaptureResultSchema = CaptureResultSchema.compile(mCameraCharacteristics);
+            mOisDataAvailable = isOisDataAvailable(mCameraCharacteristics);
             mFocalLengthHelper.setmImageSize(mVideoSize);
 
             mPreviewSize = CameraUtils.chooseOptimalSize(map.getOutputSizes(SurfaceTexture.class),
@@ -218,36 +331,48 @@ public class Camera2Proxy {
     }
 
 
-    private class NumExpoIso {
-        public Long mNumber;
-        public Long mExposureNanos;
-        public Integer mIso;
-
-        public NumExpoIso(Long number, Long expoNanos, Integer iso) {
-            mNumber = number;
-            mExposureNanos = expoNanos;
-            mIso = iso;
-        }
-    }
-
+    // medians of the exposure time and of the exposure time times ISO, i.e., the
+    // brightness, of the last frames, updated on the camera thread
     private final int kMaxExpoSamples = 10;
-    private ArrayList<NumExpoIso> expoStats = new ArrayList<>(kMaxExpoSamples);
+    private final RollingMedian mExpoMedian = new RollingMedian(kMaxExpoSamples);
+    private final RollingMedian mExpoIsoMedian = new RollingMedian(kMaxExpoSamples);
+
+    // both medians of the same frames, published to the thread that locks the exposure
+    // as CaptureStatsPublisher publishes its fields: the sequence number is odd while the
+    // camera thread writes them, and 0 until the first frame
+    private volatile long mExpoSequence = 0;
+    private volatile long mPublishedExpo;
+    private volatile long mPublishedExpoIso;
+
+    private void addExpoSample(long exposureNanos, int iso) {
+        mExpoMedian.add(exposureNanos);
+        mExpoIsoMedian.add(exposureNanos * iso);
+        long sequence = mExpoSequence;
+        mExpoSequence = sequence + 1;
+        mPublishedExpo = mExpoMedian.getMedian();
+        mPublishedExpoIso = mExpoIsoMedian.getMedian();
+        mExpoSequence = sequence + 2;
+    }
 
     private void setExposureAndIso() {
         Long exposureNanos = CameraCaptureActivity.mDesiredExposureTime;
         Long desiredIsoL = 30L * 30000000L / exposureNanos;
         Integer desiredIso = desiredIsoL.intValue();
-        if (!expoStats.isEmpty()) {
-            int index = expoStats.size() / 2;
-            Long actualExpo = expoStats.get(index).mExposureNanos;
-            Integer actualIso = expoStats.get(index).mIso;
-            if (actualExpo <= exposureNanos) {
+        long sequence;
+        long actualExpo;
+        long actualExpoIso;
+        do {
+            sequence = mExpoSequence;
+            actualExpo = mPublishedExpo;
+            actualExpoIso = mPublishedExpoIso;
+        } while ((sequence & 1) != 0 || sequence != mExpoSequence);
+        if (sequence != 0) {
+            // keep the median brightness at the desired or shorter exposure time
+            if (actualExpo > 0 && actualExpo <= exposureNanos) {
                 exposureNanos = actualExpo;
-                desiredIso = actualIso;
-            } else {
-                desiredIsoL = actualIso * actualExpo / exposureNanos;
-                desiredIso = desiredIsoL.intValue();
             }
+            desiredIsoL = actualExpoIso / exposureNanos;
+            desiredIso = desiredIsoL.intValue();
         }
 
         // fix exposure
@@ -295,6 +420,10 @@ public class Camera2Proxy {
                     CaptureRequest.LENS_FOCUS_DISTANCE, minFocusDistance);
             Log.d(TAG, "Focus distance set to its min value:" + minFocusDistance);
 
+            if (mOisDataAvailable) {
+                enableOisData(mPreviewRequestBuilder);
+            }
+
             if (mPreviewSurfaceTexture != null && mPreviewSurface == null) { // use texture view
                 mPreviewSurfaceTexture.setDefaultBufferSize(mPreviewSize.getWidth(),
                         mPreviewSize.getHeight());
@@ -322,65 +451,147 @@ public class Camera2Proxy {
     }
 
 
+    @TargetApi(Build.VERSION_CODES.P)
+    private static boolean isOisDataAvailable(CameraCharacteristics characteristics) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+            return false;
+        }
+        int[] modes = characteristics.get(
+                CameraCharacteristics.STATISTICS_INFO_AVAILABLE_OIS_DATA_MODES);
+        if (modes != null) {
+            for (int mode : modes) {
+                if (mode == CameraMetadata.STATISTICS_OIS_DATA_MODE_ON) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @TargetApi(Build.VERSION_CODES.P)
+    private static void enableOisData(CaptureRequest.Builder builder) {
+        builder.set(CaptureRequest.STATISTICS_OIS_DATA_MODE,
+                CameraMetadata.STATISTICS_OIS_DATA_MODE_ON);
+        Log.d(TAG, "OIS data mode on");
+    }
+
+    // copies the lens calibration of a frame, which the intrinsics track keeps on change
+    @TargetApi(Build.VERSION_CODES.M)
+    private static void addIntrinsics(CaptureResult result, FrameMetadata frame) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            frame.setIntrinsics(result.get(CaptureResult.LENS_INTRINSIC_CALIBRATION));
+            frame.setDistortion(result.get(CaptureResult.LENS_RADIAL_DISTORTION));
+        }
+    }
+
+    // copies the lens shifts of a frame, which arrive at far above the frame rate
+    @TargetApi(Build.VERSION_CODES.P)
+    private static void addOisSamples(CaptureResult result, FrameMetadata frame) {
+        OisSample[] samples = result.get(CaptureResult.STATISTICS_OIS_SAMPLES);
+        if (samples != null) {
+            for (OisSample sample : samples) {
+                frame.addOisSample(sample.getTimestamp(), sample.getXshift(),
+                        sample.getYshift());
+            }
+        }
+    }
+
+    // copies the sensor fields of a partial or total result; the getters box, but the
+    // record keeps only primitives, and a missing key leaves its field as it was
+    private static void setResultFields(CaptureResult result, FrameMetadata frame) {
+        frame.setTimestamp(result.get(CaptureResult.SENSOR_TIMESTAMP));
+        frame.setFrameNumber(result.getFrameNumber());
+        frame.setExposureTime(result.get(CaptureResult.SENSOR_EXPOSURE_TIME));
+        frame.setFrameDuration(result.get(CaptureResult.SENSOR_FRAME_DURATION));
+        frame.setRollingShutterSkew(result.get(CaptureResult.SENSOR_ROLLING_SHUTTER_SKEW));
+        frame.setSensitivity(result.get(CaptureResult.SENSOR_SENSITIVITY));
+        frame.setAfMode(result.get(CaptureResult.CONTROL_AF_MODE));
+    }
+
     private CameraCaptureSession.CaptureCallback mSessionCaptureCallback =
             new CameraCaptureSession.CaptureCallback() {
 
+                @Override
+                public void onCaptureStarted(CameraCaptureSession session,
+                                             CaptureRequest request,
+                                             long timestamp, long frameNumber) {
+                    // the start of a recorded frame goes to the sinks at once, and its
+                    // record is filled as its results arrive
+                    FrameMetadataWriter writer = mFrameMetadataWriter;
+                    if (writer != null) {
+                        writer.begin(frameNumber, timestamp);
+                    }
+                }
+
+                @Override
+                public void onCaptureProgressed(CameraCaptureSession session,
+                                                CaptureRequest request,
+                                                CaptureResult partialResult) {
+                    FrameMetadataWriter writer = mFrameMetadataWriter;
+                    FrameMetadata frame = writer == null ? null :
+                            writer.pending(partialResult.getFrameNumber());
+                    if (frame != null) {
+                        // a partial result has some of the keys, the others stay absent
+                        setResultFields(partialResult, frame);
+                        frame.setFocalLength(partialResult.get(CaptureResult.LENS_FOCAL_LENGTH));
+                        frame.setFocusDistance(
+                                partialResult.get(CaptureResult.LENS_FOCUS_DISTANCE));
+                    }
+                }
+
+                @Override
+                public void onCaptureFailed(CameraCaptureSession session,
+                                            CaptureRequest request, CaptureFailure failure) {
+                    FrameMetadataWriter writer = mFrameMetadataWriter;
+                    if (writer != null) {
+                        writer.abandon(failure.getFrameNumber());
+                    }
+                }
+
                 @Override
                 public void onCaptureCompleted(CameraCaptureSession session,
                                                CaptureRequest request,
                                                TotalCaptureResult result) {
-                    Long timestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
-                    Long number = result.getFrameNumber();
-                    Long exposureTimeNs = result.get(CaptureResult.SENSOR_EXPOSURE_TIME);
-
-                    Long frmDurationNs = result.get(CaptureResult.SENSOR_FRAME_DURATION);
-                    Long frmReadoutNs = result.get(CaptureResult.SENSOR_ROLLING_SHUTTER_SKEW);
-                    Integer iso = result.get(CaptureResult.SENSOR_SENSITIVITY);
-                    if (expoStats.size() > kMaxExpoSamples) {
-                        expoStats.subList(0, kMaxExpoSamples / 2).clear();
+                    FrameMetadataWriter writer = mFrameMetadataWriter;
+                    FrameMetadata frame = writer == null ? null :
+                            writer.complete(result.getFrameNumber());
+                    if (frame == null) {
+                        // not recording, or the writer is so far behind that the frame
+                        // is dropped
+                        frame = mPreviewFrame;
+                        frame.clear();
+                    }
+                    setResultFields(result, frame);
+                    if (frame.has(FrameMetadata.EXPOSURE_TIME) &&
+                            frame.has(FrameMetadata.SENSITIVITY)) {
+                        addExpoSample(frame.getExposureTime(), frame.getSensitivity());
                     }
-                    expoStats.add(new NumExpoIso(number, exposureTimeNs, iso));
 
                     Float fl = result.get(CaptureResult.LENS_FOCAL_LENGTH);
-
                     Float fd = result.get(CaptureResult.LENS_FOCUS_DISTANCE);
-
-                    Integer afMode = result.get(CaptureResult.CONTROL_AF_MODE);
+                    frame.setFocalLength(fl);
+                    frame.setFocusDistance(fd);
 
                     Rect rect = result.get(CaptureResult.SCALER_CROP_REGION);
                     mFocalLengthHelper.setmFocalLength(fl);
                     mFocalLengthHelper.setmFocusDistance(fd);
                     mFocalLengthHelper.setmCropRegion(rect);
-                    SizeF sz_focal_length = mFocalLengthHelper.getFocalLengthPixel();
-                    String delimiter = ",";
-                    StringBuilder sb = new StringBuilder();
-                    sb.append(timestamp);
-                    sb.append(delimiter + sz_focal_length.getWidth());
-                    sb.append(delimiter + sz_focal_length.getHeight());
-                    sb.append(delimiter + number);
-                    sb.append(delimiter + exposureTimeNs);
-                    sb.append(delimiter + frmDurationNs);
-                    sb.append(delimiter + frmReadoutNs);
-                    sb.append(delimiter + iso);
-                    sb.append(delimiter + fl);
-                    sb.append(delimiter + fd);
-                    sb.append(delimiter + afMode);
-                    String frame_info = sb.toString();
-                    if (mRecordingMetadata) {
-                        try {
-                            mFrameMetadataWriter.write(frame_info + "\n");
-                        } catch (IOException err) {
-                            System.err.println("Error writing captureResult: " + err.getMessage());
+                    mFocalLengthHelper.computeFocalLengthPixel();
+                    frame.setFocalLengthPixel(mFocalLengthHelper.getFocalLengthPixelX(),
+                            mFocalLengthHelper.getFocalLengthPixelY());
+                    mCaptureStats.publish(frame);
+                    if (frame != mPreviewFrame) {
+                        CaptureResultSchema keys = mCaptureResultSchema;
+                        if (keys != null) {
+                            keys.extract(result, frame);
+                        }
+                        addIntrinsics(result, frame);
+                        if (mOisDataAvailable) {
+                            addOisSamples(result, frame);
                         }
+                        // a full queue drops the frame, which the writer counts
+                        writer.submit(frame);
                     }
-                    ((CameraCaptureActivity) mActivity).updateCaptureResultPanel(
-                            sz_focal_length.getWidth(), exposureTimeNs, afMode);
-                }
-
-                @Override
-                public void onCaptureProgressed(CameraCaptureSession session, CaptureRequest request,
-                                                CaptureResult partialResult) {
-//                    Log.d(TAG, "mSessionCaptureCallback,  onCaptureProgressed");
                 }
             };
 
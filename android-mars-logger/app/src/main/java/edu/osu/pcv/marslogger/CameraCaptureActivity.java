@@ -53,6 +53,7 @@ import java.util.Locale;
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
+import edu.osu.pcv.marslogger.camera.CaptureStatsPublisher;
 import edu.osu.pcv.marslogger.gles.FullFrameRect;
 import edu.osu.pcv.marslogger.gles.Texture2dProgram;
 
@@ -150,6 +151,21 @@ public class CameraCaptureActivity extends Activity
     private SampleGLView mGLView;
     private CameraSurfaceRenderer mRenderer;
     private TextView mCaptureResultText;
+    private TextView mCameraParamsText;
+
+    // statistics published by the camera threads, shown by mStatsRefresher
+    private static final long STATS_REFRESH_INTERVAL_MS = 200;
+    private final CaptureStatsPublisher mCaptureStats = new CaptureStatsPublisher();
+    private final CaptureStatsPublisher.Snapshot mStatsSnapshot =
+            new CaptureStatsPublisher.Snapshot();
+    private Handler mUiHandler;
+    private final Runnable mStatsRefresher = new Runnable() {
+        @Override
+        public void run() {
+            refreshStats();
+            mUiHandler.postDelayed(this, STATS_REFRESH_INTERVAL_MS);
+        }
+    };
 
     private Camera2Proxy mCamera2Proxy = null;
     private CameraHandler mCameraHandler;
@@ -165,6 +181,13 @@ public class CameraCaptureActivity extends Activity
         return mCamera2Proxy;
     }
 
+    /**
+     * Where the camera threads publish the statistics shown on screen.
+     */
+    public CaptureStatsPublisher getCaptureStats() {
+        return mCaptureStats;
+    }
+
     private String renewOutputDir() {
         SimpleDateFormat dateFormat =
                 new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss");
@@ -229,6 +252,8 @@ public class CameraCaptureActivity extends Activity
 
         mImuManager = new IMUManager(this);
         mCaptureResultText = (TextView) findViewById(R.id.captureResult_text);
+        mCameraParamsText = (TextView) findViewById(R.id.cameraParams_text);
+        mUiHandler = new Handler();
         Log.d(TAG, "onCreate complete: " + this);
     }
 
@@ -258,6 +283,7 @@ public class CameraCaptureActivity extends Activity
         if (PermissionHelper.hasCameraPermission(this)) {
             if (mCamera2Proxy == null) {
                 mCamera2Proxy = new Camera2Proxy(this);
+                sVideoEncoder.setEncodedFrameListener(mCamera2Proxy);
                 Size previewSize =
                         mCamera2Proxy.configureCamera(mDesiredFrameWidth, mDesiredFrameHeight);
                 setLayoutAspectRatio(previewSize);  // updates mCameraPreviewWidth/Height
@@ -274,6 +300,7 @@ public class CameraCaptureActivity extends Activity
 //            }
 //        });
         mImuManager.register();
+        mUiHandler.post(mStatsRefresher);
         Log.d(TAG, "onResume complete: " + this);
     }
 
@@ -281,6 +308,7 @@ public class CameraCaptureActivity extends Activity
     protected void onPause() {
         Log.d(TAG, "onPause -- releasing camera");
         super.onPause();
+        mUiHandler.removeCallbacks(mStatsRefresher);
         // no more frame metadata will be saved during pause
 //        if (mCamera2Proxy != null) {
 //            mCamera2Proxy.releaseCamera();
@@ -303,6 +331,8 @@ public class CameraCaptureActivity extends Activity
     protected void onDestroy() {
         Log.d(TAG, "onDestroy");
         super.onDestroy();
+        // the encoder is static, and would keep the proxy and this activity reachable
+        sVideoEncoder.setEncodedFrameListener(null);
 //        mCameraHandler.invalidateHandler();     // paranoia
     }
 
@@ -388,34 +418,6 @@ public class CameraCaptureActivity extends Activity
 //    }
 
 
-    public void updateCaptureResultPanel(
-            final Float fl,
-            final Long exposureTimeNs, final Integer afMode) {
-        final String sfl = String.format(Locale.getDefault(), "%.3f", fl);
-        final String sexpotime =
-                exposureTimeNs == null ?
-                        "null ms" :
-                        String.format(Locale.getDefault(), "%.2f ms",
-                                exposureTimeNs / 1000000.0);
-        String safMode;
-        switch (afMode) {
-            case CameraMetadata.CONTROL_AF_MODE_OFF:
-                safMode = "AF locked";
-                break;
-            default:
-                safMode = "AF unlocked";
-                break;
-        }
-        final String saf = safMode;
-        runOnUiThread(new Runnable() {
-
-            @Override
-            public void run() {
-                mCaptureResultText.setText(sfl + " " + sexpotime + " " + saf);
-            }
-        });
-    }
-
     /**
      * Updates the on-screen controls to reflect the current state of the app.
      */
@@ -460,13 +462,29 @@ public class CameraCaptureActivity extends Activity
         // so it doesn't really matter.
         if (VERBOSE) Log.d(TAG, "ST onFrameAvailable");
         mGLView.requestRender();
+        mCaptureStats.setFrameRate(sVideoEncoder.mFrameRate);
+    }
 
-        final String sfps = String.format(Locale.getDefault(), "%.1f FPS",
-                sVideoEncoder.mFrameRate);
-        String previewFacts = mCameraPreviewWidth + "x" + mCameraPreviewHeight + "@" + sfps;
-
-        TextView text = (TextView) findViewById(R.id.cameraParams_text);
-        text.setText(previewFacts);
+    // shows the latest published statistics, if they changed, on the UI thread
+    private void refreshStats() {
+        if (!mCaptureStats.read(mStatsSnapshot)) {
+            return;
+        }
+        String sfl = String.format(Locale.getDefault(), "%.3f",
+                mStatsSnapshot.getFocalLengthPixel());
+        String sexpotime =
+                mStatsSnapshot.getExposureTime() == CaptureStatsPublisher.NO_EXPOSURE_TIME ?
+                        "null ms" :
+                        String.format(Locale.getDefault(), "%.2f ms",
+                                mStatsSnapshot.getExposureTime() / 1000000.0);
+        String saf = mStatsSnapshot.getAfMode() == CameraMetadata.CONTROL_AF_MODE_OFF ?
+                "AF locked" : "AF unlocked";
+        mCaptureResultText.setText(sfl + " " + sexpotime + " " + saf);
+
+        String sfps = String.format(Locale.getDefault(), "%.1f FPS",
+                mStatsSnapshot.getFrameRate());
+        mCameraParamsText.setText(
+                mCameraPreviewWidth + "x" + mCameraPreviewHeight + "@" + sfps);
     }
 
     /**
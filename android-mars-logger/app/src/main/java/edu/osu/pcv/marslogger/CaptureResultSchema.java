@@ -0,0 +1,279 @@
+package edu.osu.pcv.marslogger;
+
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CaptureResult;
+import android.util.Log;
+import android.util.Rational;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.osu.pcv.marslogger.camera.FrameMetadata;
+import edu.osu.pcv.marslogger.camera.FrameMetadataSchema;
+
+/**
+ * The CaptureResult keys recorded for each frame besides the fixed columns of
+ * {@link FrameMetadata}.
+ * <p>
+ * The keys are listed declaratively by name, see DEFAULT_KEYS.  compile() resolves them
+ * once per session against the keys that the camera reports, into an array of
+ * extractors and the {@link FrameMetadataSchema} of their columns.  A frame then costs
+ * one CaptureResult.get() per recorded key, without lookups by name or reflection.
+ * Keys are named rather than referenced so that those of newer API levels can be listed.
+ */
+public class CaptureResultSchema {
+    private static final String TAG = "CaptureResultSchema";
+
+    // kinds of key values
+    public static final int KIND_INT = 0;
+    public static final int KIND_LONG = 1;
+    public static final int KIND_FLOAT = 2;
+    public static final int KIND_FLOAT_ARRAY = 3;
+    public static final int KIND_RATIONAL_ARRAY = 4;
+
+    public static class Key {
+        final String mName;
+        final int mKind;
+        final int mCount;
+
+        /**
+         * @param name  CaptureResult.Key name, e.g., android.lens.aperture
+         * @param kind  one of the KIND_* constants, which must match the value type of
+         *              the key
+         * @param count number of values of an array kind, 1 otherwise
+         */
+        public Key(String name, int kind, int count) {
+            mName = name;
+            mKind = kind;
+            mCount = count;
+        }
+    }
+
+    public static final Key[] DEFAULT_KEYS = {
+            new Key("android.lens.poseRotation", KIND_FLOAT_ARRAY, 4),
+            new Key("android.lens.aperture", KIND_FLOAT, 1),
+            new Key("android.sensor.neutralColorPoint", KIND_RATIONAL_ARRAY, 3),
+            new Key("android.control.aeState", KIND_INT, 1),
+    };
+
+    private final FrameMetadataSchema mSchema;
+    private final Extractor[] mExtractors;
+
+    private CaptureResultSchema(FrameMetadataSchema schema, Extractor[] extractors) {
+        mSchema = schema;
+        mExtractors = extractors;
+    }
+
+    public static CaptureResultSchema compile(CameraCharacteristics characteristics) {
+        return compile(characteristics, DEFAULT_KEYS);
+    }
+
+    /**
+     * Resolves keys against the capture result keys of a camera; those it does not
+     * report are left out.
+     */
+    public static CaptureResultSchema compile(CameraCharacteristics characteristics,
+                                              Key[] keys) {
+        Map<String, CaptureResult.Key<?>> available = new HashMap<>();
+        List<CaptureResult.Key<?>> resultKeys =
+                characteristics.getAvailableCaptureResultKeys();
+        if (resultKeys != null) {
+            for (CaptureResult.Key<?> key : resultKeys) {
+                available.put(key.getName(), key);
+            }
+        }
+        FrameMetadataSchema.Builder builder = new FrameMetadataSchema.Builder();
+        List<Key> resolved = new ArrayList<>();
+        for (Key key : keys) {
+            if (available.containsKey(key.mName)) {
+                builder.addColumn(key.mName, columnType(key.mKind), key.mCount);
+                resolved.add(key);
+            } else {
+                Log.d(TAG, "Capture result key " + key.mName + " is not available");
+            }
+        }
+        FrameMetadataSchema schema = builder.build();
+        Extractor[] extractors = new Extractor[resolved.size()];
+        for (int column = 0; column < extractors.length; ++column) {
+            Key key = resolved.get(column);
+            extractors[column] = createExtractor(available.get(key.mName), key.mKind,
+                    column, schema.getOffset(column), key.mCount);
+        }
+        return new CaptureResultSchema(schema, extractors);
+    }
+
+    public FrameMetadataSchema getSchema() {
+        return mSchema;
+    }
+
+    /**
+     * Copies the recorded keys of result into the extra columns of frame, which must
+     * have been created for getSchema().
+     */
+    public void extract(CaptureResult result, FrameMetadata frame) {
+        if (frame.getSchema() != mSchema) {
+            return;
+        }
+        for (Extractor extractor : mExtractors) {
+            if (extractor.extract(result, frame)) {
+                frame.markExtraPresent(extractor.mColumn);
+            }
+        }
+    }
+
+    private static int columnType(int kind) {
+        switch (kind) {
+            case KIND_INT:
+                return FrameMetadataSchema.TYPE_INT;
+            case KIND_LONG:
+                return FrameMetadataSchema.TYPE_LONG;
+            default:
+                return FrameMetadataSchema.TYPE_FLOAT;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Extractor createExtractor(CaptureResult.Key<?> key, int kind, int column,
+                                             int offset, int count) {
+        switch (kind) {
+            case KIND_INT:
+                return new IntExtractor((CaptureResult.Key<Integer>) key, column, offset);
+            case KIND_LONG:
+                return new LongExtractor((CaptureResult.Key<Long>) key, column, offset);
+            case KIND_FLOAT:
+                return new FloatExtractor((CaptureResult.Key<Float>) key, column, offset);
+            case KIND_FLOAT_ARRAY:
+                return new FloatArrayExtractor((CaptureResult.Key<float[]>) key, column,
+                        offset, count);
+            case KIND_RATIONAL_ARRAY:
+                return new RationalArrayExtractor((CaptureResult.Key<Rational[]>) key,
+                        column, offset, count);
+            default:
+                throw new IllegalArgumentException("Unknown key kind " + kind);
+        }
+    }
+
+    // Each extractor holds its resolved key and the slots of its column.
+
+    private abstract static class Extractor {
+        final int mColumn;
+        final int mOffset;
+
+        Extractor(int column, int offset) {
+            mColumn = column;
+            mOffset = offset;
+        }
+
+        /**
+         * @return false if result lacks the key, which leaves the column absent
+         */
+        abstract boolean extract(CaptureResult result, FrameMetadata frame);
+    }
+
+    private static class IntExtractor extends Extractor {
+        private final CaptureResult.Key<Integer> mKey;
+
+        IntExtractor(CaptureResult.Key<Integer> key, int column, int offset) {
+            super(column, offset);
+            mKey = key;
+        }
+
+        @Override
+        boolean extract(CaptureResult result, FrameMetadata frame) {
+            Integer value = result.get(mKey);
+            if (value == null) {
+                return false;
+            }
+            frame.setExtraLong(mOffset, value);
+            return true;
+        }
+    }
+
+    private static class LongExtractor extends Extractor {
+        private final CaptureResult.Key<Long> mKey;
+
+        LongExtractor(CaptureResult.Key<Long> key, int column, int offset) {
+            super(column, offset);
+            mKey = key;
+        }
+
+        @Override
+        boolean extract(CaptureResult result, FrameMetadata frame) {
+            Long value = result.get(mKey);
+            if (value == null) {
+                return false;
+            }
+            frame.setExtraLong(mOffset, value);
+            return true;
+        }
+    }
+
+    private static class FloatExtractor extends Extractor {
+        private final CaptureResult.Key<Float> mKey;
+
+        FloatExtractor(CaptureResult.Key<Float> key, int column, int offset) {
+            super(column, offset);
+            mKey = key;
+        }
+
+        @Override
+        boolean extract(CaptureResult result, FrameMetadata frame) {
+            Float value = result.get(mKey);
+            if (value == null) {
+                return false;
+            }
+            frame.setExtraFloat(mOffset, value);
+            return true;
+        }
+    }
+
+    private static class FloatArrayExtractor extends Extractor {
+        private final CaptureResult.Key<float[]> mKey;
+        private final int mCount;
+
+        FloatArrayExtractor(CaptureResult.Key<float[]> key, int column, int offset,
+                            int count) {
+            super(column, offset);
+            mKey = key;
+            mCount = count;
+        }
+
+        @Override
+        boolean extract(CaptureResult result, FrameMetadata frame) {
+            float[] values = result.get(mKey);
+            if (values == null || values.length < mCount) {
+                return false;
+            }
+            for (int i = 0; i < mCount; ++i) {
+                frame.setExtraFloat(mOffset + i, values[i]);
+            }
+            return true;
+        }
+    }
+
+    private static class RationalArrayExtractor extends Extractor {
+        private final CaptureResult.Key<Rational[]> mKey;
+        private final int mCount;
+
+        RationalArrayExtractor(CaptureResult.Key<Rational[]> key, int column, int offset,
+                               int count) {
+            super(column, offset);
+            mKey = key;
+            mCount = count;
+        }
+
+        @Override
+        boolean extract(CaptureResult result, FrameMetadata frame) {
+            Rational[] values = result.get(mKey);
+            if (values == null || values.length < mCount) {
+                return false;
+            }
+            for (int i = 0; i < mCount; ++i) {
+                frame.setExtraFloat(mOffset + i, values[i].floatValue());
+            }
+            return true;
+        }
+    }
+}
@@ -24,6 +24,19 @@ public class FocalLengthHelper {
     private Rect mActiveSize; // This rectangle is defined relative to the full pixel array; (0,0) is the top-left of the full pixel array,
     private Rect mCropRegion; // Its The coordinate system is defined relative to the active array rectangle given in this field, with (0, 0) being the top-left of this rectangle.
     private Size mImageSize;
+    private float mFocalLengthPixelX = 1.0f;
+    private float mFocalLengthPixelY = 1.0f;
+
+    // inputs of the cached focal length in pixels, which is recomputed only when one of
+    // them changes; a missing focal length or focus distance is kept as NaN
+    private boolean mCacheValid = false;
+    private float mCachedFocalLength;
+    private float mCachedFocusDistance;
+    private boolean mCachedHasCrop;
+    private int mCachedCropLeft;
+    private int mCachedCropTop;
+    private int mCachedCropRight;
+    private int mCachedCropBottom;
 
     public FocalLengthHelper() {
 
@@ -32,6 +45,7 @@ public class FocalLengthHelper {
     public void setLensParams(CameraCharacteristics result) {
         setLensParams21(result);
         setLensParams23(result);
+        mCacheValid = false;
     }
 
     @TargetApi(23)
@@ -49,6 +63,7 @@ public class FocalLengthHelper {
 
     public void setmImageSize(Size mImageSize) {
         this.mImageSize = mImageSize;
+        mCacheValid = false;
     }
 
     // compute the distance between the lens and the imaging sensor, i
@@ -58,37 +73,81 @@ public class FocalLengthHelper {
     // i is often very close to the physical focal length
     // ref: https://source.android.com/devices/camera/camera3_crop_reprocess.html
     // https://stackoverflow.com/questions/39965408/what-is-the-android-camera2-api-equivalent-of-camera-parameters-gethorizontalvie
-    public SizeF getFocalLengthPixel() {
+    // The result is read with getFocalLengthPixelX/Y, so that a frame does not allocate.
+    // It is cached, so a frame whose lens state and crop region match those of the last
+    // frame costs a few comparisons.
+    public void computeFocalLengthPixel() {
+        float focalLength = mFocalLength == null ? Float.NaN : mFocalLength;
+        float focusDistance = mFocusDistance == null ? Float.NaN : mFocusDistance;
+        Rect crop = mCropRegion;
+        if (mCacheValid && sameFloat(focalLength, mCachedFocalLength) &&
+                sameFloat(focusDistance, mCachedFocusDistance) &&
+                (crop == null ? !mCachedHasCrop : mCachedHasCrop &&
+                        crop.left == mCachedCropLeft && crop.top == mCachedCropTop &&
+                        crop.right == mCachedCropRight && crop.bottom == mCachedCropBottom)) {
+            return;
+        }
+        computeFocalLengthPixelUncached();
+        mCachedFocalLength = focalLength;
+        mCachedFocusDistance = focusDistance;
+        mCachedHasCrop = crop != null;
+        if (crop != null) {
+            mCachedCropLeft = crop.left;
+            mCachedCropTop = crop.top;
+            mCachedCropRight = crop.right;
+            mCachedCropBottom = crop.bottom;
+        }
+        mCacheValid = true;
+    }
+
+    private static boolean sameFloat(float a, float b) {
+        return Float.floatToIntBits(a) == Float.floatToIntBits(b);
+    }
+
+    private void computeFocalLengthPixelUncached() {
         if (mIntrinsic != null && mIntrinsic[0] > 1.0) {
-            Log.d(TAG, "Focal length set as (" + mIntrinsic[0] + ", " + mIntrinsic[1]);
-            return new SizeF(mIntrinsic[0], mIntrinsic[1]);
+            mFocalLengthPixelX = mIntrinsic[0];
+            mFocalLengthPixelY = mIntrinsic[1];
+            return;
         }
 
         if (mFocalLength != null) {
-            Float imageDistance; // mm
+            float focalLength = mFocalLength;
+            float imageDistance; // mm
             if (mFocusDistance == null || mFocusDistance == 0.f) {
-                imageDistance = mFocalLength;
+                imageDistance = focalLength;
             } else {
-                imageDistance = 1000.f / (1000.f / mFocalLength - mFocusDistance);
+                imageDistance = 1000.f / (1000.f / focalLength - mFocusDistance);
             }
             // ignore the effect of distortion on the active array coordinates
-            Float crop_aspect = (float) mCropRegion.width() /
+            float crop_aspect = (float) mCropRegion.width() /
                     ((float) mCropRegion.height());
-            Float image_aspect = (float) mImageSize.getWidth() /
+            float image_aspect = (float) mImageSize.getWidth() /
                     ((float) mImageSize.getHeight());
-            Float f_image_pixel;
+            float f_image_pixel;
             if (image_aspect >= crop_aspect) {
-                Float scale = (float) mImageSize.getWidth() / ((float) mCropRegion.width());
+                float scale = (float) mImageSize.getWidth() / ((float) mCropRegion.width());
                 f_image_pixel = scale * imageDistance * mPixelArraySize.getWidth() /
                         mPhysicalSize.getWidth();
             } else {
-                Float scale = (float) mImageSize.getHeight() / ((float) mCropRegion.height());
+                float scale = (float) mImageSize.getHeight() / ((float) mCropRegion.height());
                 f_image_pixel = scale * imageDistance * mPixelArraySize.getHeight() /
                         mPhysicalSize.getHeight();
             }
-            return new SizeF(f_image_pixel, f_image_pixel);
+            mFocalLengthPixelX = f_image_pixel;
+            mFocalLengthPixelY = f_image_pixel;
+            return;
         }
-        return new SizeF(1.0f, 1.0f);
+        mFocalLengthPixelX = 1.0f;
+        mFocalLengthPixelY = 1.0f;
+    }
+
+    public float getFocalLengthPixelX() {
+        return mFocalLengthPixelX;
+    }
+
+    public float getFocalLengthPixelY() {
+        return mFocalLengthPixelY;
     }
 
     @TargetApi(23)
@@ -1,39 +1,82 @@
 package edu.osu.pcv.marslogger;
 
+import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Context;
 import android.hardware.Sensor;
+import android.hardware.SensorDirectChannel;
 import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
+import android.hardware.SensorEventListener2;
 import android.hardware.SensorManager;
+import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.MemoryFile;
 import android.os.Process;
 import android.util.Log;
 
-import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
-public class IMUManager implements SensorEventListener {
+import edu.osu.pcv.marslogger.imu.BinaryInertialSink;
+import edu.osu.pcv.marslogger.imu.BinaryRawEventSink;
+import edu.osu.pcv.marslogger.imu.CsvInertialSink;
+import edu.osu.pcv.marslogger.imu.DirectReportReader;
+import edu.osu.pcv.marslogger.imu.HoldLastInterpolator;
+import edu.osu.pcv.marslogger.imu.InertialPipeline;
+import edu.osu.pcv.marslogger.imu.InertialSink;
+import edu.osu.pcv.marslogger.imu.InertialStreamStats;
+import edu.osu.pcv.marslogger.imu.InertialSynchronizer;
+import edu.osu.pcv.marslogger.imu.LinearInterpolator;
+import edu.osu.pcv.marslogger.imu.MappedSegmentSink;
+import edu.osu.pcv.marslogger.imu.MultiSensorSynchronizer;
+import edu.osu.pcv.marslogger.imu.RawEventQueue;
+import edu.osu.pcv.marslogger.imu.RawEventSink;
+import edu.osu.pcv.marslogger.imu.SampleInterpolator;
+import edu.osu.pcv.marslogger.imu.StreamSynchronizer;
+import edu.osu.pcv.marslogger.imu.SyncedSampleQueue;
+
+public class IMUManager implements SensorEventListener2 {
     private static final String TAG = "IMUManager";
-    // if the accelerometer data has a timestamp within the
-    // [t-x, t+x] of the gyro data at t, then the original acceleration data
-    // is used instead of linear interpolation
-    private final long mInterpolationTimeResolution = 500; // nanoseconds
+
+    // Inertial data output formats
+    public static final int OUTPUT_CSV = 0;
+    // compact binary log, see BinaryInertialSink
+    public static final int OUTPUT_BINARY = 1;
+    // crash-safe memory-mapped segments, see MappedSegmentSink
+    public static final int OUTPUT_MAPPED_SEGMENTS = 2;
+
     private final int mSensorRate = 5000;//200hz
-    private class SensorPacket {
-        long timestamp;
-        float[] values;
+    // samples buffered per sensor while waiting for the other sensor
+    private static final int SENSOR_BUFFER_CAPACITY = 256;
+    // synced samples waiting for the writer thread, about 20 s at 200 Hz
+    private static final int WRITER_QUEUE_CAPACITY = 4096;
+    // how long stopRecording() waits for the sensor FIFOs to be flushed; it blocks the
+    // caller, usually the UI thread, and a flush normally completes within tens of ms
+    private static final long FLUSH_TIMEOUT_MS = 250;
+    // events in the direct channel ring, about 2.5 s of both sensors at 800 Hz
+    private static final int DIRECT_CHANNEL_EVENTS = 4096;
+    private static final long DIRECT_CHANNEL_POLL_INTERVAL_MS = 5;
 
-        SensorPacket(long time, float[] vals) {
-            timestamp = time;
-            values = vals;
-        }
-    }
+    // sensors recorded besides gyro and accel if setRecordMotionSensors() is on, their
+    // columns follow the gyro and accel columns in this order
+    private static final int[] MOTION_SENSOR_TYPES = {
+            Sensor.TYPE_GYROSCOPE_UNCALIBRATED, Sensor.TYPE_ACCELEROMETER_UNCALIBRATED,
+            Sensor.TYPE_MAGNETIC_FIELD, Sensor.TYPE_PRESSURE, Sensor.TYPE_GAME_ROTATION_VECTOR};
+    private static final String[][] MOTION_SENSOR_CHANNELS = {
+            {"gx_uncal[rad/s]", "gy_uncal[rad/s]", "gz_uncal[rad/s]",
+                    "gx_bias[rad/s]", "gy_bias[rad/s]", "gz_bias[rad/s]"},
+            {"ax_uncal[m/s^2]", "ay_uncal[m/s^2]", "az_uncal[m/s^2]",
+                    "ax_bias[m/s^2]", "ay_bias[m/s^2]", "az_bias[m/s^2]"},
+            {"mx[uT]", "my[uT]", "mz[uT]"},
+            {"pressure[hPa]"},
+            {"qx", "qy", "qz", "qw"}};
 
     // Sensor listeners
     private SensorManager mSensorManager;
@@ -43,12 +86,73 @@ public class IMUManager implements SensorEventListener {
     private int linear_acc; // accuracy
     private int angular_acc;
 
-    private volatile boolean mRecordingInertialData = false;
-    private BufferedWriter mDataWriter = null;
+    private int mOutputFormat = OUTPUT_CSV;
+    // the json summary of mStreamStats written when recording stops
+    private String mStatsFile = null;
     private HandlerThread mSensorThread;
+    private Handler mSensorHandler;
+
+    // 0 delivers every sample as it is taken, otherwise samples are batched in the
+    // hardware FIFOs for up to this long
+    private int mMaxReportLatencyUs = 0;
+    // set on the sensor thread when a batch is being delivered, cleared once it is synced
+    private boolean mSyncPosted = false;
+    private long mBatchCount = 0;
+    // set by the stopping thread, counted down on the sensor thread
+    private volatile CountDownLatch mFlushLatch;
 
-    private Deque<SensorPacket> mGyroData = new ArrayDeque<>();
-    private Deque<SensorPacket> mAccelData = new ArrayDeque<>();
+    // poll a SensorDirectChannel instead of listening to sensor events, if supported
+    private boolean mUseDirectChannel = false;
+    private SensorDirectChannel mDirectChannel;
+    private MemoryFileReportRing mReportRing;
+    private DirectReportReader mReportReader;
+
+    // Because the sensor events are delivered to the handler thread in order,
+    // no need for synchronization here.  Created by register(), with a synchronizer
+    // sized for the batches.
+    private InertialPipeline mPipeline;
+    private int mReferenceSensor = InertialSynchronizer.REFERENCE_GYRO;
+    private SampleInterpolator mInterpolator = new LinearInterpolator();
+    private final InertialStreamStats mStreamStats = new InertialStreamStats();
+
+    // records more sensors than gyro and accel with a MultiSensorSynchronizer
+    private boolean mRecordMotionSensors = false;
+    private final List<Sensor> mMotionSensors = new ArrayList<>();
+    // stream index of each sensor type in the synchronizer, -1 if not recorded
+    private final int[] mStreamOfType = new int[64];
+    // also log every event as delivered, see BinaryRawEventSink
+    private boolean mRecordRawEvents = false;
+    // sensors that report an onFlushCompleted
+    private int mRegisteredSensorCount;
+    // between register() and unregister(), accessed by the caller's thread only
+    private boolean mRegistered = false;
+
+    // runs on the sensor thread after the events of a batch have all been delivered
+    private final Runnable mSyncBatch = new Runnable() {
+        @Override
+        public void run() {
+            mSyncPosted = false;
+            ++mBatchCount;
+            syncBufferedData();
+        }
+    };
+
+    private final Runnable mPollDirectChannel = new Runnable() {
+        @Override
+        public void run() {
+            pollDirectChannel();
+            mSensorHandler.postDelayed(this, DIRECT_CHANNEL_POLL_INTERVAL_MS);
+        }
+    };
+
+    // the last poll of a recording, on the sensor thread
+    private final Runnable mFlushDirectChannel = new Runnable() {
+        @Override
+        public void run() {
+            pollDirectChannel();
+            mFlushLatch.countDown();
+        }
+    };
 
     public IMUManager(Activity activity) {
         mSensorManager = (SensorManager) activity.getSystemService(Context.SENSOR_SERVICE);
@@ -56,32 +160,186 @@ public class IMUManager implements SensorEventListener {
         mGyro = mSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
     }
 
+    /**
+     * Selects the format of the next recording, one of the OUTPUT_* constants.  Binary
+     * logs can be converted with InertialBinaryToCsv, segments are turned into a binary
+     * log with SegmentRecovery.
+     */
+    public void setOutputFormat(int outputFormat) {
+        mOutputFormat = outputFormat;
+    }
+
+    /**
+     * Enables hardware batching for the next register() if maxReportLatencyUs is
+     * positive.  Samples are then held in the sensor FIFOs for up to that long and
+     * delivered in bursts, which saves wakeups on long recordings.  Samples beyond the
+     * FIFO size, see Sensor.getFifoMaxEventCount(), are lost, so the latency should be
+     * well below fifo size * sampling period.
+     */
+    public void setMaxReportLatencyUs(int maxReportLatencyUs) {
+        mMaxReportLatencyUs = Math.max(maxReportLatencyUs, 0);
+    }
+
+    /**
+     * Selects for the next register() whose timestamps the synced samples take, and how
+     * the other sensor is estimated at them.
+     *
+     * @param referenceSensor InertialSynchronizer.REFERENCE_GYRO or REFERENCE_ACCEL
+     * @param interpolator    e.g., LinearInterpolator, CubicHermiteInterpolator, or
+     *                        HoldLastInterpolator
+     */
+    public void setSyncMethod(int referenceSensor, SampleInterpolator interpolator) {
+        mReferenceSensor = referenceSensor;
+        mInterpolator = interpolator;
+    }
+
+    /**
+     * Makes the next register() read the sensors through a SensorDirectChannel on
+     * API 26+ devices that support it, at the highest rate up to RATE_VERY_FAST, about
+     * 800 Hz.  The channel's shared memory is polled every 5 ms, which avoids the
+     * per-event delivery cost of listeners at such rates.  Without support, register()
+     * falls back to listeners.
+     */
+    public void setUseDirectChannel(boolean useDirectChannel) {
+        mUseDirectChannel = useDirectChannel;
+    }
+
+    /**
+     * If on, the next register() also records those of the uncalibrated gyro and
+     * accelerometer, magnetometer, barometer and game rotation vector that the device
+     * has.  Their values are synced to the reference sensor and appended as extra
+     * columns after the usual six, see MOTION_SENSOR_CHANNELS.  Listeners are used even
+     * if a direct channel is requested.
+     */
+    public void setRecordMotionSensors(boolean recordMotionSensors) {
+        mRecordMotionSensors = recordMotionSensors;
+    }
+
+    /**
+     * If on, the next recording also captures every event of every registered sensor,
+     * before syncing, into _raw.bin next to the synced log, so that the streams can be
+     * synced again offline, e.g., with InertialReplay.  The events are written by the
+     * writer thread of the synced log.
+     */
+    public void setRecordRawEvents(boolean recordRawEvents) {
+        mRecordRawEvents = recordRawEvents;
+    }
+
+    /**
+     * Copies the health statistics of the sensor streams, since the last recording
+     * started, into snapshot.  Safe to call from any thread.
+     */
+    public void getStreamStats(InertialStreamStats.Snapshot snapshot) {
+        mStreamStats.snapshot(snapshot);
+    }
+
+    /**
+     * @param captureResultFile path of the csv file; for the other formats its extension
+     *                          is replaced, by .bin for a binary log, and by .NNNN.seg for
+     *                          segments.  Stream statistics are written to _stats.json
+     *                          next to it, and raw events, if captured, to _raw.bin.
+     */
     public void startRecording(String captureResultFile) {
+        String basePath = captureResultFile;
+        int extension = captureResultFile.lastIndexOf('.');
+        if (extension > captureResultFile.lastIndexOf(File.separatorChar)) {
+            basePath = captureResultFile.substring(0, extension);
+        }
         try {
-            mDataWriter = new BufferedWriter(
-                    new FileWriter(captureResultFile, false));
-            String header = "Timestamp[nanosec], ax[rad/s], ay[rad/s], az[rad/s]," +
-                    " gx[m/s^2], gy[m/s^2], gz[m/s^2]\n";
-
-            mDataWriter.write(header);
-            mRecordingInertialData = true;
+            // the schema of the log
+            String[] channelNames = mPipeline.getSynchronizer().getChannelNames();
+            InertialSink sink;
+            if (mOutputFormat == OUTPUT_CSV) {
+                sink = new CsvInertialSink(captureResultFile, channelNames);
+            } else if (mOutputFormat == OUTPUT_BINARY) {
+                sink = new BinaryInertialSink(basePath + ".bin", channelNames);
+            } else {
+                sink = new MappedSegmentSink(basePath, channelNames);
+            }
+            mStatsFile = basePath + "_stats.json";
+            RawEventSink rawSink = mRecordRawEvents ?
+                    new BinaryRawEventSink(basePath + "_raw.bin") : null;
+            mPipeline.startRecording(sink, rawSink, WRITER_QUEUE_CAPACITY);
         } catch (IOException err) {
             System.err.println("IOException in opening inertial data writer at "
                     + captureResultFile + ": " + err.getMessage());
         }
     }
 
+    /**
+     * Stops the recording, after flushing the samples still batched in the sensor FIFOs
+     * or the direct channel.  Blocks the calling thread until the flush completes, for
+     * at most FLUSH_TIMEOUT_MS, and until the writer thread has drained its queue.
+     */
     public void stopRecording() {
-        if (mRecordingInertialData) {
-            mRecordingInertialData = false;
-            try {
-                mDataWriter.flush();
-                mDataWriter.close();
-            } catch (IOException err) {
-                System.err.println(
-                        "IOException in closing inertial data writer: " + err.getMessage());
+        if (mPipeline != null && mPipeline.isRecording()) {
+            if (mReportReader != null) {
+                mFlushLatch = new CountDownLatch(1);
+                mSensorHandler.post(mFlushDirectChannel);
+                awaitFlush();
+            } else if (mMaxReportLatencyUs > 0) {
+                flushSensors();
+            }
+            mPipeline.stopRecording();
+            SyncedSampleQueue queue = mPipeline.getSampleQueue();
+            Log.i(TAG, "Inertial data queue high-water mark " +
+                    queue.getHighWaterMark() + " of " + queue.capacity() +
+                    ", overflow count " + queue.getOverflowCount() +
+                    ", write error count " + mPipeline.getWriteErrorCount() +
+                    ", sensor batches " + mBatchCount);
+            RawEventQueue rawQueue = mPipeline.getRawEventQueue();
+            if (rawQueue != null) {
+                Log.i(TAG, "Raw event queue high-water mark " + rawQueue.getHighWaterMark() +
+                        " of " + rawQueue.capacity() +
+                        ", overflow count " + rawQueue.getOverflowCount());
             }
-            mDataWriter = null;
+            writeStreamStats();
+        }
+    }
+
+    private void writeStreamStats() {
+        InertialStreamStats.Snapshot snapshot = new InertialStreamStats.Snapshot();
+        mStreamStats.snapshot(snapshot);
+        Log.i(TAG, "Synced " + snapshot.getSyncedCount() + " samples, dropped " +
+                snapshot.getDropCount(InertialStreamStats.SENSOR_GYRO) + " gyro and " +
+                snapshot.getDropCount(InertialStreamStats.SENSOR_ACCEL) + " accel samples");
+        FileWriter writer = null;
+        try {
+            writer = new FileWriter(mStatsFile, false);
+            writer.write(snapshot.toJson());
+        } catch (IOException err) {
+            System.err.println("IOException in writing stream statistics at "
+                    + mStatsFile + ": " + err.getMessage());
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException err) {
+                    System.err.println("IOException in closing stream statistics: " +
+                            err.getMessage());
+                }
+            }
+        }
+    }
+
+    // Delivers the samples still batched in the sensor FIFOs, so that the end of
+    // the recording is not lost.
+    private void flushSensors() {
+        mFlushLatch = new CountDownLatch(mRegisteredSensorCount);
+        if (!mSensorManager.flush(this)) {
+            Log.w(TAG, "Failed to flush sensor FIFOs");
+            return;
+        }
+        awaitFlush();
+    }
+
+    private void awaitFlush() {
+        try {
+            if (!mFlushLatch.await(FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Timed out flushing sensor FIFOs");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -89,134 +347,232 @@ public class IMUManager implements SensorEventListener {
     public final void onAccuracyChanged(Sensor sensor, int accuracy) {
         if (sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
             linear_acc = accuracy;
+            mStreamStats.onAccuracyChanged(InertialStreamStats.SENSOR_ACCEL, accuracy);
         } else if (sensor.getType() == Sensor.TYPE_GYROSCOPE) {
             angular_acc = accuracy;
+            mStreamStats.onAccuracyChanged(InertialStreamStats.SENSOR_GYRO, accuracy);
         }
     }
 
-    // sync inertial data by interpolating linear acceleration for each gyro data
-    // Because the sensor events are delivered to the handler thread in order,
-    // no need for synchronization here
-    private SensorPacket syncInertialData() {
-        if (mGyroData.size() >= 1 && mAccelData.size() >= 2) {
-            SensorPacket oldestGyro = mGyroData.peekFirst();
-            SensorPacket oldestAccel = mAccelData.peekFirst();
-            SensorPacket latestAccel = mAccelData.peekLast();
-            if (oldestGyro.timestamp < oldestAccel.timestamp) {
-                Log.w(TAG, "throwing one gyro data");
-                mGyroData.removeFirst();
-            } else if (oldestGyro.timestamp > latestAccel.timestamp) {
-                Log.w(TAG, "throwing #accel data " + (mAccelData.size() - 1));
-                mAccelData.clear();
-                mAccelData.add(latestAccel);
-            } else { // linearly interpolate the accel data at the gyro timestamp
-                float[] gyro_accel = new float[6];
-                SensorPacket sp = new SensorPacket(oldestGyro.timestamp, gyro_accel);
-                gyro_accel[0] = oldestGyro.values[0];
-                gyro_accel[1] = oldestGyro.values[1];
-                gyro_accel[2] = oldestGyro.values[2];
-
-                SensorPacket leftAccel = null;
-                SensorPacket rightAccel = null;
-                Iterator<SensorPacket> itr = mAccelData.iterator();
-                while (itr.hasNext()) {
-                    SensorPacket packet = itr.next();
-                    if (packet.timestamp <= oldestGyro.timestamp) {
-                        leftAccel = packet;
-                    } else if (packet.timestamp >= oldestGyro.timestamp) {
-                        rightAccel = packet;
-                        break;
-                    }
-                }
-
-                if (oldestGyro.timestamp - leftAccel.timestamp <=
-                        mInterpolationTimeResolution) {
-                    gyro_accel[3] = leftAccel.values[0];
-                    gyro_accel[4] = leftAccel.values[1];
-                    gyro_accel[5] = leftAccel.values[2];
-                } else if (rightAccel.timestamp - oldestGyro.timestamp <=
-                        mInterpolationTimeResolution) {
-                    gyro_accel[3] = rightAccel.values[0];
-                    gyro_accel[4] = rightAccel.values[1];
-                    gyro_accel[5] = rightAccel.values[2];
-                } else {
-                    float ratio = (oldestGyro.timestamp - leftAccel.timestamp) /
-                            (rightAccel.timestamp - leftAccel.timestamp);
-                    gyro_accel[3] = leftAccel.values[0] +
-                            (rightAccel.values[0] - leftAccel.values[0]) * ratio;
-                    gyro_accel[4] = leftAccel.values[1] +
-                            (rightAccel.values[1] - leftAccel.values[1]) * ratio;
-                    gyro_accel[5] = leftAccel.values[2] +
-                            (rightAccel.values[2] - leftAccel.values[2]) * ratio;
-                }
-
-                mGyroData.removeFirst();
-                for (Iterator<SensorPacket> iterator = mAccelData.iterator();
-                     iterator.hasNext(); ) {
-                    SensorPacket packet = iterator.next();
-                    if (packet.timestamp < leftAccel.timestamp) {
-                        // Remove the current element from the iterator and the list.
-                        iterator.remove();
-                    } else {
-                        break;
-                    }
-                }
-                return sp;
-            }
+    @Override
+    public final void onFlushCompleted(Sensor sensor) {
+        // the flushed samples were delivered before this call, but may not be synced yet
+        syncBufferedData();
+        CountDownLatch latch = mFlushLatch;
+        if (latch != null) {
+            latch.countDown();
         }
-        return null;
     }
 
     @Override
     public final void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            SensorPacket sp = new SensorPacket(event.timestamp, event.values);
-            mAccelData.add(sp);
-        } else if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
-            SensorPacket sp = new SensorPacket(event.timestamp, event.values);
-            mGyroData.add(sp);
-            SensorPacket syncedData = syncInertialData();
-            if (syncedData != null && mRecordingInertialData) {
-                String delimiter = ",";
-                StringBuilder sb = new StringBuilder();
-                sb.append(syncedData.timestamp);
-                for (int index = 0; index < 6; ++index) {
-                    sb.append(delimiter + syncedData.values[index]);
-                }
-                try {
-                    Log.d("IMU","写入数据");
-                    mDataWriter.write(sb.toString() + "\n");
-                } catch (IOException ioe) {
-                    System.err.println("IOException: " + ioe.getMessage());
-                }
+        int type = event.sensor.getType();
+        mPipeline.capture(type, event.timestamp, event.values);
+        int stream = type < mStreamOfType.length ? mStreamOfType[type] : -1;
+        if (stream < 0 || !mPipeline.add(stream, event.timestamp, event.values)) {
+            return;
+        }
+        // a sample of the reference sensor
+        if (mMaxReportLatencyUs == 0) {
+            mPipeline.syncOnce();
+        } else if (!mSyncPosted) {
+            // A batch is delivered in one pass of the sensor looper, so the posted
+            // runnable runs after its last event, and syncs the whole batch at once.
+            mSyncPosted = true;
+            mSensorHandler.post(mSyncBatch);
+        }
+    }
+
+    private void pollDirectChannel() {
+        try {
+            // leave room in the synchronizer buffers for the samples that bracket
+            // the decoded reference samples
+            while (mReportReader.poll(SENSOR_BUFFER_CAPACITY / 2) > 0) {
+                syncBufferedData();
             }
+        } catch (IOException err) {
+            Log.e(TAG, "Error reading sensor direct channel: " + err.getMessage());
         }
     }
 
+    private void syncBufferedData() {
+        mPipeline.syncAll();
+    }
+
     /**
      * This will register all IMU listeners
      * https://stackoverflow.com/questions/3286815/sensoreventlistener-in-separate-thread
+     * <p>
+     * Does nothing if already registered.  The activity registers on every resume, while
+     * the listeners, their sensor thread and an ongoing recording go on across a pause;
+     * a second sensor thread would sync the buffers that the first one still fills.  So
+     * the settings for the next register() take effect after unregister().
      */
     public void register() {
+        if (mRegistered) {
+            return;
+        }
+        mRegistered = true;
+        if (mReportReader != null) {
+            // never left open by unregister(), but a leaked channel would keep its shared
+            // memory and its chain of polls for good
+            stopDirectChannel();
+        }
         mSensorThread = new HandlerThread("Sensor thread",
                 Process.THREAD_PRIORITY_MORE_FAVORABLE);
         mSensorThread.start();
         // Blocks until looper is prepared, which is fairly quick
-        Handler sensorHandler = new Handler(mSensorThread.getLooper());
-        mSensorManager.registerListener(
-                this, mAccel, mSensorRate, sensorHandler);
-        mSensorManager.registerListener(
-                this, mGyro, mSensorRate, sensorHandler);
+        mSensorHandler = new Handler(mSensorThread.getLooper());
+        // room for a whole batch of each sensor, with a margin for late deliveries
+        int batchSize = (int) (2L * mMaxReportLatencyUs / mSensorRate);
+        int capacity = Math.max(SENSOR_BUFFER_CAPACITY, batchSize);
+        mSyncPosted = false;
+        mBatchCount = 0;
+        mMotionSensors.clear();
+        Arrays.fill(mStreamOfType, -1);
+        mStreamOfType[Sensor.TYPE_GYROSCOPE] = StreamSynchronizer.STREAM_GYRO;
+        mStreamOfType[Sensor.TYPE_ACCELEROMETER] = StreamSynchronizer.STREAM_ACCEL;
+        StreamSynchronizer synchronizer = mRecordMotionSensors ?
+                createMultiSynchronizer(capacity) :
+                new InertialSynchronizer(capacity, mReferenceSensor, mInterpolator);
+        mPipeline = new InertialPipeline(synchronizer, mStreamStats);
+        if (mRecordMotionSensors) {
+            Log.i(TAG, "Recording motion sensor channels " +
+                    Arrays.toString(synchronizer.getChannelNames()));
+        } else if (mUseDirectChannel && registerDirectChannel()) {
+            return;
+        }
+        mRegisteredSensorCount = 2 + mMotionSensors.size();
+        if (mMaxReportLatencyUs == 0) {
+            mSensorManager.registerListener(
+                    this, mAccel, mSensorRate, mSensorHandler);
+            mSensorManager.registerListener(
+                    this, mGyro, mSensorRate, mSensorHandler);
+            for (Sensor sensor : mMotionSensors) {
+                mSensorManager.registerListener(this, sensor, mSensorRate, mSensorHandler);
+            }
+        } else {
+            Log.i(TAG, "Batching sensors for " + mMaxReportLatencyUs + " us, FIFO sizes: " +
+                    "accel reserved " + mAccel.getFifoReservedEventCount() +
+                    " max " + mAccel.getFifoMaxEventCount() +
+                    ", gyro reserved " + mGyro.getFifoReservedEventCount() +
+                    " max " + mGyro.getFifoMaxEventCount());
+            mSensorManager.registerListener(
+                    this, mAccel, mSensorRate, mMaxReportLatencyUs, mSensorHandler);
+            mSensorManager.registerListener(
+                    this, mGyro, mSensorRate, mMaxReportLatencyUs, mSensorHandler);
+            for (Sensor sensor : mMotionSensors) {
+                mSensorManager.registerListener(
+                        this, sensor, mSensorRate, mMaxReportLatencyUs, mSensorHandler);
+            }
+        }
+    }
+
+    private MultiSensorSynchronizer createMultiSynchronizer(int capacity) {
+        MultiSensorSynchronizer synchronizer = new MultiSensorSynchronizer(capacity);
+        String[] names = CsvInertialSink.CHANNEL_NAMES;
+        // STREAM_GYRO and STREAM_ACCEL
+        synchronizer.addStream(Arrays.copyOfRange(names, 0, 3), mInterpolator);
+        synchronizer.addStream(Arrays.copyOfRange(names, 3, 6), mInterpolator);
+        for (int i = 0; i < MOTION_SENSOR_TYPES.length; ++i) {
+            Sensor sensor = mSensorManager.getDefaultSensor(MOTION_SENSOR_TYPES[i]);
+            if (sensor == null) {
+                continue;
+            }
+            // components of a quaternion cannot be interpolated independently
+            SampleInterpolator interpolator =
+                    MOTION_SENSOR_TYPES[i] == Sensor.TYPE_GAME_ROTATION_VECTOR ?
+                            new HoldLastInterpolator() : mInterpolator;
+            mStreamOfType[MOTION_SENSOR_TYPES[i]] =
+                    synchronizer.addStream(MOTION_SENSOR_CHANNELS[i], interpolator);
+            mMotionSensors.add(sensor);
+        }
+        // reference sensors are numbered as their streams
+        synchronizer.start(mReferenceSensor);
+        return synchronizer;
+    }
+
+    @TargetApi(Build.VERSION_CODES.O)
+    private boolean registerDirectChannel() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O ||
+                !mAccel.isDirectChannelTypeSupported(SensorDirectChannel.TYPE_MEMORY_FILE) ||
+                !mGyro.isDirectChannelTypeSupported(SensorDirectChannel.TYPE_MEMORY_FILE)) {
+            Log.w(TAG, "Sensor direct channel is not supported, using listeners");
+            return false;
+        }
+        int rateLevel = Math.min(SensorDirectChannel.RATE_VERY_FAST,
+                Math.min(mAccel.getHighestDirectReportRateLevel(),
+                        mGyro.getHighestDirectReportRateLevel()));
+        try {
+            mReportRing = new MemoryFileReportRing(new MemoryFile("imu_direct_channel",
+                    DIRECT_CHANNEL_EVENTS * DirectReportReader.EVENT_SIZE));
+            mDirectChannel = mSensorManager.createDirectChannel(mReportRing.getMemoryFile());
+            int accelToken = mDirectChannel.configure(mAccel, rateLevel);
+            int gyroToken = mDirectChannel.configure(mGyro, rateLevel);
+            if (accelToken <= 0 || gyroToken <= 0) {
+                throw new IOException("configuring rate level " + rateLevel + " failed");
+            }
+            mReportReader = new DirectReportReader(mReportRing, accelToken, gyroToken,
+                    mPipeline);
+        } catch (IOException | RuntimeException err) {
+            Log.e(TAG, "Failed to open sensor direct channel: " + err.getMessage());
+            closeDirectChannel();
+            return false;
+        }
+        Log.i(TAG, "Reading sensors through a direct channel at rate level " + rateLevel);
+        mSensorHandler.postDelayed(mPollDirectChannel, DIRECT_CHANNEL_POLL_INTERVAL_MS);
+        return true;
+    }
+
+    // stops the polls and the sensor thread of a direct channel, then releases it
+    private void stopDirectChannel() {
+        mSensorHandler.removeCallbacks(mPollDirectChannel);
+        mSensorThread.quitSafely();
+        // a poll may still be running until the thread has quit
+        try {
+            mSensorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeDirectChannel();
+    }
+
+    // releases the channel and shared memory of registerDirectChannel(), whose polls must
+    // have stopped
+    @TargetApi(Build.VERSION_CODES.O)
+    private void closeDirectChannel() {
+        if (mDirectChannel != null) {
+            mDirectChannel.close();
+            mDirectChannel = null;
+        }
+        if (mReportRing != null) {
+            mReportRing.close();
+            mReportRing = null;
+        }
+        if (mReportReader != null) {
+            Log.i(TAG, "Sensor direct channel events " + mReportReader.getEventCount() +
+                    ", lost " + mReportReader.getLostEventCount());
+            mReportReader = null;
+        }
     }
 
     /**
      * This will unregister all IMU listeners
      */
     public void unregister() {
-        mSensorManager.unregisterListener(this, mAccel);
-        mSensorManager.unregisterListener(this, mGyro);
-        mSensorManager.unregisterListener(this);
-        mSensorThread.quitSafely();
+        if (!mRegistered) {
+            return;
+        }
+        mRegistered = false;
+        // stop first, so that batched samples are flushed while the listeners are registered
         stopRecording();
+        if (mReportReader != null) {
+            stopDirectChannel();
+        } else {
+            mSensorManager.unregisterListener(this, mAccel);
+            mSensorManager.unregisterListener(this, mGyro);
+            mSensorManager.unregisterListener(this);
+            mSensorThread.quitSafely();
+        }
     }
 }
@@ -0,0 +1,36 @@
+package edu.osu.pcv.marslogger;
+
+import android.os.MemoryFile;
+
+import java.io.IOException;
+
+import edu.osu.pcv.marslogger.imu.DirectReportRing;
+
+/**
+ * The shared memory of a SensorDirectChannel of type TYPE_MEMORY_FILE.
+ */
+public class MemoryFileReportRing implements DirectReportRing {
+    private final MemoryFile mMemoryFile;
+
+    public MemoryFileReportRing(MemoryFile memoryFile) {
+        mMemoryFile = memoryFile;
+    }
+
+    public MemoryFile getMemoryFile() {
+        return mMemoryFile;
+    }
+
+    @Override
+    public int length() {
+        return mMemoryFile.length();
+    }
+
+    @Override
+    public void read(int offset, byte[] dst, int dstOffset, int count) throws IOException {
+        mMemoryFile.readBytes(dst, offset, dstOffset, count);
+    }
+
+    public void close() {
+        mMemoryFile.close();
+    }
+}
@@ -27,6 +27,7 @@ import android.util.Log;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 
+import edu.osu.pcv.marslogger.camera.EncodedFrameListener;
 import edu.osu.pcv.marslogger.gles.EglCore;
 import edu.osu.pcv.marslogger.gles.FullFrameRect;
 import edu.osu.pcv.marslogger.gles.Texture2dProgram;
@@ -78,6 +79,7 @@ public class TextureMovieEncoder implements Runnable {
 
     // ----- accessed by multiple threads -----
     private volatile EncoderHandler mHandler;
+    private volatile EncodedFrameListener mEncodedFrameListener;
 
     private Object mReadyFence = new Object();      // guards ready/running
     private boolean mReady;
@@ -150,6 +152,15 @@ public class TextureMovieEncoder implements Runnable {
         mHandler.sendMessage(mHandler.obtainMessage(MSG_START_RECORDING, config));
     }
 
+    /**
+     * Sets the listener told of every encoded frame by the encoders of the following
+     * recordings, or null.  The encoder outlives activities, so clear the listener when
+     * its owner goes away.  (Call from non-encoder thread.)
+     */
+    public void setEncodedFrameListener(EncodedFrameListener listener) {
+        mEncodedFrameListener = listener;
+    }
+
     /**
      * Tells the video recorder to stop recording.  (Call from non-encoder thread.)
      * <p>
@@ -390,7 +401,7 @@ public class TextureMovieEncoder implements Runnable {
                                 String outputFile, String metaFile) {
         try {
             mVideoEncoder = new VideoEncoderCore(
-                    width, height, bitRate, outputFile, metaFile);
+                    width, height, bitRate, outputFile, metaFile, mEncodedFrameListener);
         } catch (IOException ioe) {
             throw new RuntimeException(ioe);
         }
@@ -23,12 +23,13 @@ import android.media.MediaMuxer;
 import android.util.Log;
 import android.view.Surface;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
+import edu.osu.pcv.marslogger.camera.EncodedFrameListener;
+import edu.osu.pcv.marslogger.util.CsvLineEncoder;
+
 /**
  * This class wraps up the core components used for surface-input video encoding.
  * <p>
@@ -54,15 +55,21 @@ public class VideoEncoderCore {
     private MediaCodec.BufferInfo mBufferInfo;
     private int mTrackIndex;
     private boolean mMuxerStarted;
-    private BufferedWriter mFrameMetadataWriter = null;
+    private CsvLineEncoder mFrameMetadataWriter = null;
     private ArrayList<Long> mTimeArray = null;
+    private final EncodedFrameListener mEncodedFrameListener;
 
     /**
      * Configures encoder and muxer state, and prepares the input Surface.
+     *
+     * @param encodedFrameListener told of the presentation time of every frame written
+     *                             to the muxer, or null
      */
     public VideoEncoderCore(int width, int height, int bitRate,
-                            String outputFile, String metaFile)
+                            String outputFile, String metaFile,
+                            EncodedFrameListener encodedFrameListener)
             throws IOException {
+        mEncodedFrameListener = encodedFrameListener;
         mBufferInfo = new MediaCodec.BufferInfo();
 
         MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
@@ -96,8 +103,7 @@ public class VideoEncoderCore {
         mMuxerStarted = false;
 
         try {
-            mFrameMetadataWriter = new BufferedWriter(
-                    new FileWriter(metaFile, false));
+            mFrameMetadataWriter = new CsvLineEncoder(metaFile);
         } catch (IOException err) {
             System.err.println("IOException in opening frameMetadataWriter: " + err.getMessage());
         }
@@ -130,11 +136,11 @@ public class VideoEncoderCore {
         }
         if (mFrameMetadataWriter != null) {
             try {
-                mFrameMetadataWriter.write("Frame timestamp[nanosec]\n");
+                mFrameMetadataWriter.appendAscii("Frame timestamp[nanosec]").endLine();
                 for (Long value : mTimeArray) {
-                    mFrameMetadataWriter.write(value.toString() + "000\n");
+                    // presentation times are in microseconds
+                    mFrameMetadataWriter.append(value * 1000L).endLine();
                 }
-                mFrameMetadataWriter.flush();
                 mFrameMetadataWriter.close();
             } catch (IOException err) {
                 System.err.println("IOException in closing frameMetadataWriter: " + err.getMessage());
@@ -214,6 +220,9 @@ public class VideoEncoderCore {
                     encodedData.position(mBufferInfo.offset);
                     encodedData.limit(mBufferInfo.offset + mBufferInfo.size);
                     mTimeArray.add(mBufferInfo.presentationTimeUs);
+                    if (mEncodedFrameListener != null) {
+                        mEncodedFrameListener.onFrameEncoded(mBufferInfo.presentationTimeUs);
+                    }
                     mMuxer.writeSampleData(mTrackIndex, encodedData, mBufferInfo);
                     if (VERBOSE) {
                         Log.d(TAG, "sent " + mBufferInfo.size + " bytes to muxer, ts=" +
@@ -0,0 +1,114 @@
+package edu.osu.pcv.marslogger.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+import edu.osu.pcv.marslogger.imu.InertialSynchronizer;
+import edu.osu.pcv.marslogger.util.CsvLineEncoder;
+
+/**
+ * Cost per line of formatting synced samples as gyro_accel.csv, with CsvLineEncoder and
+ * with the StringBuilder and BufferedWriter path it replaced, into a discarding stream.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+    static final int LINE_COUNT = 1024;
+
+    private static final OutputStream NULL_STREAM = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private final long[] mTimestamps = new long[LINE_COUNT];
+    private final float[] mValues = new float[LINE_COUNT * InertialSynchronizer.SYNCED_VALUE_COUNT];
+    private CsvLineEncoder mEncoder;
+    private BufferedWriter mWriter;
+    private final StringBuilder mLine = new StringBuilder(128);
+
+    /**
+     * Syncs a synthetic 200 Hz stream into timestamps.length samples.
+     */
+    static void syncedSamples(long[] timestamps, float[] values) {
+        SyntheticImuStream stream = new SyntheticImuStream(4 * timestamps.length, 200, 200,
+                100000, 1250000, 42);
+        InertialSynchronizer synchronizer = new InertialSynchronizer(256);
+        int count = 0;
+        for (int event = 0; event < stream.size() && count < timestamps.length; ++event) {
+            if (stream.getStream(event) == InertialSynchronizer.REFERENCE_GYRO) {
+                synchronizer.addGyro(stream.getTimestamp(event), stream.getValues(event));
+            } else {
+                synchronizer.addAccel(stream.getTimestamp(event), stream.getValues(event));
+            }
+            while (count < timestamps.length &&
+                    synchronizer.sync() == InertialSynchronizer.RESULT_SYNCED) {
+                timestamps[count] = synchronizer.getSyncedTimestamp();
+                System.arraycopy(synchronizer.getSyncedValues(), 0, values,
+                        count * InertialSynchronizer.SYNCED_VALUE_COUNT,
+                        InertialSynchronizer.SYNCED_VALUE_COUNT);
+                ++count;
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        syncedSamples(mTimestamps, mValues);
+        mEncoder = new CsvLineEncoder(Channels.newChannel(NULL_STREAM),
+                CsvLineEncoder.DEFAULT_BUFFER_SIZE);
+        mWriter = new BufferedWriter(new OutputStreamWriter(NULL_STREAM, "US-ASCII"));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINE_COUNT)
+    public void encoder() throws IOException {
+        int width = InertialSynchronizer.SYNCED_VALUE_COUNT;
+        for (int line = 0; line < LINE_COUNT; ++line) {
+            mEncoder.append(mTimestamps[line]);
+            for (int index = 0; index < width; ++index) {
+                mEncoder.delimiter().append(mValues[line * width + index]);
+            }
+            mEncoder.endLine();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINE_COUNT)
+    public void stringBuilder() throws IOException {
+        int width = InertialSynchronizer.SYNCED_VALUE_COUNT;
+        for (int line = 0; line < LINE_COUNT; ++line) {
+            mLine.setLength(0);
+            mLine.append(mTimestamps[line]);
+            for (int index = 0; index < width; ++index) {
+                mLine.append(',').append(mValues[line * width + index]);
+            }
+            mLine.append('\n');
+            mWriter.write(mLine.toString());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package edu.osu.pcv.marslogger.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import edu.osu.pcv.marslogger.imu.SampleInterpolator;
+import edu.osu.pcv.marslogger.imu.SensorRingBuffer;
+import edu.osu.pcv.marslogger.imu.StreamSynchronizer;
+
+/**
+ * Cost per synced sample of each SampleInterpolator alone, estimating a jittery 200 Hz
+ * accelerometer at the times of a 200 Hz gyro out of phase with it.  The cost of syncing
+ * with each interpolator is in PipelineBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpolatorBenchmark {
+    private static final int SAMPLE_COUNT = 256;
+    // samples kept clear at either end for the history and lookahead of any interpolator
+    private static final int MARGIN = 4;
+    private static final int QUERY_COUNT = SAMPLE_COUNT / 2;
+
+    @Param({"linear", "cubic", "hold"})
+    public String interpolator;
+
+    private SampleInterpolator mInterpolator;
+    private SensorRingBuffer mSamples;
+    private final long[] mTimes = new long[QUERY_COUNT];
+    private final int[] mLefts = new int[QUERY_COUNT];
+    private final float[] mValues = new float[SyntheticImuStream.VALUE_COUNT];
+
+    @Setup
+    public void setUp() {
+        mInterpolator = PipelineBenchmark.createInterpolator(interpolator);
+        // about SAMPLE_COUNT events of each sensor
+        SyntheticImuStream stream = new SyntheticImuStream(2 * SAMPLE_COUNT, 200, 200,
+                200000, 1250000, 42);
+        mSamples = new SensorRingBuffer(SAMPLE_COUNT, SyntheticImuStream.VALUE_COUNT);
+        for (int event = 0; event < stream.size(); ++event) {
+            if (stream.getStream(event) == StreamSynchronizer.STREAM_ACCEL) {
+                mSamples.add(stream.getTimestamp(event), stream.getValues(event));
+            }
+        }
+        long first = mSamples.getTimestamp(MARGIN);
+        long last = mSamples.getTimestamp(mSamples.size() - MARGIN);
+        int query = 0;
+        for (int event = 0; event < stream.size() && query < QUERY_COUNT; ++event) {
+            long time = stream.getTimestamp(event);
+            if (stream.getStream(event) == StreamSynchronizer.STREAM_GYRO &&
+                    time >= first && time < last) {
+                mTimes[query] = time;
+                mLefts[query] = mSamples.floorIndex(time, 0);
+                ++query;
+            }
+        }
+        if (query < QUERY_COUNT) {
+            throw new IllegalStateException("only " + query + " gyro times to query");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY_COUNT)
+    public float interpolate() {
+        SampleInterpolator interpolator = mInterpolator;
+        float sum = 0;
+        for (int query = 0; query < QUERY_COUNT; ++query) {
+            interpolator.interpolate(mSamples, mLefts[query], mTimes[query], mValues, 0);
+            sum += mValues[0];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,113 @@
+package edu.osu.pcv.marslogger.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * The ArrayDeque based syncing that InertialSynchronizer replaced in IMUManager, kept
+ * verbatim apart from logging, as the baseline of SyncBaselineBenchmark.
+ * <p>
+ * Note that its interpolation ratio is a long division, which truncates to 0, so an
+ * accel sample is in effect the left neighbor of the gyro sample, taken once a right
+ * neighbor has arrived.
+ */
+public class LegacyDequeSynchronizer {
+    private final long mInterpolationTimeResolution = 500;
+
+    public static class SensorPacket {
+        public long timestamp;
+        public float[] values;
+
+        SensorPacket(long time, float[] vals) {
+            timestamp = time;
+            values = vals;
+        }
+    }
+
+    private Deque<SensorPacket> mGyroData = new ArrayDeque<>();
+    private Deque<SensorPacket> mAccelData = new ArrayDeque<>();
+
+    public void addGyro(long timestamp, float[] values) {
+        mGyroData.add(new SensorPacket(timestamp, values.clone()));
+    }
+
+    public void addAccel(long timestamp, float[] values) {
+        mAccelData.add(new SensorPacket(timestamp, values.clone()));
+    }
+
+    /**
+     * Number of gyro samples not yet synced or dropped, which tells a caller whether a
+     * null from syncInertialData() dropped a sample or waits for more.
+     */
+    public int getGyroCount() {
+        return mGyroData.size();
+    }
+
+    public SensorPacket syncInertialData() {
+        if (mGyroData.size() >= 1 && mAccelData.size() >= 2) {
+            SensorPacket oldestGyro = mGyroData.peekFirst();
+            SensorPacket oldestAccel = mAccelData.peekFirst();
+            SensorPacket latestAccel = mAccelData.peekLast();
+            if (oldestGyro.timestamp < oldestAccel.timestamp) {
+                mGyroData.removeFirst();
+            } else if (oldestGyro.timestamp > latestAccel.timestamp) {
+                mAccelData.clear();
+                mAccelData.add(latestAccel);
+            } else {
+                float[] gyro_accel = new float[6];
+                SensorPacket sp = new SensorPacket(oldestGyro.timestamp, gyro_accel);
+                gyro_accel[0] = oldestGyro.values[0];
+                gyro_accel[1] = oldestGyro.values[1];
+                gyro_accel[2] = oldestGyro.values[2];
+
+                SensorPacket leftAccel = null;
+                SensorPacket rightAccel = null;
+                Iterator<SensorPacket> itr = mAccelData.iterator();
+                while (itr.hasNext()) {
+                    SensorPacket packet = itr.next();
+                    if (packet.timestamp <= oldestGyro.timestamp) {
+                        leftAccel = packet;
+                    } else if (packet.timestamp >= oldestGyro.timestamp) {
+                        rightAccel = packet;
+                        break;
+                    }
+                }
+
+                if (oldestGyro.timestamp - leftAccel.timestamp <=
+                        mInterpolationTimeResolution) {
+                    gyro_accel[3] = leftAccel.values[0];
+                    gyro_accel[4] = leftAccel.values[1];
+                    gyro_accel[5] = leftAccel.values[2];
+                } else if (rightAccel.timestamp - oldestGyro.timestamp <=
+                        mInterpolationTimeResolution) {
+                    gyro_accel[3] = rightAccel.values[0];
+                    gyro_accel[4] = rightAccel.values[1];
+                    gyro_accel[5] = rightAccel.values[2];
+                } else {
+                    float ratio = (oldestGyro.timestamp - leftAccel.timestamp) /
+                            (rightAccel.timestamp - leftAccel.timestamp);
+                    gyro_accel[3] = leftAccel.values[0] +
+                            (rightAccel.values[0] - leftAccel.values[0]) * ratio;
+                    gyro_accel[4] = leftAccel.values[1] +
+                            (rightAccel.values[1] - leftAccel.values[1]) * ratio;
+                    gyro_accel[5] = leftAccel.values[2] +
+                            (rightAccel.values[2] - leftAccel.values[2]) * ratio;
+                }
+
+                mGyroData.removeFirst();
+                for (Iterator<SensorPacket> iterator = mAccelData.iterator();
+                     iterator.hasNext(); ) {
+                    SensorPacket packet = iterator.next();
+                    if (packet.timestamp < leftAccel.timestamp) {
+                        iterator.remove();
+                    } else {
+                        break;
+                    }
+                }
+                return sp;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package edu.osu.pcv.marslogger.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import edu.osu.pcv.marslogger.imu.InertialSynchronizer;
+import edu.osu.pcv.marslogger.imu.LinearInterpolator;
+import edu.osu.pcv.marslogger.imu.MultiSensorSynchronizer;
+
+/**
+ * Cost per input sample of MultiSensorSynchronizer as streams are added, each a 200 Hz
+ * stream with one value and its own phase, synced on every round of samples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiSensorBenchmark {
+    private static final long PERIOD_NS = 5000000;
+    private static final long PHASE_NS = 100000;
+    // rounds of one sample per stream per invocation
+    private static final int ROUND_COUNT = 1024;
+
+    @Param({"2", "3", "4", "6", "8", "12"})
+    public int streamCount;
+
+    private MultiSensorSynchronizer mSynchronizer;
+    private final float[] mValues = {1f};
+    private long mRound;
+
+    @Setup
+    public void setUp() {
+        mSynchronizer = new MultiSensorSynchronizer(64);
+        for (int i = 0; i < streamCount; ++i) {
+            mSynchronizer.addStream(new String[]{"v" + i}, new LinearInterpolator());
+        }
+        mSynchronizer.start(0);
+        mRound = 0;
+    }
+
+    /**
+     * The score is per round of one sample of every stream; divide it by streamCount for
+     * the cost per input sample.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROUND_COUNT)
+    public long addAndSync() {
+        MultiSensorSynchronizer synchronizer = mSynchronizer;
+        long checksum = 0;
+        for (int i = 0; i < ROUND_COUNT; ++i, ++mRound) {
+            for (int stream = 0; stream < streamCount; ++stream) {
+                synchronizer.add(stream, mRound * PERIOD_NS + stream * PHASE_NS, mValues);
+            }
+            while (synchronizer.sync() != InertialSynchronizer.RESULT_NOT_READY) {
+                checksum += synchronizer.getSyncedTimestamp();
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,131 @@
+package edu.osu.pcv.marslogger.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import edu.osu.pcv.marslogger.imu.CubicHermiteInterpolator;
+import edu.osu.pcv.marslogger.imu.HoldLastInterpolator;
+import edu.osu.pcv.marslogger.imu.InertialPipeline;
+import edu.osu.pcv.marslogger.imu.InertialStreamStats;
+import edu.osu.pcv.marslogger.imu.InertialSynchronizer;
+import edu.osu.pcv.marslogger.imu.LinearInterpolator;
+import edu.osu.pcv.marslogger.imu.SampleInterpolator;
+
+/**
+ * Costs per sensor event of the sensor thread's side of the pipeline: feeding samples to
+ * the synchronizer, and syncing them the way IMUManager does, per reference event with
+ * listeners, or once per batch with hardware batching.  Nothing is recorded, so the
+ * writer hand-off is left to WriteBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+    static final int EVENT_COUNT = 4096;
+    // events per sync with batching, about 100 ms of both sensors at 200 Hz
+    private static final int BATCH_SIZE = 40;
+
+    @Param({"200", "400"})
+    public double gyroRateHz;
+
+    @Param({"200", "100"})
+    public double accelRateHz;
+
+    @Param({"0", "200"})
+    public long jitterUs;
+
+    @Param({"0", "1250"})
+    public long accelPhaseUs;
+
+    @Param({"linear", "cubic", "hold"})
+    public String interpolator;
+
+    private SyntheticImuStream mStream;
+    private InertialPipeline mPipeline;
+    private long mLapOffset;
+
+    static SampleInterpolator createInterpolator(String name) {
+        if (name.equals("cubic")) {
+            return new CubicHermiteInterpolator();
+        } else if (name.equals("hold")) {
+            return new HoldLastInterpolator();
+        }
+        return new LinearInterpolator();
+    }
+
+    @Setup
+    public void setUp() {
+        mStream = new SyntheticImuStream(EVENT_COUNT, gyroRateHz, accelRateHz,
+                jitterUs * 1000, accelPhaseUs * 1000, 42);
+        mPipeline = new InertialPipeline(new InertialSynchronizer(256,
+                InertialSynchronizer.REFERENCE_GYRO, createInterpolator(interpolator)),
+                new InertialStreamStats());
+        mLapOffset = 0;
+    }
+
+    /**
+     * Feeding only, the buffers overwrite their oldest samples.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void add() {
+        SyntheticImuStream stream = mStream;
+        for (int event = 0; event < EVENT_COUNT; ++event) {
+            mPipeline.add(stream.getStream(event), stream.getTimestamp(event) + mLapOffset,
+                    stream.getValues(event));
+        }
+        mLapOffset += stream.getSpan();
+    }
+
+    /**
+     * The listener path, a sync attempt on every reference event.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public int addAndSync() {
+        SyntheticImuStream stream = mStream;
+        int synced = 0;
+        for (int event = 0; event < EVENT_COUNT; ++event) {
+            if (mPipeline.add(stream.getStream(event), stream.getTimestamp(event) + mLapOffset,
+                    stream.getValues(event))) {
+                synced += mPipeline.syncOnce() == InertialSynchronizer.RESULT_SYNCED ? 1 : 0;
+            }
+        }
+        mLapOffset += stream.getSpan();
+        return synced;
+    }
+
+    /**
+     * The batching path, all buffered samples are synced after each batch.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public int addAndSyncBatched() {
+        SyntheticImuStream stream = mStream;
+        int synced = 0;
+        for (int event = 0; event < EVENT_COUNT; ++event) {
+            mPipeline.add(stream.getStream(event), stream.getTimestamp(event) + mLapOffset,
+                    stream.getValues(event));
+            if (event % BATCH_SIZE == BATCH_SIZE - 1) {
+                synced += mPipeline.syncAll();
+            }
+        }
+        mLapOffset += stream.getSpan();
+        return synced + mPipeline.syncAll();
+    }
+}
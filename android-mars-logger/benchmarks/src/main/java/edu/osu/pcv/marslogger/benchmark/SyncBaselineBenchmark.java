@@ -0,0 +1,109 @@
+package edu.osu.pcv.marslogger.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import edu.osu.pcv.marslogger.imu.InertialSynchronizer;
+import edu.osu.pcv.marslogger.imu.StreamSynchronizer;
+
+/**
+ * Cost per sensor event of InertialSynchronizer against the ArrayDeque syncing it
+ * replaced, a 400 Hz gyro and a 500 Hz accelerometer out of phase delivered in bursts of
+ * up to maxBurstPeriods gyro periods per sensor.  Both sync after every event until they
+ * make no progress, and LegacyDequeSynchronizerTest checks that they agree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyncBaselineBenchmark {
+    static final int EVENT_COUNT = 4096;
+    static final double GYRO_RATE_HZ = 400;
+    static final double ACCEL_RATE_HZ = 500;
+    static final long JITTER_NS = 100000;
+    static final long ACCEL_PHASE_NS = 700000;
+    // room for the longest burst of either sensor
+    static final int CAPACITY = 4096;
+
+    @Param({"1", "8", "64", "256"})
+    public int maxBurstPeriods;
+
+    private SyntheticImuStream mStream;
+    private int[] mOrder;
+    private InertialSynchronizer mSynchronizer;
+    private LegacyDequeSynchronizer mLegacy;
+    private long mLapOffset;
+
+    static SyntheticImuStream createStream() {
+        return new SyntheticImuStream(EVENT_COUNT, GYRO_RATE_HZ, ACCEL_RATE_HZ, JITTER_NS,
+                ACCEL_PHASE_NS, 42);
+    }
+
+    static long burstNanos(int periods) {
+        return (long) (periods * 1e9 / GYRO_RATE_HZ);
+    }
+
+    @Setup
+    public void setUp() {
+        mStream = createStream();
+        mOrder = mStream.burstOrder(burstNanos(maxBurstPeriods), 7);
+        mSynchronizer = new InertialSynchronizer(CAPACITY);
+        mLegacy = new LegacyDequeSynchronizer();
+        mLapOffset = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public int ringBuffer() {
+        SyntheticImuStream stream = mStream;
+        InertialSynchronizer synchronizer = mSynchronizer;
+        int synced = 0;
+        for (int event : mOrder) {
+            synchronizer.add(stream.getStream(event), stream.getTimestamp(event) + mLapOffset,
+                    stream.getValues(event));
+            int result;
+            while ((result = synchronizer.sync()) != InertialSynchronizer.RESULT_NOT_READY) {
+                synced += result == InertialSynchronizer.RESULT_SYNCED ? 1 : 0;
+            }
+        }
+        mLapOffset += stream.getSpan();
+        return synced;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public int legacyDeque() {
+        SyntheticImuStream stream = mStream;
+        LegacyDequeSynchronizer legacy = mLegacy;
+        int synced = 0;
+        for (int event : mOrder) {
+            long timestamp = stream.getTimestamp(event) + mLapOffset;
+            if (stream.getStream(event) == StreamSynchronizer.STREAM_GYRO) {
+                legacy.addGyro(timestamp, stream.getValues(event));
+            } else {
+                legacy.addAccel(timestamp, stream.getValues(event));
+            }
+            int before;
+            do {
+                before = legacy.getGyroCount();
+                synced += legacy.syncInertialData() != null ? 1 : 0;
+            } while (legacy.getGyroCount() < before);
+        }
+        mLapOffset += stream.getSpan();
+        return synced;
+    }
+}
@@ -0,0 +1,141 @@
+package edu.osu.pcv.marslogger.benchmark;
+
+import java.util.Random;
+
+import edu.osu.pcv.marslogger.imu.StreamSynchronizer;
+
+/**
+ * A deterministic, time-ordered sequence of gyro and accelerometer events, as a sensor
+ * thread would receive them.
+ * <p>
+ * Each sensor samples at its own rate, the accelerometer shifted by a phase offset from
+ * the gyro, and every timestamp deviates from its nominal time by a uniform jitter.  The
+ * jitter is limited to less than half a period, so that each stream stays in order.
+ * Events can be replayed any number of laps with shifted timestamps, see getSpan(), and
+ * in the bursty order of batched delivery, see burstOrder().
+ */
+public class SyntheticImuStream {
+    public static final int VALUE_COUNT = 3;
+
+    private final int[] mStreams;
+    private final long[] mTimestamps;
+    private final float[][] mValues;
+    private final long mSpan;
+
+    /**
+     * @param eventCount  number of gyro and accel events in total
+     * @param jitterNs    largest deviation of a timestamp from its nominal time
+     * @param accelPhaseNs offset of the accelerometer sampling times from those of the gyro
+     */
+    public SyntheticImuStream(int eventCount, double gyroRateHz, double accelRateHz,
+                              long jitterNs, long accelPhaseNs, long seed) {
+        Random random = new Random(seed);
+        double gyroPeriod = 1e9 / gyroRateHz;
+        double accelPeriod = 1e9 / accelRateHz;
+        long gyroJitter = Math.min(jitterNs, (long) (gyroPeriod / 2) - 1);
+        long accelJitter = Math.min(jitterNs, (long) (accelPeriod / 2) - 1);
+        mStreams = new int[eventCount];
+        mTimestamps = new long[eventCount];
+        mValues = new float[eventCount][VALUE_COUNT];
+
+        // both streams start a second in, so that jitter and phase never go negative
+        long start = 1000000000L;
+        int gyroIndex = 0;
+        int accelIndex = 0;
+        long gyroTime = start + jitter(random, gyroJitter);
+        long accelTime = start + accelPhaseNs + jitter(random, accelJitter);
+        for (int event = 0; event < eventCount; ++event) {
+            boolean gyro = gyroTime <= accelTime;
+            long time = gyro ? gyroTime : accelTime;
+            mStreams[event] = gyro ? StreamSynchronizer.STREAM_GYRO :
+                    StreamSynchronizer.STREAM_ACCEL;
+            mTimestamps[event] = time;
+            for (int axis = 0; axis < VALUE_COUNT; ++axis) {
+                // a slow rotation, or gravity with a little vibration
+                double phase = time * 1e-9 * (axis + 1);
+                mValues[event][axis] = gyro ? (float) Math.sin(phase) :
+                        (float) (9.81 * Math.cos(phase) + 0.05 * random.nextGaussian());
+            }
+            if (gyro) {
+                gyroTime = start + (long) (++gyroIndex * gyroPeriod) +
+                        jitter(random, gyroJitter);
+            } else {
+                accelTime = start + accelPhaseNs + (long) (++accelIndex * accelPeriod) +
+                        jitter(random, accelJitter);
+            }
+        }
+        // a whole number of gyro periods past the last event, so the next lap stays in order
+        long end = Math.max(gyroTime, accelTime) + 2 * jitterNs;
+        mSpan = (long) (Math.ceil((end - start) / gyroPeriod) * gyroPeriod);
+    }
+
+    /**
+     * An order of delivery in bursts, as when the HAL drains the FIFO of each sensor on
+     * its own: at random intervals of up to maxBurstNs, each sensor hands over all the
+     * events it has sampled since its last burst, the sensor to go first chosen at random.
+     *
+     * @return the event indices in the order of delivery
+     */
+    public int[] burstOrder(long maxBurstNs, long seed) {
+        Random random = new Random(seed);
+        int[] order = new int[mTimestamps.length];
+        int count = 0;
+        int[] next = {nextEvent(StreamSynchronizer.STREAM_GYRO, 0),
+                nextEvent(StreamSynchronizer.STREAM_ACCEL, 0)};
+        int[] streams = {StreamSynchronizer.STREAM_GYRO, StreamSynchronizer.STREAM_ACCEL};
+        long now = order.length == 0 ? 0 : mTimestamps[0];
+        while (count < order.length) {
+            now += 1 + (long) (random.nextDouble() * maxBurstNs);
+            int first = random.nextInt(2);
+            for (int pass = 0; pass < 2; ++pass) {
+                int sensor = (first + pass) % 2;
+                while (next[sensor] < order.length && mTimestamps[next[sensor]] <= now) {
+                    order[count++] = next[sensor];
+                    next[sensor] = nextEvent(streams[sensor], next[sensor] + 1);
+                }
+            }
+        }
+        return order;
+    }
+
+    // index of the first event of stream at or after fromEvent, size() if none
+    private int nextEvent(int stream, int fromEvent) {
+        while (fromEvent < mStreams.length && mStreams[fromEvent] != stream) {
+            ++fromEvent;
+        }
+        return fromEvent;
+    }
+
+    private static long jitter(Random random, long jitterNs) {
+        return jitterNs <= 0 ? 0 : (long) ((random.nextDouble() * 2 - 1) * jitterNs);
+    }
+
+    public int size() {
+        return mTimestamps.length;
+    }
+
+    /**
+     * StreamSynchronizer.STREAM_GYRO or STREAM_ACCEL.
+     */
+    public int getStream(int event) {
+        return mStreams[event];
+    }
+
+    public long getTimestamp(int event) {
+        return mTimestamps[event];
+    }
+
+    /**
+     * Returns the VALUE_COUNT values of an event, owned by this stream.
+     */
+    public float[] getValues(int event) {
+        return mValues[event];
+    }
+
+    /**
+     * Time to add to the timestamps on every lap through the events.
+     */
+    public long getSpan() {
+        return mSpan;
+    }
+}
@@ -0,0 +1,86 @@
+package edu.osu.pcv.marslogger.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import edu.osu.pcv.marslogger.imu.BinaryInertialSink;
+import edu.osu.pcv.marslogger.imu.CsvInertialSink;
+import edu.osu.pcv.marslogger.imu.InertialSink;
+import edu.osu.pcv.marslogger.imu.InertialSynchronizer;
+import edu.osu.pcv.marslogger.imu.SyncedSampleQueue;
+
+/**
+ * Cost per sample of the writer's side: handing synced samples through the
+ * SyncedSampleQueue and draining them in batches into a sink that buffers them into a
+ * file, as InertialWriter does, on one thread so that only the work is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+    private static final int SAMPLE_COUNT = 1024;
+    // samples drained per batch, as InertialWriter
+    private static final int BATCH_SIZE = 256;
+
+    @Param({"csv", "binary"})
+    public String format;
+
+    private final long[] mTimestamps = new long[SAMPLE_COUNT];
+    private final float[] mValues =
+            new float[SAMPLE_COUNT * InertialSynchronizer.SYNCED_VALUE_COUNT];
+    private final SyncedSampleQueue mQueue =
+            new SyncedSampleQueue(4096, InertialSynchronizer.SYNCED_VALUE_COUNT);
+    private File mFile;
+    private InertialSink mSink;
+
+    @Setup
+    public void setUp() {
+        FormatBenchmark.syncedSamples(mTimestamps, mValues);
+    }
+
+    // a new file per iteration, so that it does not grow without bound
+    @Setup(Level.Iteration)
+    public void openSink() throws IOException {
+        mFile = File.createTempFile("write_benchmark", "." + format);
+        mSink = format.equals("binary") ?
+                new BinaryInertialSink(mFile.getPath(), CsvInertialSink.CHANNEL_NAMES) :
+                new CsvInertialSink(mFile.getPath());
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeSink() throws IOException {
+        mSink.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public void offerAndDrain() throws IOException {
+        int width = InertialSynchronizer.SYNCED_VALUE_COUNT;
+        for (int sample = 0; sample < SAMPLE_COUNT; ++sample) {
+            mQueue.offer(mTimestamps[sample], mValues, sample * width);
+            if (sample % BATCH_SIZE == BATCH_SIZE - 1) {
+                mQueue.drainTo(mSink, BATCH_SIZE);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package edu.osu.pcv.marslogger.benchmark;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.osu.pcv.marslogger.imu.InertialSynchronizer;
+import edu.osu.pcv.marslogger.imu.LinearInterpolator;
+import edu.osu.pcv.marslogger.imu.SampleInterpolator;
+import edu.osu.pcv.marslogger.imu.SensorRingBuffer;
+import edu.osu.pcv.marslogger.imu.StreamSynchronizer;
+
+import static org.junit.Assert.*;
+
+public class LegacyDequeSynchronizerTest {
+    private static final int[] MAX_BURST_PERIODS = {1, 8, 64, 256};
+
+    // what the legacy long division amounts to: the left neighbor, once the right is in
+    private static class LeftNeighborInterpolator implements SampleInterpolator {
+        @Override
+        public int historyCount() {
+            return 0;
+        }
+
+        @Override
+        public int lookaheadCount() {
+            return 1;
+        }
+
+        @Override
+        public void interpolate(SensorRingBuffer samples, int left, long time, float[] dst,
+                                int dstOffset) {
+            samples.copyValues(left, dst, dstOffset);
+        }
+    }
+
+    // synced samples as timestamp followed by the six values
+    private static List<double[]> syncRing(SyntheticImuStream stream, int[] order,
+                                           SampleInterpolator interpolator) {
+        InertialSynchronizer synchronizer = new InertialSynchronizer(
+                SyncBaselineBenchmark.CAPACITY, InertialSynchronizer.REFERENCE_GYRO,
+                interpolator);
+        List<double[]> synced = new ArrayList<>();
+        for (int event : order) {
+            synchronizer.add(stream.getStream(event), stream.getTimestamp(event),
+                    stream.getValues(event));
+            int result;
+            while ((result = synchronizer.sync()) != InertialSynchronizer.RESULT_NOT_READY) {
+                if (result == InertialSynchronizer.RESULT_SYNCED) {
+                    synced.add(sample(synchronizer.getSyncedTimestamp(),
+                            synchronizer.getSyncedValues()));
+                }
+            }
+        }
+        return synced;
+    }
+
+    private static List<double[]> syncLegacy(SyntheticImuStream stream, int[] order) {
+        LegacyDequeSynchronizer legacy = new LegacyDequeSynchronizer();
+        List<double[]> synced = new ArrayList<>();
+        for (int event : order) {
+            if (stream.getStream(event) == StreamSynchronizer.STREAM_GYRO) {
+                legacy.addGyro(stream.getTimestamp(event), stream.getValues(event));
+            } else {
+                legacy.addAccel(stream.getTimestamp(event), stream.getValues(event));
+            }
+            int before;
+            do {
+                before = legacy.getGyroCount();
+                LegacyDequeSynchronizer.SensorPacket packet = legacy.syncInertialData();
+                if (packet != null) {
+                    synced.add(sample(packet.timestamp, packet.values));
+                }
+            } while (legacy.getGyroCount() < before);
+        }
+        return synced;
+    }
+
+    private static double[] sample(long timestamp, float[] values) {
+        double[] sample = new double[1 + InertialSynchronizer.SYNCED_VALUE_COUNT];
+        sample[0] = timestamp;
+        for (int i = 0; i < InertialSynchronizer.SYNCED_VALUE_COUNT; ++i) {
+            sample[1 + i] = values[i];
+        }
+        return sample;
+    }
+
+    private static void assertSameSamples(List<double[]> expected, List<double[]> actual,
+                                          int valueCount) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            for (int j = 0; j < 1 + valueCount; ++j) {
+                assertEquals("sample " + i + " value " + j, expected.get(i)[j],
+                        actual.get(i)[j], 0);
+            }
+        }
+    }
+
+    @Test
+    public void leftNeighborSyncMatchesLegacyExactly() {
+        SyntheticImuStream stream = SyncBaselineBenchmark.createStream();
+        for (int periods : MAX_BURST_PERIODS) {
+            int[] order = stream.burstOrder(SyncBaselineBenchmark.burstNanos(periods), 7);
+            List<double[]> legacy = syncLegacy(stream, order);
+            assertTrue(legacy.size() > stream.size() / 3);
+            assertSameSamples(legacy,
+                    syncRing(stream, order, new LeftNeighborInterpolator()),
+                    InertialSynchronizer.SYNCED_VALUE_COUNT);
+        }
+    }
+
+    @Test
+    public void linearSyncKeepsTheLegacyGyroSamples() {
+        SyntheticImuStream stream = SyncBaselineBenchmark.createStream();
+        for (int periods : MAX_BURST_PERIODS) {
+            int[] order = stream.burstOrder(SyncBaselineBenchmark.burstNanos(periods), 7);
+            // the accel values differ by the interpolation the legacy code truncated away
+            assertSameSamples(syncLegacy(stream, order),
+                    syncRing(stream, order, new LinearInterpolator()), 3);
+        }
+    }
+
+    @Test
+    public void burstOrderDeliversEachStreamInOrder() {
+        SyntheticImuStream stream = SyncBaselineBenchmark.createStream();
+        int[] order = stream.burstOrder(SyncBaselineBenchmark.burstNanos(64), 7);
+        assertEquals(stream.size(), order.length);
+        boolean[] seen = new boolean[stream.size()];
+        long[] last = {Long.MIN_VALUE, Long.MIN_VALUE};
+        for (int event : order) {
+            assertFalse(seen[event]);
+            seen[event] = true;
+            int sensor = stream.getStream(event) == StreamSynchronizer.STREAM_GYRO ? 0 : 1;
+            assertTrue(stream.getTimestamp(event) > last[sensor]);
+            last[sensor] = stream.getTimestamp(event);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes the OIS samples of frame metadata records in an append-only binary side log
+ * of the capture result csv.  Frames without samples are skipped.
+ * <p>
+ * The file starts with a header, all fields little-endian:
+ * <pre>
+ *   char[4]  magic "MOIS"
+ *   uint16   format version
+ *   uint16   header length in bytes, i.e., offset of the first record
+ * </pre>
+ * followed by one record per frame:
+ * <pre>
+ *   int64    frame number
+ *   int64    frame timestamp in nanoseconds, SENSOR_TIMESTAMP or -1 if unknown
+ *   uint16   sample count n
+ *   uint16   reserved, 0
+ *   n times:
+ *     int64    sample timestamp in nanoseconds
+ *     float32  x shift in pixels
+ *     float32  y shift in pixels
+ * </pre>
+ * Records are staged in a reusable direct ByteBuffer as in the inertial binary sinks;
+ * read them back with {@link OisSampleReader}.
+ */
+public class BinaryOisSampleSink implements FrameMetadataSink {
+    public static final int MAGIC = 0x53494f4d; // "MOIS" read as a little-endian int
+    public static final int VERSION = 1;
+    public static final int HEADER_LENGTH = 8;
+    public static final int FRAME_HEADER_SIZE = 20;
+    public static final int SAMPLE_SIZE = 16;
+    public static final int MAX_SAMPLE_COUNT = 0xffff;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileOutputStream mStream;
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+
+    public BinaryOisSampleSink(String file) throws IOException {
+        mStream = new FileOutputStream(file, false);
+        mChannel = mStream.getChannel();
+        mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        mBuffer.putInt(MAGIC);
+        mBuffer.putShort((short) VERSION);
+        mBuffer.putShort((short) HEADER_LENGTH);
+    }
+
+    @Override
+    public void write(FrameMetadata frame) throws IOException {
+        int count = Math.min(frame.getOisSampleCount(), MAX_SAMPLE_COUNT);
+        if (count == 0) {
+            return;
+        }
+        if (mBuffer.remaining() < FRAME_HEADER_SIZE) {
+            drainBuffer();
+        }
+        mBuffer.putLong(frame.getFrameNumber());
+        mBuffer.putLong(frame.has(FrameMetadata.TIMESTAMP) ? frame.getTimestamp() : -1);
+        mBuffer.putShort((short) count);
+        mBuffer.putShort((short) 0);
+        for (int sample = 0; sample < count; ++sample) {
+            if (mBuffer.remaining() < SAMPLE_SIZE) {
+                drainBuffer();
+            }
+            mBuffer.putLong(frame.getOisTimestamp(sample));
+            mBuffer.putFloat(frame.getOisXShift(sample));
+            mBuffer.putFloat(frame.getOisYShift(sample));
+        }
+    }
+
+    @Override
+    public void writeStart(long frameNumber, long timestamp) {
+    }
+
+    private void drainBuffer() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drainBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drainBuffer();
+        } finally {
+            mStream.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package edu.osu.pcv.marslogger.camera;
+
+/**
+ * The latest capture statistics for display.  Capture threads overwrite them with a few
+ * field writes per frame, and the UI thread pulls them at its own rate, e.g., 5 Hz, so
+ * that frames cost the UI thread neither work nor allocation.
+ * <p>
+ * The capture result fields form one snapshot.  The camera thread, their only writer,
+ * makes a sequence number odd while it writes them, and a reader retries when it sees an
+ * odd or changed sequence number, which keeps the reader lock-free and the writer
+ * wait-free.  The fields are volatile so that their reads cannot move past the sequence
+ * number checks.  The frame rate is published on its own by the preview thread.
+ */
+public class CaptureStatsPublisher {
+    public static final long NO_EXPOSURE_TIME = -1;
+    public static final int NO_AF_MODE = -1;
+
+    // ----- written by the camera thread -----
+    private volatile long mSequence;
+    private volatile long mFrameNumber;
+    private volatile float mFocalLengthPixel;
+    private volatile long mExposureTime;
+    private volatile int mAfMode;
+
+    // ----- written by the preview thread -----
+    private volatile float mFrameRate;
+
+    public static class Snapshot {
+        private long mSequence = -1;
+        private long mFrameNumber;
+        private float mFocalLengthPixel;
+        private long mExposureTime = NO_EXPOSURE_TIME;
+        private int mAfMode = NO_AF_MODE;
+        private float mFrameRate;
+
+        public long getFrameNumber() {
+            return mFrameNumber;
+        }
+
+        public float getFocalLengthPixel() {
+            return mFocalLengthPixel;
+        }
+
+        /**
+         * Exposure time in nanoseconds, NO_EXPOSURE_TIME if the frame lacked it.
+         */
+        public long getExposureTime() {
+            return mExposureTime;
+        }
+
+        /**
+         * CONTROL_AF_MODE of the frame, NO_AF_MODE if it lacked it.
+         */
+        public int getAfMode() {
+            return mAfMode;
+        }
+
+        public float getFrameRate() {
+            return mFrameRate;
+        }
+    }
+
+    /**
+     * Publishes the fields shown for a frame.  (Call from the camera thread only.)
+     */
+    public void publish(FrameMetadata frame) {
+        long sequence = mSequence;
+        mSequence = sequence + 1;
+        mFrameNumber = frame.getFrameNumber();
+        mFocalLengthPixel = frame.getFocalLengthPixelX();
+        mExposureTime = frame.has(FrameMetadata.EXPOSURE_TIME) ?
+                frame.getExposureTime() : NO_EXPOSURE_TIME;
+        mAfMode = frame.has(FrameMetadata.AF_MODE) ? frame.getAfMode() : NO_AF_MODE;
+        mSequence = sequence + 2;
+    }
+
+    public void setFrameRate(float frameRate) {
+        mFrameRate = frameRate;
+    }
+
+    /**
+     * Copies the latest statistics into snapshot.
+     *
+     * @return false if nothing changed since snapshot was last filled
+     */
+    public boolean read(Snapshot snapshot) {
+        long sequence;
+        long frameNumber;
+        float focalLengthPixel;
+        long exposureTime;
+        int afMode;
+        do {
+            sequence = mSequence;
+            frameNumber = mFrameNumber;
+            focalLengthPixel = mFocalLengthPixel;
+            exposureTime = mExposureTime;
+            afMode = mAfMode;
+        } while ((sequence & 1) != 0 || sequence != mSequence);
+        float frameRate = mFrameRate;
+        if (sequence == snapshot.mSequence && frameRate == snapshot.mFrameRate) {
+            return false;
+        }
+        snapshot.mSequence = sequence;
+        snapshot.mFrameNumber = frameNumber;
+        snapshot.mFocalLengthPixel = focalLengthPixel;
+        snapshot.mExposureTime = exposureTime;
+        snapshot.mAfMode = afMode;
+        snapshot.mFrameRate = frameRate;
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+
+import edu.osu.pcv.marslogger.util.CsvLineEncoder;
+
+/**
+ * Writes frame metadata records as lines of the capture result csv, under
+ * {@link FrameMetadata#CSV_HEADER} and the labels of the extra columns of the schema.
+ */
+public class CsvFrameMetadataSink implements FrameMetadataSink {
+    private final CsvLineEncoder mEncoder;
+    private final boolean mWithFocalLengthPixel;
+
+    public CsvFrameMetadataSink(String file) throws IOException {
+        this(file, FrameMetadataSchema.EMPTY);
+    }
+
+    public CsvFrameMetadataSink(String file, FrameMetadataSchema schema) throws IOException {
+        this(file, schema, false);
+    }
+
+    /**
+     * @param withFocalLengthPixel whether to repeat fx and fy on every line, under
+     *                             {@link FrameMetadata#CSV_HEADER_WITH_FOCAL_LENGTH_PIXEL},
+     *                             for consumers that do not read the intrinsics track
+     */
+    public CsvFrameMetadataSink(String file, FrameMetadataSchema schema,
+                                boolean withFocalLengthPixel) throws IOException {
+        mEncoder = new CsvLineEncoder(file);
+        mWithFocalLengthPixel = withFocalLengthPixel;
+        mEncoder.appendAscii((withFocalLengthPixel ?
+                FrameMetadata.CSV_HEADER_WITH_FOCAL_LENGTH_PIXEL : FrameMetadata.CSV_HEADER) +
+                schema.csvHeader()).endLine();
+    }
+
+    @Override
+    public void write(FrameMetadata frame) throws IOException {
+        frame.writeCsv(mEncoder, mWithFocalLengthPixel);
+    }
+
+    @Override
+    public void writeStart(long frameNumber, long timestamp) {
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mEncoder.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mEncoder.close();
+    }
+}
@@ -0,0 +1,13 @@
+package edu.osu.pcv.marslogger.camera;
+
+/**
+ * Told of each frame the video encoder outputs, in output order.
+ */
+public interface EncodedFrameListener {
+    /**
+     * Called on the encoder thread; must return quickly and not block.
+     *
+     * @param presentationTimeUs presentation time of the frame in microseconds
+     */
+    void onFrameEncoded(long presentationTimeUs);
+}
@@ -0,0 +1,207 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+
+import edu.osu.pcv.marslogger.util.RollingMedian;
+
+/**
+ * Watches the frames of one stream, e.g., the capture results or the encoded video, as
+ * they arrive, and flags dropped frames, duplicates and cadence jitter.
+ * <p>
+ * Each frame is checked against the one before it.  Its sequence number, if the stream
+ * has one, shows frames that never arrived, and its interval from the previous frame,
+ * measured in expected frame periods, shows frames that the sensor or the encoder
+ * skipped; a drop counts the larger of the two.  The expected period is the
+ * SENSOR_FRAME_DURATION of the previous frame where the stream reports it, otherwise
+ * the running median of the recent intervals.  A frame that is on time within the
+ * jitter tolerance raises no event.
+ * <p>
+ * Every interval is also counted in a histogram by the number of periods it spans,
+ * rounded, so bucket 1 holds the frames on time, bucket 0 the duplicates, and bucket k
+ * the drops of k - 1 frames, the last bucket gathering all longer gaps.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class FrameCadenceMonitor {
+    public static final int EVENT_DROP = 0;
+    public static final int EVENT_DUPLICATE = 1;
+    public static final int EVENT_JITTER = 2;
+
+    public static final long NO_SEQUENCE = -1;
+    public static final long NO_PERIOD = -1;
+    public static final float DEFAULT_JITTER_TOLERANCE = 0.25f;
+    public static final int HISTOGRAM_SIZE = 10;
+
+    private static final int PERIOD_WINDOW = 15;
+
+    /**
+     * Receives the events of a monitor as they are detected.
+     */
+    public interface Listener {
+        /**
+         * @param interval       nanoseconds since the previous frame
+         * @param expectedPeriod nanoseconds expected between frames
+         * @param missing        number of frames missing before this one, for a drop
+         */
+        void onCadenceEvent(FrameCadenceMonitor monitor, int event, long sequence,
+                            long timestamp, long interval, long expectedPeriod,
+                            long missing) throws IOException;
+    }
+
+    private final String mName;
+    private final float mJitterTolerance;
+    private final Listener mListener;
+    private final RollingMedian mIntervals = new RollingMedian(PERIOD_WINDOW);
+
+    private boolean mHasLast = false;
+    private long mLastSequence;
+    private long mLastTimestamp;
+    private long mLastPeriod;
+
+    private long mFrameCount;
+    private long mDropCount;
+    private long mMissingFrameCount;
+    private long mDuplicateCount;
+    private long mJitterCount;
+    private long mMaxJitter;
+    private final long[] mHistogram = new long[HISTOGRAM_SIZE];
+
+    /**
+     * @param name            name of the stream, for the event log
+     * @param jitterTolerance largest deviation from the expected period that is not
+     *                        jitter, as a fraction of the period
+     * @param listener        told of the events, or null
+     */
+    public FrameCadenceMonitor(String name, float jitterTolerance, Listener listener) {
+        mName = name;
+        mJitterTolerance = jitterTolerance;
+        mListener = listener;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Checks the next frame of the stream.
+     *
+     * @param sequence  frame number, or NO_SEQUENCE if the stream has none
+     * @param timestamp in nanoseconds
+     * @param period    the time until the next frame, e.g., SENSOR_FRAME_DURATION, or
+     *                  NO_PERIOD to expect the running median interval
+     */
+    public void addFrame(long sequence, long timestamp, long period) throws IOException {
+        ++mFrameCount;
+        if (!mHasLast) {
+            mHasLast = true;
+            mLastSequence = sequence;
+            mLastTimestamp = timestamp;
+            mLastPeriod = period;
+            return;
+        }
+        long interval = timestamp - mLastTimestamp;
+        long missingBySequence = sequence == NO_SEQUENCE || mLastSequence == NO_SEQUENCE ?
+                0 : sequence - mLastSequence - 1;
+        if (interval <= 0 || missingBySequence < 0) {
+            // a repeated or out of order frame; the next one is checked against the frame
+            // before it, but not for a gap in sequence that this one filled
+            if (sequence > mLastSequence) {
+                mLastSequence = sequence;
+            }
+            ++mDuplicateCount;
+            ++mHistogram[0];
+            report(EVENT_DUPLICATE, sequence, timestamp, interval, expectedPeriod(), 0);
+            return;
+        }
+        long expected = expectedPeriod();
+        if (mLastPeriod == NO_PERIOD) {
+            mIntervals.add(interval);
+        }
+        mLastSequence = sequence;
+        mLastTimestamp = timestamp;
+        mLastPeriod = period;
+        if (expected <= 0) {
+            // too early to know the cadence
+            if (missingBySequence > 0) {
+                drop(sequence, timestamp, interval, expected, missingBySequence);
+            }
+            return;
+        }
+
+        long periods = (interval + expected / 2) / expected;
+        ++mHistogram[(int) Math.min(periods, HISTOGRAM_SIZE - 1)];
+        long missing = Math.max(missingBySequence, periods - 1);
+        if (missing > 0) {
+            drop(sequence, timestamp, interval, expected, missing);
+            return;
+        }
+        long jitter = Math.abs(interval - expected);
+        if (jitter > mMaxJitter) {
+            mMaxJitter = jitter;
+        }
+        if (jitter > mJitterTolerance * expected) {
+            ++mJitterCount;
+            report(EVENT_JITTER, sequence, timestamp, interval, expected, 0);
+        }
+    }
+
+    // the previous frame's period if known, else the median interval, 0 before any
+    private long expectedPeriod() {
+        if (mLastPeriod != NO_PERIOD) {
+            return mLastPeriod;
+        }
+        return mIntervals.size() == 0 ? 0 : mIntervals.getMedian();
+    }
+
+    private void drop(long sequence, long timestamp, long interval, long expected,
+                      long missing) throws IOException {
+        ++mDropCount;
+        mMissingFrameCount += missing;
+        report(EVENT_DROP, sequence, timestamp, interval, expected, missing);
+    }
+
+    private void report(int event, long sequence, long timestamp, long interval,
+                        long expected, long missing) throws IOException {
+        if (mListener != null) {
+            mListener.onCadenceEvent(this, event, sequence, timestamp, interval, expected,
+                    missing);
+        }
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Number of gaps, each of one or more missing frames.
+     */
+    public long getDropCount() {
+        return mDropCount;
+    }
+
+    public long getMissingFrameCount() {
+        return mMissingFrameCount;
+    }
+
+    public long getDuplicateCount() {
+        return mDuplicateCount;
+    }
+
+    public long getJitterCount() {
+        return mJitterCount;
+    }
+
+    /**
+     * Largest deviation of an on-time interval from the expected period, in nanoseconds.
+     */
+    public long getMaxJitter() {
+        return mMaxJitter;
+    }
+
+    /**
+     * Number of intervals that spanned bucket expected periods, see the class comment.
+     */
+    public long getHistogramCount(int bucket) {
+        return mHistogram[bucket];
+    }
+}
@@ -0,0 +1,131 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+
+import edu.osu.pcv.marslogger.util.CsvLineEncoder;
+
+/**
+ * Watches the cadence of the capture results and of the encoded video frames while
+ * recording, see {@link FrameCadenceMonitor}, and writes every drop, duplicate and jitter
+ * event as a csv line under {@link #CSV_HEADER}.
+ * <p>
+ * The capture stream is checked by frame number and SENSOR_FRAME_DURATION at the frame
+ * starts that the {@link FrameMetadataWriter} reports through writeStart(), so a gap in
+ * it is a frame the camera skipped, never a record that the writer dropped, and the
+ * period is the SENSOR_FRAME_DURATION of the latest record written.  The encoded stream
+ * has no frame numbers, so it is checked by the intervals of the presentation times
+ * against their running median.  As in {@link FrameJoinSink}, the presentation times
+ * come from the encoder thread through a {@link PresentationTimeQueue}, and are checked
+ * on the writer thread whenever a frame start or a capture result is written, or the
+ * sink is flushed or closed.
+ */
+public class FrameCadenceSink implements FrameMetadataSink, EncodedFrameListener,
+        FrameCadenceMonitor.Listener {
+    public static final String CSV_HEADER = "Stream,Event,Frame No.,Timestamp[nanosec]," +
+            "Interval[nanosec],Expected interval[nanosec],Frames missing";
+
+    private static final String[] EVENT_NAMES = {"drop", "duplicate", "jitter"};
+
+    private final CsvLineEncoder mEncoder;
+    private final FrameCadenceMonitor mCaptureMonitor;
+    private final FrameCadenceMonitor mEncodedMonitor;
+
+    private final PresentationTimeQueue mQueue;
+    private final long[] mDrained;
+    private long mEncodedIndex;
+    private long mFrameDuration = FrameCadenceMonitor.NO_PERIOD;
+
+    /**
+     * @param jitterTolerance see {@link FrameCadenceMonitor}
+     * @param queueCapacity   number of presentation times that may wait for the writer
+     */
+    public FrameCadenceSink(String file, float jitterTolerance, int queueCapacity)
+            throws IOException {
+        mEncoder = new CsvLineEncoder(file);
+        mEncoder.appendAscii(CSV_HEADER).endLine();
+        mCaptureMonitor = new FrameCadenceMonitor("capture", jitterTolerance, this);
+        mEncodedMonitor = new FrameCadenceMonitor("encoded", jitterTolerance, this);
+        mQueue = new PresentationTimeQueue(queueCapacity);
+        mDrained = new long[mQueue.capacity()];
+    }
+
+    /**
+     * Queues the presentation time of the next encoded frame.  (Call from the encoder
+     * thread only.)  A full queue drops it, which shows up as a drop of the encoded stream.
+     */
+    @Override
+    public void onFrameEncoded(long presentationTimeUs) {
+        mQueue.offer(presentationTimeUs);
+    }
+
+    @Override
+    public void write(FrameMetadata frame) throws IOException {
+        drainPresentationTimes();
+        if (frame.has(FrameMetadata.FRAME_DURATION)) {
+            mFrameDuration = frame.getFrameDuration();
+        }
+    }
+
+    @Override
+    public void writeStart(long frameNumber, long timestamp) throws IOException {
+        drainPresentationTimes();
+        mCaptureMonitor.addFrame(frameNumber, timestamp, mFrameDuration);
+    }
+
+    @Override
+    public void onCadenceEvent(FrameCadenceMonitor monitor, int event, long sequence,
+                               long timestamp, long interval, long expectedPeriod,
+                               long missing) throws IOException {
+        mEncoder.appendAscii(monitor.getName()).delimiter()
+                .appendAscii(EVENT_NAMES[event]).delimiter()
+                .append(sequence).delimiter()
+                .append(timestamp).delimiter()
+                .append(interval).delimiter()
+                .append(expectedPeriod).delimiter()
+                .append(missing).endLine();
+    }
+
+    private void drainPresentationTimes() throws IOException {
+        int count = mQueue.drain(mDrained);
+        for (int i = 0; i < count; ++i) {
+            mEncodedMonitor.addFrame(mEncodedIndex++, mDrained[i] * 1000,
+                    FrameCadenceMonitor.NO_PERIOD);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drainPresentationTimes();
+        mEncoder.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drainPresentationTimes();
+        } finally {
+            mEncoder.close();
+        }
+    }
+
+    /**
+     * The counters of the capture results.  Valid after close().
+     */
+    public FrameCadenceMonitor getCaptureMonitor() {
+        return mCaptureMonitor;
+    }
+
+    /**
+     * The counters of the encoded frames.  Valid after close().
+     */
+    public FrameCadenceMonitor getEncodedMonitor() {
+        return mEncodedMonitor;
+    }
+
+    /**
+     * Number of presentation times dropped because the queue was full.
+     */
+    public long getOverflowCount() {
+        return mQueue.getOverflowCount();
+    }
+}
@@ -0,0 +1,102 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+
+import edu.osu.pcv.marslogger.util.CsvLineEncoder;
+
+/**
+ * Joins the capture results handed to it with the presentation times of the encoded
+ * video frames, and writes one csv line per frame under {@link JoinedFrame#CSV_HEADER},
+ * see {@link FrameJoiner}.
+ * <p>
+ * The sink runs on the {@link FrameMetadataWriter} thread, while the presentation times
+ * come from the encoder thread through onFrameEncoded(), which puts them in a
+ * {@link PresentationTimeQueue}.  The queue is drained before each capture result is
+ * joined, and when the sink is flushed or closed.
+ */
+public class FrameJoinSink implements FrameMetadataSink, EncodedFrameListener,
+        FrameJoiner.Listener {
+    private final CsvLineEncoder mEncoder;
+    private final FrameJoiner mJoiner;
+
+    private final PresentationTimeQueue mQueue;
+    private final long[] mDrained;
+
+    /**
+     * @param window        number of frames of each stream that wait for their counterpart
+     * @param queueCapacity number of presentation times that may wait for the writer
+     */
+    public FrameJoinSink(String file, int window, int queueCapacity) throws IOException {
+        mEncoder = new CsvLineEncoder(file);
+        mEncoder.appendAscii(JoinedFrame.CSV_HEADER).endLine();
+        mJoiner = new FrameJoiner(window, this);
+        mQueue = new PresentationTimeQueue(queueCapacity);
+        mDrained = new long[mQueue.capacity()];
+    }
+
+    /**
+     * Queues the presentation time of the next encoded frame.  (Call from the encoder
+     * thread only.)  A full queue drops it, and the frame then counts as unmatched
+     * metadata.
+     */
+    @Override
+    public void onFrameEncoded(long presentationTimeUs) {
+        mQueue.offer(presentationTimeUs);
+    }
+
+    @Override
+    public void write(FrameMetadata frame) throws IOException {
+        drainPresentationTimes();
+        mJoiner.addMetadata(frame);
+    }
+
+    @Override
+    public void writeStart(long frameNumber, long timestamp) {
+    }
+
+    @Override
+    public void onFrame(JoinedFrame frame) throws IOException {
+        frame.writeCsv(mEncoder);
+    }
+
+    private void drainPresentationTimes() throws IOException {
+        int count = mQueue.drain(mDrained);
+        for (int i = 0; i < count; ++i) {
+            mJoiner.addEncodedFrame(mDrained[i]);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drainPresentationTimes();
+        mEncoder.flush();
+    }
+
+    /**
+     * Writes the frames still waiting for their counterpart as unmatched, and closes the
+     * file.  Presentation times offered afterwards are ignored.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            drainPresentationTimes();
+            mJoiner.flush();
+        } finally {
+            mEncoder.close();
+        }
+    }
+
+    /**
+     * The counts of joined and unmatched frames.  Valid after close().
+     */
+    public FrameJoiner getJoiner() {
+        return mJoiner;
+    }
+
+    /**
+     * Number of presentation times dropped because the queue was full.
+     */
+    public long getOverflowCount() {
+        return mQueue.getOverflowCount();
+    }
+}
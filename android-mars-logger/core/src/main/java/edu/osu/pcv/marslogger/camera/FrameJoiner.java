@@ -0,0 +1,226 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+
+import edu.osu.pcv.marslogger.util.LongIntHashMap;
+
+/**
+ * Matches the frames that the video encoder output with their capture results, so that
+ * every encoded frame can be traced to its exposure and intrinsics.
+ * <p>
+ * The camera stamps the SurfaceTexture buffers that feed the encoder with the
+ * SENSOR_TIMESTAMP of the frame, which becomes its presentation time in microseconds, so
+ * the two streams are joined on the timestamp in microseconds.  Each side keeps its last
+ * window frames in a ring, indexed by a primitive hash map from timestamp to slot; a
+ * frame is emitted as soon as its counterpart arrives, or as unmatched when it falls
+ * out of the window, so neither stream can hold back the other for long.  Joined frames
+ * are emitted in the order they are matched, which may differ from frame order by up to
+ * a window.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class FrameJoiner {
+    /**
+     * Receives the joined and unmatched frames; the record is reused after the call.
+     */
+    public interface Listener {
+        void onFrame(JoinedFrame frame) throws IOException;
+    }
+
+    private final int mWindow;
+    private final Listener mListener;
+    private final JoinedFrame mJoined = new JoinedFrame();
+
+    // ----- capture results awaiting their encoded frame, in slot sequence % window -----
+    private final long[] mMetaKeys;
+    private final boolean[] mMetaPending;
+    private final long[] mFrameNumbers;
+    private final long[] mTimestamps;
+    private final long[] mExposureTimes;
+    private final float[] mIntrinsics;
+    private final LongIntHashMap mMetaSlots;
+    private long mMetaSequence;
+
+    // ----- encoded frames awaiting their capture result -----
+    private final long[] mEncodedKeys;
+    private final boolean[] mEncodedPending;
+    private final long[] mEncodedIndices;
+    private final LongIntHashMap mEncodedSlots;
+    private long mEncodedSequence;
+
+    private long mMatchedCount;
+    private long mUnmatchedMetadataCount;
+    private long mUnmatchedEncodedCount;
+
+    /**
+     * @param window number of frames of each side that wait for their counterpart
+     */
+    public FrameJoiner(int window, Listener listener) {
+        mWindow = window;
+        mListener = listener;
+        mMetaKeys = new long[window];
+        mMetaPending = new boolean[window];
+        mFrameNumbers = new long[window];
+        mTimestamps = new long[window];
+        mExposureTimes = new long[window];
+        mIntrinsics = new float[window * 4];
+        mMetaSlots = new LongIntHashMap(window);
+        mEncodedKeys = new long[window];
+        mEncodedPending = new boolean[window];
+        mEncodedIndices = new long[window];
+        mEncodedSlots = new LongIntHashMap(window);
+    }
+
+    /**
+     * Adds the capture result of a frame.  Intrinsics come from
+     * LENS_INTRINSIC_CALIBRATION if the frame has it, else fx and fy are the estimated
+     * focal length in pixels.
+     */
+    public void addMetadata(FrameMetadata frame) throws IOException {
+        int slot = (int) (mMetaSequence % mWindow);
+        if (mMetaPending[slot]) {
+            evictMetadata(slot);
+        }
+        ++mMetaSequence;
+        mFrameNumbers[slot] = frame.getFrameNumber();
+        mExposureTimes[slot] = frame.has(FrameMetadata.EXPOSURE_TIME) ?
+                frame.getExposureTime() : JoinedFrame.NO_EXPOSURE_TIME;
+        int base = slot * 4;
+        if (frame.has(FrameMetadata.INTRINSICS)) {
+            for (int i = 0; i < 4; ++i) {
+                mIntrinsics[base + i] = frame.getIntrinsic(i);
+            }
+        } else {
+            mIntrinsics[base] = frame.getFocalLengthPixelX();
+            mIntrinsics[base + 1] = frame.getFocalLengthPixelY();
+            mIntrinsics[base + 2] = Float.NaN;
+            mIntrinsics[base + 3] = Float.NaN;
+        }
+        if (!frame.has(FrameMetadata.TIMESTAMP)) {
+            // cannot be matched
+            mTimestamps[slot] = -1;
+            emit(slot, -1);
+            ++mUnmatchedMetadataCount;
+            return;
+        }
+        long timestamp = frame.getTimestamp();
+        long key = timestamp / 1000;
+        mTimestamps[slot] = timestamp;
+        mMetaKeys[slot] = key;
+
+        int encoded = mEncodedSlots.get(key, -1);
+        if (encoded >= 0) {
+            mEncodedSlots.remove(key);
+            mEncodedPending[encoded] = false;
+            emit(slot, encoded);
+            ++mMatchedCount;
+        } else {
+            mMetaPending[slot] = true;
+            // a repeated timestamp waits unindexed, and is evicted as unmatched
+            if (!mMetaSlots.containsKey(key)) {
+                mMetaSlots.put(key, slot);
+            }
+        }
+    }
+
+    /**
+     * Adds the next frame output by the encoder; frames are indexed in the order they are
+     * added.
+     */
+    public void addEncodedFrame(long presentationTimeUs) throws IOException {
+        int slot = (int) (mEncodedSequence % mWindow);
+        if (mEncodedPending[slot]) {
+            evictEncoded(slot);
+        }
+        mEncodedIndices[slot] = mEncodedSequence++;
+        mEncodedKeys[slot] = presentationTimeUs;
+
+        int meta = mMetaSlots.get(presentationTimeUs, -1);
+        if (meta >= 0) {
+            mMetaSlots.remove(presentationTimeUs);
+            mMetaPending[meta] = false;
+            emit(meta, slot);
+            ++mMatchedCount;
+        } else {
+            mEncodedPending[slot] = true;
+            if (!mEncodedSlots.containsKey(presentationTimeUs)) {
+                mEncodedSlots.put(presentationTimeUs, slot);
+            }
+        }
+    }
+
+    /**
+     * Emits every waiting frame as unmatched, e.g., at the end of a recording.
+     */
+    public void flush() throws IOException {
+        long first = Math.max(0, mMetaSequence - mWindow);
+        for (long sequence = first; sequence < mMetaSequence; ++sequence) {
+            int slot = (int) (sequence % mWindow);
+            if (mMetaPending[slot]) {
+                evictMetadata(slot);
+            }
+        }
+        first = Math.max(0, mEncodedSequence - mWindow);
+        for (long sequence = first; sequence < mEncodedSequence; ++sequence) {
+            int slot = (int) (sequence % mWindow);
+            if (mEncodedPending[slot]) {
+                evictEncoded(slot);
+            }
+        }
+    }
+
+    public long getMatchedCount() {
+        return mMatchedCount;
+    }
+
+    /**
+     * Number of capture results without an encoded frame, e.g., of frames the encoder
+     * dropped.
+     */
+    public long getUnmatchedMetadataCount() {
+        return mUnmatchedMetadataCount;
+    }
+
+    /**
+     * Number of encoded frames without a capture result, e.g., whose metadata was dropped.
+     */
+    public long getUnmatchedEncodedCount() {
+        return mUnmatchedEncodedCount;
+    }
+
+    private void evictMetadata(int slot) throws IOException {
+        mMetaPending[slot] = false;
+        if (mMetaSlots.get(mMetaKeys[slot], -1) == slot) {
+            mMetaSlots.remove(mMetaKeys[slot]);
+        }
+        emit(slot, -1);
+        ++mUnmatchedMetadataCount;
+    }
+
+    private void evictEncoded(int slot) throws IOException {
+        mEncodedPending[slot] = false;
+        if (mEncodedSlots.get(mEncodedKeys[slot], -1) == slot) {
+            mEncodedSlots.remove(mEncodedKeys[slot]);
+        }
+        emit(-1, slot);
+        ++mUnmatchedEncodedCount;
+    }
+
+    // emits the frame of a metadata slot and an encoded slot, either of them -1 if absent
+    private void emit(int metaSlot, int encodedSlot) throws IOException {
+        JoinedFrame joined = mJoined;
+        joined.mHasMetadata = metaSlot >= 0;
+        if (metaSlot >= 0) {
+            joined.mFrameNumber = mFrameNumbers[metaSlot];
+            joined.mTimestamp = mTimestamps[metaSlot];
+            joined.mExposureTime = mExposureTimes[metaSlot];
+            System.arraycopy(mIntrinsics, metaSlot * 4, joined.mIntrinsics, 0, 4);
+        }
+        joined.mHasEncodedFrame = encodedSlot >= 0;
+        if (encodedSlot >= 0) {
+            joined.mEncodedIndex = mEncodedIndices[encodedSlot];
+            joined.mPresentationTimeUs = mEncodedKeys[encodedSlot];
+        }
+        mListener.onFrame(joined);
+    }
+}
@@ -0,0 +1,372 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import edu.osu.pcv.marslogger.util.CsvLineEncoder;
+
+/**
+ * The capture result fields logged for one frame, held in primitives so that a record
+ * can be reused for frame after frame, see {@link FrameMetadataPool}.
+ * <p>
+ * A CaptureResult may lack any key, so each optional field has a bit in a mask of
+ * present fields, and an absent field is written as null, as the boxed value was.
+ * <p>
+ * After the fixed fields, a record has the extra columns of its
+ * {@link FrameMetadataSchema}, stored in long and float slots at the offsets the schema
+ * assigns.  Each extra column is present or absent as a whole.
+ * <p>
+ * The lens calibration of a frame, if the camera reports it, is kept out of the csv line
+ * and written by {@link IntrinsicsTrackSink} only when it changes, and so are fx and fy,
+ * which {@link IntrinsicsTrackReader} expands back per frame.  The fx and fy columns of
+ * the older layout, CSV_HEADER_WITH_FOCAL_LENGTH_PIXEL, are written only on request.
+ * <p>
+ * A record may also carry the OIS samples of its frame.  Their arrays grow as needed
+ * and are kept across frames, so a recycled record stops allocating once it has seen
+ * the largest batch.
+ */
+public class FrameMetadata {
+    public static final String CSV_HEADER = "Timestamp[nanosec],Frame No.," +
+            "Exposure time[nanosec],Sensor frame duration[nanosec]," +
+            "Frame readout time[nanosec]," +
+            "ISO,Focal length,Focus distance,AF mode";
+    public static final String CSV_HEADER_WITH_FOCAL_LENGTH_PIXEL =
+            "Timestamp[nanosec],fx[px],fy[px],Frame No.," +
+            "Exposure time[nanosec],Sensor frame duration[nanosec]," +
+            "Frame readout time[nanosec]," +
+            "ISO,Focal length,Focus distance,AF mode";
+
+    // bits of the optional fields
+    public static final int TIMESTAMP = 1;
+    public static final int EXPOSURE_TIME = 1 << 1;
+    public static final int FRAME_DURATION = 1 << 2;
+    public static final int ROLLING_SHUTTER_SKEW = 1 << 3;
+    public static final int SENSITIVITY = 1 << 4;
+    public static final int FOCAL_LENGTH = 1 << 5;
+    public static final int FOCUS_DISTANCE = 1 << 6;
+    public static final int AF_MODE = 1 << 7;
+    public static final int INTRINSICS = 1 << 8;
+    public static final int DISTORTION = 1 << 9;
+
+    // fx, fy, cx, cy and skew, as in LENS_INTRINSIC_CALIBRATION
+    public static final int INTRINSICS_SIZE = 5;
+    // k1 to k6, as in LENS_RADIAL_DISTORTION
+    public static final int DISTORTION_SIZE = 6;
+
+    private int mPresent;
+    private long mTimestamp;
+    private float mFocalLengthPixelX;
+    private float mFocalLengthPixelY;
+    private long mFrameNumber;
+    private long mExposureTime;
+    private long mFrameDuration;
+    private long mRollingShutterSkew;
+    private int mSensitivity;
+    private float mFocalLength;
+    private float mFocusDistance;
+    private int mAfMode;
+    private final float[] mIntrinsics = new float[INTRINSICS_SIZE];
+    private final float[] mDistortion = new float[DISTORTION_SIZE];
+
+    private final FrameMetadataSchema mSchema;
+    private final long[] mExtraLongs;
+    private final float[] mExtraFloats;
+    private final boolean[] mExtraPresent;
+
+    private static final int INITIAL_OIS_CAPACITY = 32;
+    private long[] mOisTimestamps = new long[0];
+    private float[] mOisXShifts = new float[0];
+    private float[] mOisYShifts = new float[0];
+    private int mOisSampleCount;
+
+    public FrameMetadata() {
+        this(FrameMetadataSchema.EMPTY);
+    }
+
+    public FrameMetadata(FrameMetadataSchema schema) {
+        mSchema = schema;
+        mExtraLongs = new long[schema.getLongCount()];
+        mExtraFloats = new float[schema.getFloatCount()];
+        mExtraPresent = new boolean[schema.getColumnCount()];
+    }
+
+    public FrameMetadataSchema getSchema() {
+        return mSchema;
+    }
+
+    /**
+     * Marks all optional fields and extra columns absent, before the record is filled
+     * for a new frame.
+     */
+    public void clear() {
+        mPresent = 0;
+        Arrays.fill(mExtraPresent, false);
+        mOisSampleCount = 0;
+    }
+
+    public boolean has(int field) {
+        return (mPresent & field) != 0;
+    }
+
+    // The setters take the boxed values of CaptureResult.get(), and mark the field
+    // present unless the value is null.  The box is not retained.
+
+    public void setTimestamp(Long timestamp) {
+        if (timestamp != null) {
+            mTimestamp = timestamp;
+            mPresent |= TIMESTAMP;
+        }
+    }
+
+    public void setFocalLengthPixel(float fx, float fy) {
+        mFocalLengthPixelX = fx;
+        mFocalLengthPixelY = fy;
+    }
+
+    public void setFrameNumber(long frameNumber) {
+        mFrameNumber = frameNumber;
+    }
+
+    public void setExposureTime(Long exposureTime) {
+        if (exposureTime != null) {
+            mExposureTime = exposureTime;
+            mPresent |= EXPOSURE_TIME;
+        }
+    }
+
+    public void setFrameDuration(Long frameDuration) {
+        if (frameDuration != null) {
+            mFrameDuration = frameDuration;
+            mPresent |= FRAME_DURATION;
+        }
+    }
+
+    public void setRollingShutterSkew(Long rollingShutterSkew) {
+        if (rollingShutterSkew != null) {
+            mRollingShutterSkew = rollingShutterSkew;
+            mPresent |= ROLLING_SHUTTER_SKEW;
+        }
+    }
+
+    public void setSensitivity(Integer sensitivity) {
+        if (sensitivity != null) {
+            mSensitivity = sensitivity;
+            mPresent |= SENSITIVITY;
+        }
+    }
+
+    public void setFocalLength(Float focalLength) {
+        if (focalLength != null) {
+            mFocalLength = focalLength;
+            mPresent |= FOCAL_LENGTH;
+        }
+    }
+
+    public void setFocusDistance(Float focusDistance) {
+        if (focusDistance != null) {
+            mFocusDistance = focusDistance;
+            mPresent |= FOCUS_DISTANCE;
+        }
+    }
+
+    public void setAfMode(Integer afMode) {
+        if (afMode != null) {
+            mAfMode = afMode;
+            mPresent |= AF_MODE;
+        }
+    }
+
+    /**
+     * Copies LENS_INTRINSIC_CALIBRATION, marking it present unless it is null or short.
+     */
+    public void setIntrinsics(float[] intrinsics) {
+        if (intrinsics != null && intrinsics.length >= INTRINSICS_SIZE) {
+            System.arraycopy(intrinsics, 0, mIntrinsics, 0, INTRINSICS_SIZE);
+            mPresent |= INTRINSICS;
+        }
+    }
+
+    /**
+     * Copies LENS_RADIAL_DISTORTION, marking it present unless it is null or short.
+     */
+    public void setDistortion(float[] distortion) {
+        if (distortion != null && distortion.length >= DISTORTION_SIZE) {
+            System.arraycopy(distortion, 0, mDistortion, 0, DISTORTION_SIZE);
+            mPresent |= DISTORTION;
+        }
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public float getFocalLengthPixelX() {
+        return mFocalLengthPixelX;
+    }
+
+    public float getFocalLengthPixelY() {
+        return mFocalLengthPixelY;
+    }
+
+    public long getFrameNumber() {
+        return mFrameNumber;
+    }
+
+    public long getExposureTime() {
+        return mExposureTime;
+    }
+
+    public long getFrameDuration() {
+        return mFrameDuration;
+    }
+
+    public long getRollingShutterSkew() {
+        return mRollingShutterSkew;
+    }
+
+    public int getSensitivity() {
+        return mSensitivity;
+    }
+
+    public float getFocalLength() {
+        return mFocalLength;
+    }
+
+    public float getFocusDistance() {
+        return mFocusDistance;
+    }
+
+    public int getAfMode() {
+        return mAfMode;
+    }
+
+    public float getIntrinsic(int index) {
+        return mIntrinsics[index];
+    }
+
+    public float getDistortion(int index) {
+        return mDistortion[index];
+    }
+
+    // The values of an extra column are set at the slots from its schema offset on, and
+    // then the column is marked present.
+
+    public void setExtraLong(int slot, long value) {
+        mExtraLongs[slot] = value;
+    }
+
+    public void setExtraFloat(int slot, float value) {
+        mExtraFloats[slot] = value;
+    }
+
+    public void markExtraPresent(int column) {
+        mExtraPresent[column] = true;
+    }
+
+    public boolean hasExtra(int column) {
+        return mExtraPresent[column];
+    }
+
+    public long getExtraLong(int slot) {
+        return mExtraLongs[slot];
+    }
+
+    public float getExtraFloat(int slot) {
+        return mExtraFloats[slot];
+    }
+
+    /**
+     * Appends an OIS sample, i.e., the lens shift in pixels at a sensor timestamp.
+     */
+    public void addOisSample(long timestamp, float xShift, float yShift) {
+        if (mOisSampleCount == mOisTimestamps.length) {
+            int capacity = Math.max(INITIAL_OIS_CAPACITY, 2 * mOisSampleCount);
+            mOisTimestamps = Arrays.copyOf(mOisTimestamps, capacity);
+            mOisXShifts = Arrays.copyOf(mOisXShifts, capacity);
+            mOisYShifts = Arrays.copyOf(mOisYShifts, capacity);
+        }
+        mOisTimestamps[mOisSampleCount] = timestamp;
+        mOisXShifts[mOisSampleCount] = xShift;
+        mOisYShifts[mOisSampleCount] = yShift;
+        ++mOisSampleCount;
+    }
+
+    public int getOisSampleCount() {
+        return mOisSampleCount;
+    }
+
+    public long getOisTimestamp(int sample) {
+        return mOisTimestamps[sample];
+    }
+
+    public float getOisXShift(int sample) {
+        return mOisXShifts[sample];
+    }
+
+    public float getOisYShift(int sample) {
+        return mOisYShifts[sample];
+    }
+
+    /**
+     * Writes the record as a line under CSV_HEADER followed by the csvHeader() of its
+     * schema.
+     */
+    public void writeCsv(CsvLineEncoder encoder) throws IOException {
+        writeCsv(encoder, false);
+    }
+
+    /**
+     * @param withFocalLengthPixel whether to write the line under
+     *                             CSV_HEADER_WITH_FOCAL_LENGTH_PIXEL instead
+     */
+    public void writeCsv(CsvLineEncoder encoder, boolean withFocalLengthPixel)
+            throws IOException {
+        appendLong(encoder, TIMESTAMP, mTimestamp);
+        if (withFocalLengthPixel) {
+            encoder.delimiter().append(mFocalLengthPixelX)
+                    .delimiter().append(mFocalLengthPixelY);
+        }
+        encoder.delimiter().append(mFrameNumber);
+        appendLong(encoder.delimiter(), EXPOSURE_TIME, mExposureTime);
+        appendLong(encoder.delimiter(), FRAME_DURATION, mFrameDuration);
+        appendLong(encoder.delimiter(), ROLLING_SHUTTER_SKEW, mRollingShutterSkew);
+        appendLong(encoder.delimiter(), SENSITIVITY, mSensitivity);
+        appendFloat(encoder.delimiter(), FOCAL_LENGTH, mFocalLength);
+        appendFloat(encoder.delimiter(), FOCUS_DISTANCE, mFocusDistance);
+        appendLong(encoder.delimiter(), AF_MODE, mAfMode);
+        for (int column = 0; column < mExtraPresent.length; ++column) {
+            int offset = mSchema.getOffset(column);
+            int count = mSchema.getCount(column);
+            boolean isFloat = mSchema.getType(column) == FrameMetadataSchema.TYPE_FLOAT;
+            for (int i = offset; i < offset + count; ++i) {
+                encoder.delimiter();
+                if (!mExtraPresent[column]) {
+                    encoder.appendNull();
+                } else if (isFloat) {
+                    encoder.append(mExtraFloats[i]);
+                } else {
+                    encoder.append(mExtraLongs[i]);
+                }
+            }
+        }
+        encoder.endLine();
+    }
+
+    private void appendLong(CsvLineEncoder encoder, int field, long value)
+            throws IOException {
+        if (has(field)) {
+            encoder.append(value);
+        } else {
+            encoder.appendNull();
+        }
+    }
+
+    private void appendFloat(CsvLineEncoder encoder, int field, float value)
+            throws IOException {
+        if (has(field)) {
+            encoder.append(value);
+        } else {
+            encoder.appendNull();
+        }
+    }
+}
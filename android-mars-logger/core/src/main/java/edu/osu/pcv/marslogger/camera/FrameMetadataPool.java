@@ -0,0 +1,87 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed set of preallocated {@link FrameMetadata} records, so that the capture callback
+ * fills a recycled record for every frame instead of allocating one.
+ * <p>
+ * The free records are kept in a lock-free ring.  Exactly one thread may call acquire(),
+ * the capture thread, and exactly one thread, the same or the one that consumes the
+ * records, may call release().
+ */
+public class FrameMetadataPool {
+    private final FrameMetadata[] mFree;
+    private final int mMask;
+
+    // next free record to hand out, advanced by acquire()
+    private final AtomicLong mHead = new AtomicLong();
+    // next slot to return a record to, advanced by release()
+    private final AtomicLong mTail = new AtomicLong();
+
+    private volatile long mExhaustedCount;
+
+    /**
+     * @param capacity minimum number of records, rounded up to a power of two
+     */
+    public FrameMetadataPool(int capacity) {
+        this(capacity, FrameMetadataSchema.EMPTY);
+    }
+
+    /**
+     * @param schema the extra columns of the records
+     */
+    public FrameMetadataPool(int capacity, FrameMetadataSchema schema) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mFree = new FrameMetadata[slots];
+        for (int i = 0; i < slots; ++i) {
+            mFree[i] = new FrameMetadata(schema);
+        }
+        mMask = slots - 1;
+        mTail.set(slots);
+    }
+
+    public int capacity() {
+        return mFree.length;
+    }
+
+    /**
+     * Takes a free record, cleared for a new frame.
+     *
+     * @return null if all records are in use, which is counted
+     */
+    public FrameMetadata acquire() {
+        long head = mHead.get();
+        if (head == mTail.get()) {
+            mExhaustedCount = mExhaustedCount + 1;
+            return null;
+        }
+        FrameMetadata record = mFree[(int) head & mMask];
+        mHead.lazySet(head + 1);
+        record.clear();
+        return record;
+    }
+
+    /**
+     * Returns a record taken by acquire() once its fields have been consumed.
+     */
+    public void release(FrameMetadata record) {
+        long tail = mTail.get();
+        mFree[(int) tail & mMask] = record;
+        mTail.lazySet(tail + 1);
+    }
+
+    /**
+     * Number of free records.  Exact only when neither acquire() nor release() runs.
+     */
+    public int available() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    /**
+     * Number of times acquire() found no free record.
+     */
+    public long getExhaustedCount() {
+        return mExhaustedCount;
+    }
+}
@@ -0,0 +1,125 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free single-producer/single-consumer queue of filled
+ * {@link FrameMetadata} records, which hands the records themselves rather than copies
+ * from the capture thread to the writer.
+ * <p>
+ * As with the inertial queues, a full queue rejects the record and counts it as an
+ * overflow, and the consumer releases slots once per batch.  Drained records go back to
+ * a {@link FrameMetadataPool}.
+ * <p>
+ * Exactly one thread may call offer() and exactly one other thread may call drainTo().
+ */
+public class FrameMetadataQueue {
+    private final FrameMetadata[] mRecords;
+    private final int mMask;
+
+    // next sequence to write, advanced by the producer
+    private final AtomicLong mTail = new AtomicLong();
+    // next sequence to read, advanced by the consumer
+    private final AtomicLong mHead = new AtomicLong();
+
+    // ----- accessed exclusively by the producer, published through volatile writes -----
+    private long mCachedHead;
+    private volatile int mHighWaterMark;
+    private volatile long mOverflowCount;
+
+    /**
+     * @param capacity minimum number of records to hold, rounded up to a power of two
+     */
+    public FrameMetadataQueue(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mRecords = new FrameMetadata[slots];
+        mMask = slots - 1;
+    }
+
+    public int capacity() {
+        return mRecords.length;
+    }
+
+    /**
+     * Passes a filled record to the consumer.  (Call from the producer thread.)
+     *
+     * @return false if the queue was full, and the record still belongs to the caller
+     */
+    public boolean offer(FrameMetadata frame) {
+        long tail = mTail.get();
+        if (tail - mCachedHead >= mRecords.length) {
+            mCachedHead = mHead.get();
+            if (tail - mCachedHead >= mRecords.length) {
+                mOverflowCount = mOverflowCount + 1;
+                return false;
+            }
+        }
+        mRecords[(int) tail & mMask] = frame;
+        mTail.lazySet(tail + 1);
+
+        if (tail + 1 - mCachedHead > mHighWaterMark) {
+            // the cached head may be stale, refresh it before raising the mark
+            mCachedHead = mHead.get();
+            int size = (int) (tail + 1 - mCachedHead);
+            if (size > mHighWaterMark) {
+                mHighWaterMark = size;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands up to maxCount queued records to the sink, oldest first, returns each to pool
+     * once written, and then releases their slots to the producer in one step.  (Call
+     * from the consumer thread.)
+     * <p>
+     * If the sink throws, the records before the failing one and the failing one itself
+     * are consumed, so that a broken sink cannot wedge the queue.
+     *
+     * @return number of records handed to the sink
+     */
+    public int drainTo(FrameMetadataSink sink, FrameMetadataPool pool, int maxCount)
+            throws IOException {
+        long head = mHead.get();
+        int count = (int) Math.min(mTail.get() - head, maxCount);
+        int consumed = 0;
+        try {
+            while (consumed < count) {
+                int slot = (int) (head + consumed) & mMask;
+                FrameMetadata frame = mRecords[slot];
+                mRecords[slot] = null;
+                ++consumed;
+                try {
+                    sink.write(frame);
+                } finally {
+                    pool.release(frame);
+                }
+            }
+        } finally {
+            mHead.lazySet(head + consumed);
+        }
+        return count;
+    }
+
+    /**
+     * Number of records waiting to be drained.  Exact only on the consumer thread.
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    /**
+     * Largest number of records observed in the queue by the producer.
+     */
+    public int getHighWaterMark() {
+        return mHighWaterMark;
+    }
+
+    /**
+     * Number of records rejected because the queue was full.
+     */
+    public long getOverflowCount() {
+        return mOverflowCount;
+    }
+}
@@ -0,0 +1,190 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The extra columns recorded for each frame after the fixed ones of
+ * {@link FrameMetadata#CSV_HEADER}, e.g., capture result keys chosen per session.
+ * <p>
+ * A column holds count values of one type.  Integer values are kept in the long slots of
+ * a record and float values in its float slots; the schema assigns every column its
+ * offset there once, so that filling and writing a record involves no lookups.
+ * <p>
+ * In the csv header each value is labeled name:type, or name[i]:type for a column of
+ * several values, with type i32, i64 or f32, so that readers can decode the extra
+ * columns without knowing the schema beforehand.
+ */
+public class FrameMetadataSchema {
+    public static final int TYPE_INT = 0;
+    public static final int TYPE_LONG = 1;
+    public static final int TYPE_FLOAT = 2;
+
+    public static final FrameMetadataSchema EMPTY = new Builder().build();
+
+    private static final String[] TYPE_NAMES = {"i32", "i64", "f32"};
+
+    private final String[] mNames;
+    private final int[] mTypes;
+    private final int[] mCounts;
+    private final int[] mOffsets;
+    private final int mLongCount;
+    private final int mFloatCount;
+
+    public static class Builder {
+        private final List<String> mNames = new ArrayList<>();
+        private final List<Integer> mTypes = new ArrayList<>();
+        private final List<Integer> mCounts = new ArrayList<>();
+
+        /**
+         * Appends a column of count values of type.
+         */
+        public Builder addColumn(String name, int type, int count) {
+            if (type < TYPE_INT || type > TYPE_FLOAT || count < 1) {
+                throw new IllegalArgumentException("Invalid column " + name);
+            }
+            mNames.add(name);
+            mTypes.add(type);
+            mCounts.add(count);
+            return this;
+        }
+
+        public FrameMetadataSchema build() {
+            int size = mNames.size();
+            int[] types = new int[size];
+            int[] counts = new int[size];
+            for (int i = 0; i < size; ++i) {
+                types[i] = mTypes.get(i);
+                counts[i] = mCounts.get(i);
+            }
+            return new FrameMetadataSchema(mNames.toArray(new String[size]), types, counts);
+        }
+    }
+
+    private FrameMetadataSchema(String[] names, int[] types, int[] counts) {
+        mNames = names;
+        mTypes = types;
+        mCounts = counts;
+        mOffsets = new int[names.length];
+        int longCount = 0;
+        int floatCount = 0;
+        for (int i = 0; i < names.length; ++i) {
+            if (types[i] == TYPE_FLOAT) {
+                mOffsets[i] = floatCount;
+                floatCount += counts[i];
+            } else {
+                mOffsets[i] = longCount;
+                longCount += counts[i];
+            }
+        }
+        mLongCount = longCount;
+        mFloatCount = floatCount;
+    }
+
+    public int getColumnCount() {
+        return mNames.length;
+    }
+
+    public String getName(int column) {
+        return mNames[column];
+    }
+
+    public int getType(int column) {
+        return mTypes[column];
+    }
+
+    public int getCount(int column) {
+        return mCounts[column];
+    }
+
+    /**
+     * Index of the first value of column in the float slots of a record if it is of
+     * TYPE_FLOAT, or else in its long slots.
+     */
+    public int getOffset(int column) {
+        return mOffsets[column];
+    }
+
+    int getLongCount() {
+        return mLongCount;
+    }
+
+    int getFloatCount() {
+        return mFloatCount;
+    }
+
+    /**
+     * The labels of the extra columns, each preceded by a comma, to append to
+     * FrameMetadata.CSV_HEADER.
+     */
+    public String csvHeader() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < mNames.length; ++i) {
+            for (int j = 0; j < mCounts[i]; ++j) {
+                sb.append(',').append(mNames[i]);
+                if (mCounts[i] > 1) {
+                    sb.append('[').append(j).append(']');
+                }
+                sb.append(':').append(TYPE_NAMES[mTypes[i]]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Recovers the schema of the extra columns from the header line of a capture result
+     * csv, the inverse of csvHeader(), with or without the fx and fy columns.
+     */
+    public static FrameMetadataSchema parseCsvHeader(String header) {
+        String[] labels = header.trim().split(",");
+        String fixedHeader =
+                header.startsWith(FrameMetadata.CSV_HEADER_WITH_FOCAL_LENGTH_PIXEL) ?
+                        FrameMetadata.CSV_HEADER_WITH_FOCAL_LENGTH_PIXEL :
+                        FrameMetadata.CSV_HEADER;
+        int fixed = fixedHeader.split(",").length;
+        Builder builder = new Builder();
+        String lastName = null;
+        int count = 0;
+        int lastType = TYPE_INT;
+        for (int i = fixed; i <= labels.length; ++i) {
+            String name = null;
+            int type = TYPE_INT;
+            int index = 0;
+            if (i < labels.length) {
+                int colon = labels[i].lastIndexOf(':');
+                if (colon < 0) {
+                    throw new IllegalArgumentException("Column without type: " + labels[i]);
+                }
+                type = parseType(labels[i].substring(colon + 1));
+                name = labels[i].substring(0, colon);
+                int bracket = name.lastIndexOf('[');
+                if (name.endsWith("]") && bracket > 0) {
+                    index = Integer.parseInt(name.substring(bracket + 1, name.length() - 1));
+                    name = name.substring(0, bracket);
+                }
+            }
+            if (lastName != null && !(index > 0 && name.equals(lastName))) {
+                builder.addColumn(lastName, lastType, count);
+                lastName = null;
+            }
+            if (name != null) {
+                if (lastName == null) {
+                    lastName = name;
+                    lastType = type;
+                    count = 0;
+                }
+                ++count;
+            }
+        }
+        return builder.build();
+    }
+
+    private static int parseType(String name) {
+        for (int type = 0; type < TYPE_NAMES.length; ++type) {
+            if (TYPE_NAMES[type].equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column type " + name);
+    }
+}
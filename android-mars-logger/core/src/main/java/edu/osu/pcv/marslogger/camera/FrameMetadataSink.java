@@ -0,0 +1,26 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+
+/**
+ * Destination of frame metadata records, e.g., a file in some format.
+ * <p>
+ * A sink is driven by a single thread, typically the {@link FrameMetadataWriter} thread.
+ */
+public interface FrameMetadataSink {
+    /**
+     * Writes one frame.  The record is owned by the caller and must not be retained.
+     */
+    void write(FrameMetadata frame) throws IOException;
+
+    /**
+     * Tells of a frame whose exposure started, several frames before its record arrives
+     * through write(), and also for a frame whose record is later dropped or abandoned.
+     * Only a writer with a pending capacity reports starts.
+     */
+    void writeStart(long frameNumber, long timestamp) throws IOException;
+
+    void flush() throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,309 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes frame metadata to a {@link FrameMetadataSink} on a dedicated thread, so that
+ * slow storage never delays the capture callbacks, nor the camera state and repeating
+ * requests served by the same thread.
+ * <p>
+ * The capture thread takes a record with acquire(), fills it, and passes it on with
+ * submit().  Records travel through a bounded {@link FrameMetadataQueue} and come back
+ * through a {@link FrameMetadataPool}, so neither thread allocates.  When the writer
+ * falls behind, frames are dropped and counted rather than waited for.
+ * <p>
+ * A writer made with a pending capacity also lets the capture thread fill a record over
+ * the life of a frame: begin() takes it at onCaptureStarted, pending() finds it for the
+ * partial results, and complete() takes it back for onCaptureCompleted.  begin() also
+ * queues the frame number and timestamp through a {@link FrameStartQueue}, and the
+ * writer hands them to {@link FrameMetadataSink#writeStart} ahead of the records, so
+ * that the sinks learn of every frame as it starts, whether or not its record is kept.
+ * <p>
+ * The writer sleeps briefly whenever the queue is empty, and flushes the sink at most
+ * once per FLUSH_INTERVAL_NANOS, so that many lines go to storage in one write.
+ * <p>
+ * To use:
+ * <ul>
+ * <li>create the writer with its sink, then call start()
+ * <li>acquire() and submit() records from the capture thread
+ * <li>call stop(), which writes whatever is still queued and closes the sink
+ * </ul>
+ */
+public class FrameMetadataWriter implements Runnable {
+    private static final int BATCH_SIZE = 64;
+    private static final long IDLE_PARK_NANOS = 5000000;
+    private static final long FLUSH_INTERVAL_NANOS = 1000000000;
+
+    private final FrameMetadataSink mSink;
+    private final FrameMetadataQueue mQueue;
+    private final FrameMetadataPool mPool;
+    private final FrameStartQueue mStarts;
+    private final long[] mStartFrameNumbers;
+    private final long[] mStartTimestamps;
+
+    private volatile boolean mRunning;
+    private Thread mThread;
+    private long mWriteErrorCount;
+
+    // ----- accessed exclusively by the capture thread -----
+    // records that could not be queued or were abandoned, reused for the next frames
+    private final FrameMetadata[] mSpares;
+    private int mSpareCount;
+    private final PendingFrameTable mPending;
+
+    /**
+     * @param queueCapacity number of frames that may wait for the writer
+     */
+    public FrameMetadataWriter(FrameMetadataSink sink, int queueCapacity) {
+        this(sink, queueCapacity, FrameMetadataSchema.EMPTY);
+    }
+
+    /**
+     * @param queueCapacity number of frames that may wait for the writer
+     * @param schema        the extra columns of the records handed out by acquire()
+     */
+    public FrameMetadataWriter(FrameMetadataSink sink, int queueCapacity,
+                               FrameMetadataSchema schema) {
+        this(sink, queueCapacity, schema, 0);
+    }
+
+    /**
+     * @param queueCapacity   number of frames that may wait for the writer
+     * @param schema          the extra columns of the records handed out by acquire()
+     * @param pendingCapacity number of frames that may be in flight between begin() and
+     *                        complete(), 0 to disable begin()
+     */
+    public FrameMetadataWriter(FrameMetadataSink sink, int queueCapacity,
+                               FrameMetadataSchema schema, int pendingCapacity) {
+        mSink = sink;
+        mQueue = new FrameMetadataQueue(queueCapacity);
+        mPending = pendingCapacity > 0 ? new PendingFrameTable(pendingCapacity) : null;
+        // the queued records, the one being written, the one being filled and those of
+        // the pending frames
+        int pending = mPending == null ? 0 : mPending.capacity();
+        mPool = new FrameMetadataPool(mQueue.capacity() + 2 + pending, schema);
+        mSpares = new FrameMetadata[mPool.capacity()];
+        mStarts = mPending == null ? null : new FrameStartQueue(queueCapacity);
+        mStartFrameNumbers = new long[mStarts == null ? 0 : BATCH_SIZE];
+        mStartTimestamps = new long[mStartFrameNumbers.length];
+    }
+
+    public void start() {
+        mRunning = true;
+        mThread = new Thread(this, "FrameMetadataWriter");
+        mThread.start();
+    }
+
+    /**
+     * Tells the writer thread to finish, and waits until all queued frames are written
+     * and the sink is closed.
+     */
+    public void stop() {
+        mRunning = false;
+        LockSupport.unpark(mThread);
+        try {
+            mThread.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes a cleared record to fill for a frame.  (Call from the capture thread.)
+     *
+     * @return null if no record is free, and the frame should be dropped
+     */
+    public FrameMetadata acquire() {
+        if (mSpareCount > 0) {
+            FrameMetadata frame = mSpares[--mSpareCount];
+            mSpares[mSpareCount] = null;
+            frame.clear();
+            return frame;
+        }
+        return mPool.acquire();
+    }
+
+    /**
+     * Takes a record for a frame that just started and keeps it pending until complete(),
+     * and queues the start for the sink.  (Call from the capture thread.)
+     *
+     * @return the record, with its frame number and timestamp set, or null if no record
+     * is free or the writer has no pending capacity
+     */
+    public FrameMetadata begin(long frameNumber, long timestamp) {
+        if (mPending == null) {
+            return null;
+        }
+        mStarts.offer(frameNumber, timestamp);
+        if (mSpareCount == 0 && mPool.available() == 0) {
+            // the frame will be counted as dropped if complete() finds no record either
+            return null;
+        }
+        FrameMetadata frame = acquire();
+        if (frame != null) {
+            frame.setFrameNumber(frameNumber);
+            frame.setTimestamp(timestamp);
+            FrameMetadata stale = mPending.put(frameNumber, frame);
+            if (stale != null) {
+                abandon(stale);
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * The pending record of a frame, to merge a partial result into.  (Call from the
+     * capture thread.)
+     *
+     * @return null if the frame did not begin()
+     */
+    public FrameMetadata pending(long frameNumber) {
+        return mPending == null ? null : mPending.get(frameNumber);
+    }
+
+    /**
+     * Takes the pending record of a frame for its total result, or a cleared record if the
+     * frame did not begin().  Either is then handed to submit() or abandon().  (Call from
+     * the capture thread.)
+     *
+     * @return null if no record is free, and the frame should be dropped
+     */
+    public FrameMetadata complete(long frameNumber) {
+        FrameMetadata frame = mPending == null ? null : mPending.remove(frameNumber);
+        return frame != null ? frame : acquire();
+    }
+
+    /**
+     * Returns a record that will not be submitted, e.g., of a failed capture.  (Call from
+     * the capture thread.)
+     */
+    public void abandon(FrameMetadata frame) {
+        if (mSpareCount < mSpares.length) {
+            mSpares[mSpareCount++] = frame;
+        }
+    }
+
+    /**
+     * Abandons the pending record of a frame, if any.  (Call from the capture thread.)
+     */
+    public void abandon(long frameNumber) {
+        FrameMetadata frame = mPending == null ? null : mPending.remove(frameNumber);
+        if (frame != null) {
+            abandon(frame);
+        }
+    }
+
+    /**
+     * Queues a filled record for writing; the caller must not touch it afterwards.
+     * (Call from the capture thread.)
+     *
+     * @return false if the queue was full and the frame was dropped
+     */
+    public boolean submit(FrameMetadata frame) {
+        if (mQueue.offer(frame)) {
+            return true;
+        }
+        abandon(frame);
+        return false;
+    }
+
+    public FrameMetadataQueue getQueue() {
+        return mQueue;
+    }
+
+    /**
+     * Number of frames dropped because the queue was full or no record was free.
+     */
+    public long getDropCount() {
+        return mQueue.getOverflowCount() + mPool.getExhaustedCount();
+    }
+
+    /**
+     * Number of frame starts dropped because their queue was full.
+     */
+    public long getStartDropCount() {
+        return mStarts == null ? 0 : mStarts.getOverflowCount();
+    }
+
+    /**
+     * Number of frames and frame starts that could not be written.  Valid after stop().
+     */
+    public long getWriteErrorCount() {
+        return mWriteErrorCount;
+    }
+
+    @Override
+    public void run() {
+        long lastFlushNanos = System.nanoTime();
+        boolean unflushed = false;
+        while (mRunning) {
+            int count = drainBatch();
+            unflushed |= count > 0;
+            if (unflushed && System.nanoTime() - lastFlushNanos >= FLUSH_INTERVAL_NANOS) {
+                flush();
+                unflushed = false;
+                lastFlushNanos = System.nanoTime();
+            }
+            if (count == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        // the capture thread may have queued a few more frames before noticing the stop
+        while (drainBatch() > 0) {
+            // keep draining
+        }
+        try {
+            mSink.close();
+        } catch (IOException err) {
+            System.err.println("IOException in closing frame metadata sink: " +
+                    err.getMessage());
+        }
+    }
+
+    private void flush() {
+        try {
+            mSink.flush();
+        } catch (IOException err) {
+            if (mWriteErrorCount++ == 0) {
+                System.err.println("IOException in flushing frame metadata: " +
+                        err.getMessage());
+            }
+        }
+    }
+
+    // a batch of starts, then a batch of records
+    private int drainBatch() {
+        return drainStarts() + drainRecords();
+    }
+
+    private int drainStarts() {
+        if (mStarts == null) {
+            return 0;
+        }
+        int count = mStarts.drain(mStartFrameNumbers, mStartTimestamps);
+        for (int i = 0; i < count; ++i) {
+            try {
+                mSink.writeStart(mStartFrameNumbers[i], mStartTimestamps[i]);
+            } catch (IOException err) {
+                if (mWriteErrorCount++ == 0) {
+                    System.err.println("IOException in writing frame start: " +
+                            err.getMessage());
+                }
+            }
+        }
+        return count;
+    }
+
+    private int drainRecords() {
+        try {
+            return mQueue.drainTo(mSink, mPool, BATCH_SIZE);
+        } catch (IOException err) {
+            if (mWriteErrorCount++ == 0) {
+                System.err.println("IOException in writing frame metadata: " +
+                        err.getMessage());
+            }
+            return 1;
+        }
+    }
+}
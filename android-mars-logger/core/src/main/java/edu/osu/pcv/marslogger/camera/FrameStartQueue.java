@@ -0,0 +1,87 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free single-producer/single-consumer queue of frame starts, i.e., the frame
+ * number and timestamp of each frame at onCaptureStarted, which carries them from the
+ * capture thread to the frame metadata writer thread as {@link PresentationTimeQueue}
+ * carries the presentation times.  A full queue rejects the start and counts it as an
+ * overflow.
+ * <p>
+ * Exactly one thread may call offer() and exactly one other thread may call drain().
+ */
+public class FrameStartQueue {
+    private final long[] mFrameNumbers;
+    private final long[] mTimestamps;
+    private final int mMask;
+
+    // next sequence to write, advanced by the producer
+    private final AtomicLong mTail = new AtomicLong();
+    // next sequence to read, advanced by the consumer
+    private final AtomicLong mHead = new AtomicLong();
+
+    // ----- accessed exclusively by the producer, published through volatile writes -----
+    private long mCachedHead;
+    private volatile long mOverflowCount;
+
+    /**
+     * @param capacity minimum number of starts to hold, rounded up to a power of two
+     */
+    public FrameStartQueue(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mFrameNumbers = new long[slots];
+        mTimestamps = new long[slots];
+        mMask = slots - 1;
+    }
+
+    public int capacity() {
+        return mFrameNumbers.length;
+    }
+
+    /**
+     * (Call from the producer thread.)
+     *
+     * @return false if the queue was full and the start was dropped
+     */
+    public boolean offer(long frameNumber, long timestamp) {
+        long tail = mTail.get();
+        if (tail - mCachedHead >= mFrameNumbers.length) {
+            mCachedHead = mHead.get();
+            if (tail - mCachedHead >= mFrameNumbers.length) {
+                mOverflowCount = mOverflowCount + 1;
+                return false;
+            }
+        }
+        int slot = (int) tail & mMask;
+        mFrameNumbers[slot] = frameNumber;
+        mTimestamps[slot] = timestamp;
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Copies up to frameNumbers.length queued starts into the two arrays, oldest first,
+     * and releases their slots.  (Call from the consumer thread.)
+     *
+     * @return number of starts copied
+     */
+    public int drain(long[] frameNumbers, long[] timestamps) {
+        long head = mHead.get();
+        int count = (int) Math.min(mTail.get() - head, frameNumbers.length);
+        for (int i = 0; i < count; ++i) {
+            int slot = (int) (head + i) & mMask;
+            frameNumbers[i] = mFrameNumbers[slot];
+            timestamps[i] = mTimestamps[slot];
+        }
+        mHead.lazySet(head + count);
+        return count;
+    }
+
+    /**
+     * Number of starts rejected because the queue was full.
+     */
+    public long getOverflowCount() {
+        return mOverflowCount;
+    }
+}
@@ -0,0 +1,156 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+ * Reads an intrinsics track written by {@link IntrinsicsTrackSink} and expands it back to
+ * per-frame values on demand.  The changes are few, so they are loaded at once, and
+ * select() finds the one in effect at a frame, in constant time when frames are selected
+ * in order, as when walking the capture result csv.
+ * <pre>
+ *   IntrinsicsTrackReader track = new IntrinsicsTrackReader(file);
+ *   for each frame of the capture result csv:
+ *       if (track.select(frameNumber)) {
+ *           use(track.getIntrinsic(0), track.getDistortion(0));
+ *       }
+ * </pre>
+ * Absent values, e.g., cx without LENS_INTRINSIC_CALIBRATION, read as NaN.
+ */
+public class IntrinsicsTrackReader {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] mFrameNumbers = new long[INITIAL_CAPACITY];
+    private long[] mTimestamps = new long[INITIAL_CAPACITY];
+    private float[] mValues = new float[INITIAL_CAPACITY * IntrinsicsTrackSink.VALUE_COUNT];
+    private int mChangeCount;
+    private int mSelected = -1;
+
+    public IntrinsicsTrackReader(String file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), "US-ASCII"));
+        try {
+            String header = reader.readLine();
+            if (header == null || !header.trim().equals(IntrinsicsTrackSink.CSV_HEADER)) {
+                throw new IOException(file + " is not an intrinsics track");
+            }
+            int lineNumber = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ++lineNumber;
+                if (!line.isEmpty()) {
+                    parseLine(line, lineNumber, file);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void parseLine(String line, int lineNumber, String file) throws IOException {
+        String[] fields = line.split(",");
+        if (fields.length != 2 + IntrinsicsTrackSink.VALUE_COUNT) {
+            throw new IOException("Expected " + (2 + IntrinsicsTrackSink.VALUE_COUNT) +
+                    " fields on line " + lineNumber + " of " + file + ", found " +
+                    fields.length);
+        }
+        if (mChangeCount == mFrameNumbers.length) {
+            int capacity = 2 * mChangeCount;
+            mFrameNumbers = Arrays.copyOf(mFrameNumbers, capacity);
+            mTimestamps = Arrays.copyOf(mTimestamps, capacity);
+            mValues = Arrays.copyOf(mValues, capacity * IntrinsicsTrackSink.VALUE_COUNT);
+        }
+        try {
+            long frameNumber = Long.parseLong(fields[0].trim());
+            if (mChangeCount > 0 && frameNumber <= mFrameNumbers[mChangeCount - 1]) {
+                throw new IOException("Frame number out of order on line " + lineNumber +
+                        " of " + file);
+            }
+            mFrameNumbers[mChangeCount] = frameNumber;
+            String timestamp = fields[1].trim();
+            mTimestamps[mChangeCount] = timestamp.equals("null") ? -1 :
+                    Long.parseLong(timestamp);
+            int base = mChangeCount * IntrinsicsTrackSink.VALUE_COUNT;
+            for (int i = 0; i < IntrinsicsTrackSink.VALUE_COUNT; ++i) {
+                String value = fields[2 + i].trim();
+                mValues[base + i] = value.equals("null") ? Float.NaN :
+                        Float.parseFloat(value);
+            }
+        } catch (NumberFormatException err) {
+            throw new IOException("Bad number on line " + lineNumber + " of " + file +
+                    ": " + err.getMessage());
+        }
+        ++mChangeCount;
+    }
+
+    public int getChangeCount() {
+        return mChangeCount;
+    }
+
+    public long getChangeFrameNumber(int change) {
+        return mFrameNumbers[change];
+    }
+
+    /**
+     * Selects the values in effect at a frame, i.e., those of the last change at or
+     * before it.
+     *
+     * @return false if the frame precedes the first change, which leaves no selection
+     */
+    public boolean select(long frameNumber) {
+        int change = mSelected;
+        if (change >= 0 && mFrameNumbers[change] <= frameNumber) {
+            // frames in order stay at the selected change or move to the next one
+            if (change + 1 < mChangeCount && mFrameNumbers[change + 1] <= frameNumber) {
+                ++change;
+                if (change + 1 < mChangeCount &&
+                        mFrameNumbers[change + 1] <= frameNumber) {
+                    change = search(frameNumber);
+                }
+            }
+        } else {
+            change = search(frameNumber);
+        }
+        mSelected = change;
+        return change >= 0;
+    }
+
+    // the last change at or before frameNumber, -1 if none
+    private int search(long frameNumber) {
+        int index = Arrays.binarySearch(mFrameNumbers, 0, mChangeCount, frameNumber);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * The frame number of the change in effect at the selected frame.
+     */
+    public long getFrameNumber() {
+        return mFrameNumbers[mSelected];
+    }
+
+    /**
+     * The timestamp of the frame of the selected change, -1 if it was unknown.
+     */
+    public long getTimestamp() {
+        return mTimestamps[mSelected];
+    }
+
+    /**
+     * fx, fy, cx, cy and skew for index 0 to 4, in the order of
+     * LENS_INTRINSIC_CALIBRATION.
+     */
+    public float getIntrinsic(int index) {
+        return mValues[mSelected * IntrinsicsTrackSink.VALUE_COUNT + index];
+    }
+
+    /**
+     * k1 to k6 for index 0 to 5, in the order of LENS_RADIAL_DISTORTION.
+     */
+    public float getDistortion(int index) {
+        return mValues[mSelected * IntrinsicsTrackSink.VALUE_COUNT +
+                FrameMetadata.INTRINSICS_SIZE + index];
+    }
+}
@@ -0,0 +1,102 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+
+import edu.osu.pcv.marslogger.util.CsvLineEncoder;
+
+/**
+ * Writes the camera intrinsics of frame metadata records as a csv track of changes: a
+ * line holds the intrinsics from its frame on, until the frame of the next line, so a
+ * session whose lens state is steady costs a line instead of a line per frame.
+ * <p>
+ * A line has the frame number and timestamp, the full K, i.e., fx, fy, cx, cy and skew,
+ * and the radial distortion k1 to k6.  If the camera does not report
+ * LENS_INTRINSIC_CALIBRATION, fx and fy are the estimated focal length in pixels and
+ * cx, cy and skew are null, as are the coefficients without LENS_RADIAL_DISTORTION.
+ * Read the track back with {@link IntrinsicsTrackReader}.
+ */
+public class IntrinsicsTrackSink implements FrameMetadataSink {
+    public static final String CSV_HEADER = "Frame No.,Timestamp[nanosec]," +
+            "fx[px],fy[px],cx[px],cy[px],skew[px],k1,k2,k3,k4,k5,k6";
+    public static final int VALUE_COUNT =
+            FrameMetadata.INTRINSICS_SIZE + FrameMetadata.DISTORTION_SIZE;
+
+    private final CsvLineEncoder mEncoder;
+    // the values of the last line and of the frame at hand, NaN where absent
+    private final float[] mLast = new float[VALUE_COUNT];
+    private final float[] mValues = new float[VALUE_COUNT];
+    private boolean mHasLast = false;
+    private long mChangeCount;
+
+    public IntrinsicsTrackSink(String file) throws IOException {
+        mEncoder = new CsvLineEncoder(file);
+        mEncoder.appendAscii(CSV_HEADER).endLine();
+    }
+
+    @Override
+    public void write(FrameMetadata frame) throws IOException {
+        if (frame.has(FrameMetadata.INTRINSICS)) {
+            for (int i = 0; i < FrameMetadata.INTRINSICS_SIZE; ++i) {
+                mValues[i] = frame.getIntrinsic(i);
+            }
+        } else {
+            mValues[0] = frame.getFocalLengthPixelX();
+            mValues[1] = frame.getFocalLengthPixelY();
+            for (int i = 2; i < FrameMetadata.INTRINSICS_SIZE; ++i) {
+                mValues[i] = Float.NaN;
+            }
+        }
+        boolean hasDistortion = frame.has(FrameMetadata.DISTORTION);
+        for (int i = 0; i < FrameMetadata.DISTORTION_SIZE; ++i) {
+            mValues[FrameMetadata.INTRINSICS_SIZE + i] =
+                    hasDistortion ? frame.getDistortion(i) : Float.NaN;
+        }
+
+        boolean changed = !mHasLast;
+        for (int i = 0; i < VALUE_COUNT && !changed; ++i) {
+            changed = Float.floatToIntBits(mValues[i]) != Float.floatToIntBits(mLast[i]);
+        }
+        if (!changed) {
+            return;
+        }
+        mEncoder.append(frame.getFrameNumber()).delimiter();
+        if (frame.has(FrameMetadata.TIMESTAMP)) {
+            mEncoder.append(frame.getTimestamp());
+        } else {
+            mEncoder.appendNull();
+        }
+        for (int i = 0; i < VALUE_COUNT; ++i) {
+            mEncoder.delimiter();
+            if (Float.isNaN(mValues[i])) {
+                mEncoder.appendNull();
+            } else {
+                mEncoder.append(mValues[i]);
+            }
+        }
+        mEncoder.endLine();
+        System.arraycopy(mValues, 0, mLast, 0, VALUE_COUNT);
+        mHasLast = true;
+        ++mChangeCount;
+    }
+
+    @Override
+    public void writeStart(long frameNumber, long timestamp) {
+    }
+
+    /**
+     * The number of lines written, i.e., of changes including the first frame.
+     */
+    public long getChangeCount() {
+        return mChangeCount;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mEncoder.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mEncoder.close();
+    }
+}
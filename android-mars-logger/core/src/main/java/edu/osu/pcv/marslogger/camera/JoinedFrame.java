@@ -0,0 +1,110 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+
+import edu.osu.pcv.marslogger.util.CsvLineEncoder;
+
+/**
+ * One frame as seen by both the video encoder and the capture results, as emitted by
+ * {@link FrameJoiner}.  A frame that only one side saw within the join window lacks the
+ * fields of the other side.  The record is reused for every frame.
+ */
+public class JoinedFrame {
+    public static final String CSV_HEADER = "Encoded frame No.,PTS[microsec],Frame No.," +
+            "Timestamp[nanosec],Exposure time[nanosec],fx[px],fy[px],cx[px],cy[px]";
+    public static final long NO_EXPOSURE_TIME = -1;
+
+    boolean mHasEncodedFrame;
+    long mEncodedIndex;
+    long mPresentationTimeUs;
+
+    boolean mHasMetadata;
+    long mFrameNumber;
+    long mTimestamp;
+    long mExposureTime;
+    // fx, fy, cx and cy, NaN where unknown
+    final float[] mIntrinsics = new float[4];
+
+    /**
+     * Whether the encoder output the frame.  Otherwise, the frame was dropped before
+     * encoding, or its presentation time did not match.
+     */
+    public boolean hasEncodedFrame() {
+        return mHasEncodedFrame;
+    }
+
+    /**
+     * Whether the frame has a capture result.  Otherwise, its metadata was dropped or did
+     * not arrive within the window.
+     */
+    public boolean hasMetadata() {
+        return mHasMetadata;
+    }
+
+    /**
+     * Index of the frame in the encoder output, from 0.
+     */
+    public long getEncodedIndex() {
+        return mEncodedIndex;
+    }
+
+    public long getPresentationTimeUs() {
+        return mPresentationTimeUs;
+    }
+
+    public long getFrameNumber() {
+        return mFrameNumber;
+    }
+
+    /**
+     * SENSOR_TIMESTAMP in nanoseconds.
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * Exposure time in nanoseconds, NO_EXPOSURE_TIME if the frame lacked it.
+     */
+    public long getExposureTime() {
+        return mExposureTime;
+    }
+
+    /**
+     * fx, fy, cx and cy for index 0 to 3, NaN where unknown.
+     */
+    public float getIntrinsic(int index) {
+        return mIntrinsics[index];
+    }
+
+    /**
+     * Writes the record as a line under CSV_HEADER, with null for the missing fields.
+     */
+    public void writeCsv(CsvLineEncoder encoder) throws IOException {
+        if (mHasEncodedFrame) {
+            encoder.append(mEncodedIndex).delimiter().append(mPresentationTimeUs);
+        } else {
+            encoder.appendNull().delimiter().appendNull();
+        }
+        if (mHasMetadata) {
+            encoder.delimiter().append(mFrameNumber).delimiter().append(mTimestamp);
+        } else {
+            encoder.delimiter().appendNull().delimiter().appendNull();
+        }
+        encoder.delimiter();
+        if (mHasMetadata && mExposureTime != NO_EXPOSURE_TIME) {
+            encoder.append(mExposureTime);
+        } else {
+            encoder.appendNull();
+        }
+        for (int i = 0; i < mIntrinsics.length; ++i) {
+            encoder.delimiter();
+            if (mHasMetadata && !Float.isNaN(mIntrinsics[i])) {
+                encoder.append(mIntrinsics[i]);
+            } else {
+                encoder.appendNull();
+            }
+        }
+        encoder.endLine();
+    }
+}
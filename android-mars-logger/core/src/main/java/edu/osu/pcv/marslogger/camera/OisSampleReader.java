@@ -0,0 +1,143 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Streams the frames of an OIS side log written by {@link BinaryOisSampleSink}.
+ * <pre>
+ *   OisSampleReader reader = new OisSampleReader(file);
+ *   while (reader.next()) {
+ *       for (int i = 0; i < reader.getSampleCount(); ++i) {
+ *           use(reader.getFrameNumber(), reader.getTimestamp(i), reader.getXShift(i),
+ *                   reader.getYShift(i));
+ *       }
+ *   }
+ *   reader.close();
+ * </pre>
+ */
+public class OisSampleReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileInputStream mStream;
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private final int mVersion;
+
+    private long mFrameNumber;
+    private long mFrameTimestamp;
+    private int mSampleCount;
+    private final long[] mTimestamps = new long[BinaryOisSampleSink.MAX_SAMPLE_COUNT];
+    private final float[] mXShifts = new float[BinaryOisSampleSink.MAX_SAMPLE_COUNT];
+    private final float[] mYShifts = new float[BinaryOisSampleSink.MAX_SAMPLE_COUNT];
+    private boolean mEndOfFile;
+
+    public OisSampleReader(String file) throws IOException {
+        mStream = new FileInputStream(file);
+        mChannel = mStream.getChannel();
+        mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        mBuffer.flip();
+        try {
+            if (!fill(BinaryOisSampleSink.HEADER_LENGTH) ||
+                    mBuffer.getInt() != BinaryOisSampleSink.MAGIC) {
+                throw new IOException(file + " is not an OIS sample log");
+            }
+            mVersion = mBuffer.getShort() & 0xffff;
+            if (mVersion > BinaryOisSampleSink.VERSION) {
+                throw new IOException("Unsupported OIS sample log version " + mVersion);
+            }
+            int headerLength = mBuffer.getShort() & 0xffff;
+            if (headerLength < BinaryOisSampleSink.HEADER_LENGTH ||
+                    !fill(headerLength - BinaryOisSampleSink.HEADER_LENGTH)) {
+                throw new IOException("Truncated header in " + file);
+            }
+            // skip fields of newer minor versions
+            mBuffer.position(mBuffer.position() + headerLength -
+                    BinaryOisSampleSink.HEADER_LENGTH);
+        } catch (IOException err) {
+            mStream.close();
+            throw err;
+        }
+    }
+
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Advances to the next frame, which is read in pieces, as it may exceed the buffer.
+     *
+     * @return false at the end of the log, including when the log ends with a partial
+     * record, e.g., because recording was interrupted
+     */
+    public boolean next() throws IOException {
+        if (!fill(BinaryOisSampleSink.FRAME_HEADER_SIZE)) {
+            return false;
+        }
+        mFrameNumber = mBuffer.getLong();
+        mFrameTimestamp = mBuffer.getLong();
+        int count = mBuffer.getShort() & 0xffff;
+        mBuffer.getShort();
+        for (int sample = 0; sample < count; ++sample) {
+            if (!fill(BinaryOisSampleSink.SAMPLE_SIZE)) {
+                return false;
+            }
+            mTimestamps[sample] = mBuffer.getLong();
+            mXShifts[sample] = mBuffer.getFloat();
+            mYShifts[sample] = mBuffer.getFloat();
+        }
+        mSampleCount = count;
+        return true;
+    }
+
+    public long getFrameNumber() {
+        return mFrameNumber;
+    }
+
+    /**
+     * SENSOR_TIMESTAMP of the frame, -1 if it was unknown.
+     */
+    public long getFrameTimestamp() {
+        return mFrameTimestamp;
+    }
+
+    public int getSampleCount() {
+        return mSampleCount;
+    }
+
+    public long getTimestamp(int sample) {
+        return mTimestamps[sample];
+    }
+
+    public float getXShift(int sample) {
+        return mXShifts[sample];
+    }
+
+    public float getYShift(int sample) {
+        return mYShifts[sample];
+    }
+
+    // makes sure that at least count bytes are buffered, returns false at end of file
+    private boolean fill(int count) throws IOException {
+        if (mBuffer.remaining() >= count) {
+            return true;
+        }
+        mBuffer.compact();
+        while (mBuffer.position() < count && !mEndOfFile) {
+            if (mChannel.read(mBuffer) < 0) {
+                mEndOfFile = true;
+            }
+        }
+        mBuffer.flip();
+        return mBuffer.remaining() >= count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mStream.close();
+    }
+}
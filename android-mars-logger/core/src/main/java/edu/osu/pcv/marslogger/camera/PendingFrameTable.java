@@ -0,0 +1,77 @@
+package edu.osu.pcv.marslogger.camera;
+
+/**
+ * The records of frames that have started but not completed, keyed by frame number, so
+ * that onCaptureStarted, the partial results and onCaptureCompleted of a frame fill one
+ * record.
+ * <p>
+ * Frames in flight have consecutive numbers, so the table is direct-mapped: a frame goes
+ * to the slot of its number modulo the capacity, and needs neither hashing nor probing.
+ * A frame that never completed is evicted by the frame capacity numbers later.
+ * <p>
+ * This class is not thread-safe; it is used by the capture thread only.
+ */
+public class PendingFrameTable {
+    private final long[] mFrameNumbers;
+    private final FrameMetadata[] mRecords;
+    private final int mMask;
+    private int mSize;
+
+    /**
+     * @param capacity minimum number of frames in flight, rounded up to a power of two
+     */
+    public PendingFrameTable(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mFrameNumbers = new long[slots];
+        mRecords = new FrameMetadata[slots];
+        mMask = slots - 1;
+    }
+
+    public int capacity() {
+        return mRecords.length;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Adds the record of a frame.
+     *
+     * @return the record evicted from the slot, which the caller still owns, or null
+     */
+    public FrameMetadata put(long frameNumber, FrameMetadata record) {
+        int slot = (int) frameNumber & mMask;
+        FrameMetadata evicted = mRecords[slot];
+        if (evicted == null) {
+            ++mSize;
+        }
+        mFrameNumbers[slot] = frameNumber;
+        mRecords[slot] = record;
+        return evicted;
+    }
+
+    /**
+     * The record of a frame, which stays in the table, or null.
+     */
+    public FrameMetadata get(long frameNumber) {
+        int slot = (int) frameNumber & mMask;
+        return mFrameNumbers[slot] == frameNumber ? mRecords[slot] : null;
+    }
+
+    /**
+     * Removes the record of a frame.
+     *
+     * @return the record, or null if the frame is not in the table
+     */
+    public FrameMetadata remove(long frameNumber) {
+        int slot = (int) frameNumber & mMask;
+        FrameMetadata record = mRecords[slot];
+        if (record == null || mFrameNumbers[slot] != frameNumber) {
+            return null;
+        }
+        mRecords[slot] = null;
+        --mSize;
+        return record;
+    }
+}
@@ -0,0 +1,80 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free single-producer/single-consumer queue of presentation times, which
+ * carries the encoded frames from the encoder thread to the frame metadata writer thread.
+ * As with the inertial queues, a full queue rejects the value and counts it as an
+ * overflow, and the consumer releases slots once per batch.
+ * <p>
+ * Exactly one thread may call offer() and exactly one other thread may call drain().
+ */
+public class PresentationTimeQueue {
+    private final long[] mValues;
+    private final int mMask;
+
+    // next sequence to write, advanced by the producer
+    private final AtomicLong mTail = new AtomicLong();
+    // next sequence to read, advanced by the consumer
+    private final AtomicLong mHead = new AtomicLong();
+
+    // ----- accessed exclusively by the producer, published through volatile writes -----
+    private long mCachedHead;
+    private volatile long mOverflowCount;
+
+    /**
+     * @param capacity minimum number of values to hold, rounded up to a power of two
+     */
+    public PresentationTimeQueue(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mValues = new long[slots];
+        mMask = slots - 1;
+    }
+
+    public int capacity() {
+        return mValues.length;
+    }
+
+    /**
+     * (Call from the producer thread.)
+     *
+     * @return false if the queue was full and the value was dropped
+     */
+    public boolean offer(long presentationTimeUs) {
+        long tail = mTail.get();
+        if (tail - mCachedHead >= mValues.length) {
+            mCachedHead = mHead.get();
+            if (tail - mCachedHead >= mValues.length) {
+                mOverflowCount = mOverflowCount + 1;
+                return false;
+            }
+        }
+        mValues[(int) tail & mMask] = presentationTimeUs;
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Copies up to buffer.length queued values into buffer, oldest first, and releases
+     * their slots.  (Call from the consumer thread.)
+     *
+     * @return number of values copied
+     */
+    public int drain(long[] buffer) {
+        long head = mHead.get();
+        int count = (int) Math.min(mTail.get() - head, buffer.length);
+        for (int i = 0; i < count; ++i) {
+            buffer[i] = mValues[(int) (head + i) & mMask];
+        }
+        mHead.lazySet(head + count);
+        return count;
+    }
+
+    /**
+     * Number of values rejected because the queue was full.
+     */
+    public long getOverflowCount() {
+        return mOverflowCount;
+    }
+}
@@ -0,0 +1,96 @@
+package edu.osu.pcv.marslogger.camera;
+
+import java.io.IOException;
+
+/**
+ * Hands every frame to several sinks in turn, e.g., the capture result csv and the OIS
+ * side log, so that one writer thread serves them all.
+ */
+public class TeeFrameMetadataSink implements FrameMetadataSink {
+    private final FrameMetadataSink[] mSinks;
+
+    public TeeFrameMetadataSink(FrameMetadataSink... sinks) {
+        mSinks = sinks;
+    }
+
+    /**
+     * Hands the frame to every sink, even if some fail, and rethrows the first failure,
+     * so that an error of one file does not cost the others the frame.
+     */
+    @Override
+    public void write(FrameMetadata frame) throws IOException {
+        IOException failure = null;
+        for (FrameMetadataSink sink : mSinks) {
+            try {
+                sink.write(frame);
+            } catch (IOException err) {
+                if (failure == null) {
+                    failure = err;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Hands the start to every sink, even if some fail, and rethrows the first failure.
+     */
+    @Override
+    public void writeStart(long frameNumber, long timestamp) throws IOException {
+        IOException failure = null;
+        for (FrameMetadataSink sink : mSinks) {
+            try {
+                sink.writeStart(frameNumber, timestamp);
+            } catch (IOException err) {
+                if (failure == null) {
+                    failure = err;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Flushes every sink, even if some fail, and rethrows the first failure.
+     */
+    @Override
+    public void flush() throws IOException {
+        IOException failure = null;
+        for (FrameMetadataSink sink : mSinks) {
+            try {
+                sink.flush();
+            } catch (IOException err) {
+                if (failure == null) {
+                    failure = err;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Closes every sink, even if some fail, and rethrows the first failure.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (FrameMetadataSink sink : mSinks) {
+            try {
+                sink.close();
+            } catch (IOException err) {
+                if (failure == null) {
+                    failure = err;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Writes synced inertial samples in the compact binary log format.
+ * <p>
+ * The file starts with a header, all fields little-endian:
+ * <pre>
+ *   char[4]  magic "MIMU"
+ *   uint16   format version
+ *   uint16   channel count n
+ *   int32    header length in bytes, i.e., offset of the first record
+ *   n times: uint8 name length, then the ASCII channel name, e.g., "ax[rad/s]"
+ * </pre>
+ * followed by fixed-width records of an int64 timestamp in nanoseconds and n float32
+ * values.  Compared to the csv, a 6-channel sample takes 32 bytes instead of about 100,
+ * and values round-trip exactly.
+ * <p>
+ * Records are staged in a reusable direct ByteBuffer and handed to the FileChannel in
+ * large blocks, so writing a sample does not allocate.
+ */
+public class BinaryInertialSink implements InertialSink {
+    public static final int MAGIC = 0x554d494d; // "MIMU" read as a little-endian int
+    public static final int VERSION = 1;
+    public static final Charset CHANNEL_NAME_CHARSET = Charset.forName("US-ASCII");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileOutputStream mStream;
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private final int mChannelCount;
+
+    public BinaryInertialSink(String file, String[] channelNames) throws IOException {
+        mStream = new FileOutputStream(file, false);
+        mChannel = mStream.getChannel();
+        mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        mChannelCount = channelNames.length;
+        writeHeader(mBuffer, channelNames);
+    }
+
+    /**
+     * Size of a record holding channelCount values.
+     */
+    public static int recordSize(int channelCount) {
+        return 8 + 4 * channelCount;
+    }
+
+    static void writeHeader(ByteBuffer buffer, String[] channelNames) {
+        int headerLength = 12;
+        for (String name : channelNames) {
+            headerLength += 1 + name.length();
+        }
+        buffer.putInt(MAGIC);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) channelNames.length);
+        buffer.putInt(headerLength);
+        for (String name : channelNames) {
+            byte[] bytes = name.getBytes(CHANNEL_NAME_CHARSET);
+            buffer.put((byte) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    @Override
+    public void write(long timestamp, float[] values, int offset) throws IOException {
+        if (mBuffer.remaining() < recordSize(mChannelCount)) {
+            drainBuffer();
+        }
+        mBuffer.putLong(timestamp);
+        for (int index = 0; index < mChannelCount; ++index) {
+            mBuffer.putFloat(values[offset + index]);
+        }
+    }
+
+    private void drainBuffer() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drainBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drainBuffer();
+        } finally {
+            mStream.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes raw sensor events in an append-only binary log, so that the streams can be
+ * synced again offline, e.g., with another {@link SampleInterpolator}.
+ * <p>
+ * The file starts with a header, all fields little-endian:
+ * <pre>
+ *   char[4]  magic "MRAW"
+ *   uint16   format version
+ *   uint16   header length in bytes, i.e., offset of the first record
+ * </pre>
+ * followed by one record per event, in the order the events were delivered:
+ * <pre>
+ *   uint16   android.hardware.Sensor type
+ *   uint16   value count n
+ *   int64    timestamp in nanoseconds
+ *   float32  values[n]
+ * </pre>
+ * A gyro event takes 24 bytes.  Records are staged in a reusable direct ByteBuffer as in
+ * {@link BinaryInertialSink}; read them back with {@link RawEventReader}.
+ */
+public class BinaryRawEventSink implements RawEventSink {
+    public static final int MAGIC = 0x5741524d; // "MRAW" read as a little-endian int
+    public static final int VERSION = 1;
+    public static final int HEADER_LENGTH = 8;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileOutputStream mStream;
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+
+    public BinaryRawEventSink(String file) throws IOException {
+        mStream = new FileOutputStream(file, false);
+        mChannel = mStream.getChannel();
+        mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        mBuffer.putInt(MAGIC);
+        mBuffer.putShort((short) VERSION);
+        mBuffer.putShort((short) HEADER_LENGTH);
+    }
+
+    /**
+     * Size of a record holding valueCount values.
+     */
+    public static int recordSize(int valueCount) {
+        return 12 + 4 * valueCount;
+    }
+
+    @Override
+    public void write(int sensorType, long timestamp, float[] values, int offset, int count)
+            throws IOException {
+        if (mBuffer.remaining() < recordSize(count)) {
+            drainBuffer();
+        }
+        mBuffer.putShort((short) sensorType);
+        mBuffer.putShort((short) count);
+        mBuffer.putLong(timestamp);
+        for (int index = 0; index < count; ++index) {
+            mBuffer.putFloat(values[offset + index]);
+        }
+    }
+
+    private void drainBuffer() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drainBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drainBuffer();
+        } finally {
+            mStream.close();
+        }
+    }
+}
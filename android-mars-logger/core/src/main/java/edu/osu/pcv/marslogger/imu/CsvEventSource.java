@@ -0,0 +1,151 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+ * Replays the synced samples of a gyro_accel.csv as sensor samples.
+ * <p>
+ * Each line is split into a gyro sample, the first three values, an accelerometer
+ * sample, the next three, and if the file has more columns, e.g., those of the motion
+ * sensors, a third stream with the rest of them, all at the timestamp of the line.  The
+ * reference stream is delivered last, so that the other samples at its timestamp have
+ * arrived by the time it is synced, and replaying the file reproduces it.
+ */
+public class CsvEventSource implements SensorEventSource {
+    private static final int GYRO_AND_ACCEL_CHANNELS = 6;
+
+    private final BufferedReader mReader;
+    private final String mFile;
+    private final String[][] mStreamChannelNames;
+    private final float[][] mStreamValues;
+    // streams in the order they are delivered for each line
+    private final int[] mOrder;
+
+    private int mLineNumber = 1;
+    private int mNextInLine;
+    private long mTimestamp;
+    private int mStream;
+
+    /**
+     * @param referenceStream the stream that will be synced to, delivered last per line
+     */
+    public CsvEventSource(String file, int referenceStream) throws IOException {
+        mFile = file;
+        mReader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                "US-ASCII"));
+        try {
+            String header = mReader.readLine();
+            String[] columns = header == null ? new String[0] : header.split(",");
+            if (columns.length < 1 + GYRO_AND_ACCEL_CHANNELS) {
+                throw new IOException(file + " is not an inertial csv log");
+            }
+            String[] names = new String[columns.length - 1];
+            for (int index = 0; index < names.length; ++index) {
+                names[index] = columns[index + 1].trim();
+            }
+            int streamCount = names.length > GYRO_AND_ACCEL_CHANNELS ? 3 : 2;
+            mStreamChannelNames = new String[streamCount][];
+            mStreamChannelNames[StreamSynchronizer.STREAM_GYRO] =
+                    Arrays.copyOfRange(names, 0, 3);
+            mStreamChannelNames[StreamSynchronizer.STREAM_ACCEL] =
+                    Arrays.copyOfRange(names, 3, GYRO_AND_ACCEL_CHANNELS);
+            if (streamCount == 3) {
+                mStreamChannelNames[2] =
+                        Arrays.copyOfRange(names, GYRO_AND_ACCEL_CHANNELS, names.length);
+            }
+        } catch (IOException err) {
+            mReader.close();
+            throw err;
+        }
+        mStreamValues = new float[mStreamChannelNames.length][];
+        mOrder = new int[mStreamChannelNames.length];
+        int position = 0;
+        for (int stream = mStreamChannelNames.length - 1; stream >= 0; --stream) {
+            mStreamValues[stream] = new float[mStreamChannelNames[stream].length];
+            if (stream != referenceStream) {
+                mOrder[position++] = stream;
+            }
+        }
+        mOrder[position] = referenceStream;
+        mNextInLine = mOrder.length;
+    }
+
+    @Override
+    public int getStreamCount() {
+        return mStreamChannelNames.length;
+    }
+
+    @Override
+    public String[] getChannelNames(int stream) {
+        return mStreamChannelNames[stream].clone();
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (mNextInLine == mOrder.length) {
+            if (!readLine()) {
+                return false;
+            }
+            mNextInLine = 0;
+        }
+        mStream = mOrder[mNextInLine++];
+        return true;
+    }
+
+    private boolean readLine() throws IOException {
+        String line;
+        do {
+            line = mReader.readLine();
+            ++mLineNumber;
+            if (line == null) {
+                return false;
+            }
+        } while (line.isEmpty());
+        String[] fields = line.split(",");
+        int expected = 1;
+        for (float[] values : mStreamValues) {
+            expected += values.length;
+        }
+        if (fields.length != expected) {
+            throw new IOException("Expected " + expected + " fields on line " + mLineNumber +
+                    " of " + mFile + ", found " + fields.length);
+        }
+        try {
+            mTimestamp = Long.parseLong(fields[0].trim());
+            int field = 1;
+            for (float[] values : mStreamValues) {
+                for (int index = 0; index < values.length; ++index) {
+                    values[index] = Float.parseFloat(fields[field++]);
+                }
+            }
+        } catch (NumberFormatException err) {
+            throw new IOException("Malformed number on line " + mLineNumber + " of " + mFile +
+                    ": " + err.getMessage());
+        }
+        return true;
+    }
+
+    @Override
+    public int getStream() {
+        return mStream;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    @Override
+    public float[] getValues() {
+        return mStreamValues[mStream];
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
@@ -0,0 +1,57 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.IOException;
+
+import edu.osu.pcv.marslogger.util.CsvLineEncoder;
+
+/**
+ * Writes synced gyro and accelerometer samples as lines of gyro_accel.csv.
+ * <p>
+ * Each line holds the timestamp in nanoseconds followed by one value per channel.
+ */
+public class CsvInertialSink implements InertialSink {
+    // column labels of the synced values as they have always appeared in gyro_accel.csv
+    public static final String[] CHANNEL_NAMES = {
+            "ax[rad/s]", "ay[rad/s]", "az[rad/s]", "gx[m/s^2]", "gy[m/s^2]", "gz[m/s^2]"};
+    public static final String HEADER = header(CHANNEL_NAMES);
+
+    private final CsvLineEncoder mDataWriter;
+    private final int mChannelCount;
+
+    public CsvInertialSink(String file) throws IOException {
+        this(file, CHANNEL_NAMES);
+    }
+
+    public CsvInertialSink(String file, String[] channelNames) throws IOException {
+        mDataWriter = new CsvLineEncoder(file);
+        mChannelCount = channelNames.length;
+        mDataWriter.appendAscii(header(channelNames));
+    }
+
+    public static String header(String[] channelNames) {
+        StringBuilder sb = new StringBuilder("Timestamp[nanosec]");
+        for (String name : channelNames) {
+            sb.append(", ").append(name);
+        }
+        return sb.append('\n').toString();
+    }
+
+    @Override
+    public void write(long timestamp, float[] values, int offset) throws IOException {
+        mDataWriter.append(timestamp);
+        for (int index = 0; index < mChannelCount; ++index) {
+            mDataWriter.delimiter().append(values[offset + index]);
+        }
+        mDataWriter.endLine();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mDataWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mDataWriter.close();
+    }
+}
@@ -0,0 +1,51 @@
+package edu.osu.pcv.marslogger.imu;
+
+/**
+ * Interpolates with a cubic Hermite spline through the two samples on either side of the
+ * requested time.
+ * <p>
+ * The tangent at a sample is the slope between its neighbors, as in a Catmull-Rom spline,
+ * but divided by their actual time difference, so that jittery sampling does not bend
+ * the curve.  At the start of a stream the tangent of the first sample is one-sided.
+ * The curve is smooth for smooth motion, at the cost of waiting for one more sample than
+ * linear interpolation.
+ */
+public class CubicHermiteInterpolator implements SampleInterpolator {
+    @Override
+    public int historyCount() {
+        return 1;
+    }
+
+    @Override
+    public int lookaheadCount() {
+        return 2;
+    }
+
+    @Override
+    public void interpolate(SensorRingBuffer samples, int left, long time, float[] dst,
+                            int dstOffset) {
+        int before = left > 0 ? left - 1 : left;
+        int right = left + 1;
+        int after = left + 2;
+        long leftTime = samples.getTimestamp(left);
+        // intervals in nanoseconds as doubles, relative to the left sample
+        double interval = samples.getTimestamp(right) - leftTime;
+        double leftSpan = samples.getTimestamp(right) - samples.getTimestamp(before);
+        double rightSpan = samples.getTimestamp(after) - leftTime;
+        double s = (time - leftTime) / interval;
+        double s2 = s * s;
+        double s3 = s2 * s;
+        // Hermite basis functions, tangents are scaled by the interval
+        double h00 = 2 * s3 - 3 * s2 + 1;
+        double h10 = (s3 - 2 * s2 + s) * interval;
+        double h01 = -2 * s3 + 3 * s2;
+        double h11 = (s3 - s2) * interval;
+        for (int axis = 0; axis < samples.stride(); ++axis) {
+            double p0 = samples.getValue(left, axis);
+            double p1 = samples.getValue(right, axis);
+            double m0 = (p1 - samples.getValue(before, axis)) / leftSpan;
+            double m1 = (samples.getValue(after, axis) - p0) / rightSpan;
+            dst[dstOffset + axis] = (float) (h00 * p0 + h10 * m0 + h01 * p1 + h11 * m1);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes the accelerometer and gyro reports of a sensor direct channel into an
+ * {@link InertialPipeline}.
+ * <p>
+ * The channel writes fixed-size events one after another into a ring, in native byte
+ * order, each stamped with an atomic counter that starts at 1 and skips 0 on wrap-around:
+ * <pre>
+ *   int32   size of the event, 104
+ *   int32   report token returned by SensorDirectChannel.configure()
+ *   int32   sensor type
+ *   uint32  atomic counter
+ *   int64   timestamp in nanoseconds
+ *   float32 values[16]
+ *   int32   reserved[4]
+ * </pre>
+ * poll(int) copies the events written since the last call in bulk and stops at the first
+ * slot whose counter is not newer than the last decoded one.  If the writer has lapped
+ * the reader, decoding carries on from the reader's slot with the events of the
+ * writer's latest lap, and the events skipped over are counted as lost.
+ * <p>
+ * This class is not thread-safe; it is meant to be polled by the sensor thread.
+ */
+public class DirectReportReader {
+    public static final int EVENT_SIZE = 104;
+    static final int TOKEN_OFFSET = 4;
+    static final int TYPE_OFFSET = 8;
+    static final int COUNTER_OFFSET = 12;
+    static final int TIMESTAMP_OFFSET = 16;
+    static final int VALUES_OFFSET = 24;
+
+    // events copied from the ring per read
+    private static final int EVENTS_PER_READ = 64;
+
+    private final DirectReportRing mRing;
+    private final int mAccelToken;
+    private final int mGyroToken;
+    private final InertialPipeline mPipeline;
+
+    private final int mSlotCount;
+    private final byte[] mBuffer;
+    private final ByteBuffer mEvents;
+    private final float[] mValues = new float[3];
+
+    private int mSlot = 0;
+    private int mExpectedCounter = 1;
+    private long mEventCount = 0;
+    private long mLostEventCount = 0;
+
+    public DirectReportReader(DirectReportRing ring, int accelToken, int gyroToken,
+                              InertialPipeline pipeline) {
+        mRing = ring;
+        mAccelToken = accelToken;
+        mGyroToken = gyroToken;
+        mPipeline = pipeline;
+        mSlotCount = ring.length() / EVENT_SIZE;
+        mBuffer = new byte[Math.min(mSlotCount, EVENTS_PER_READ) * EVENT_SIZE];
+        mEvents = ByteBuffer.wrap(mBuffer).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Number of events decoded so far.
+     */
+    public long getEventCount() {
+        return mEventCount;
+    }
+
+    /**
+     * Number of events overwritten by the channel before they were decoded.
+     */
+    public long getLostEventCount() {
+        return mLostEventCount;
+    }
+
+    /**
+     * Feeds up to maxEvents new events to the pipeline, accelerometer and gyro events
+     * that is, events of other report tokens are skipped.  maxEvents should leave room in
+     * the synchronizer buffers, which are synced between calls.
+     *
+     * @return number of events decoded, 0 if the channel has not written any new events
+     */
+    public int poll(int maxEvents) throws IOException {
+        int decoded = 0;
+        // at most one lap, so that a fast writer cannot keep the reader here
+        maxEvents = Math.min(maxEvents, mSlotCount);
+        while (decoded < maxEvents) {
+            int count = Math.min(Math.min(mSlotCount - mSlot, mBuffer.length / EVENT_SIZE),
+                    maxEvents - decoded);
+            mRing.read(mSlot * EVENT_SIZE, mBuffer, 0, count * EVENT_SIZE);
+            int index = 0;
+            for (; index < count; ++index) {
+                if (!decode(index * EVENT_SIZE)) {
+                    break;
+                }
+            }
+            decoded += index;
+            mSlot += index;
+            if (mSlot == mSlotCount) {
+                mSlot = 0;
+            }
+            if (index < count) {
+                break;
+            }
+        }
+        mEventCount += decoded;
+        return decoded;
+    }
+
+    // returns false if the event at offset in the buffer has not been written yet
+    private boolean decode(int offset) {
+        int counter = mEvents.getInt(offset + COUNTER_OFFSET);
+        // compared with wrapping arithmetic, counters are unsigned
+        int lead = counter - mExpectedCounter;
+        if (counter == 0 || lead < 0) {
+            return false;
+        }
+        mLostEventCount += lead;
+        mExpectedCounter = counter + 1;
+        if (mExpectedCounter == 0) {
+            mExpectedCounter = 1;
+        }
+
+        int token = mEvents.getInt(offset + TOKEN_OFFSET);
+        if (token != mAccelToken && token != mGyroToken) {
+            return true;
+        }
+        long timestamp = mEvents.getLong(offset + TIMESTAMP_OFFSET);
+        for (int axis = 0; axis < 3; ++axis) {
+            mValues[axis] = mEvents.getFloat(offset + VALUES_OFFSET + 4 * axis);
+        }
+        mPipeline.capture(mEvents.getInt(offset + TYPE_OFFSET), timestamp, mValues);
+        mPipeline.add(token == mAccelToken ? StreamSynchronizer.STREAM_ACCEL :
+                StreamSynchronizer.STREAM_GYRO, timestamp, mValues);
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.IOException;
+
+/**
+ * Shared memory region that a sensor direct channel writes its reports into.
+ * <p>
+ * On a device this wraps the MemoryFile of a SensorDirectChannel.  Keeping the decoding
+ * behind this interface lets it run against a plain file on a desktop JVM.
+ */
+public interface DirectReportRing {
+    /**
+     * Size of the region in bytes.
+     */
+    int length();
+
+    /**
+     * Copies count bytes starting at offset in the region into dst.
+     */
+    void read(int offset, byte[] dst, int dstOffset, int count) throws IOException;
+}
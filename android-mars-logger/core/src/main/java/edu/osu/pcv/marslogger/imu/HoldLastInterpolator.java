@@ -0,0 +1,24 @@
+package edu.osu.pcv.marslogger.imu;
+
+/**
+ * Takes the values of the last sample at or before the requested time, a zero-order hold.
+ * It never waits for the next sample, so synced samples are produced with the least
+ * delay.
+ */
+public class HoldLastInterpolator implements SampleInterpolator {
+    @Override
+    public int historyCount() {
+        return 0;
+    }
+
+    @Override
+    public int lookaheadCount() {
+        return 0;
+    }
+
+    @Override
+    public void interpolate(SensorRingBuffer samples, int left, long time, float[] dst,
+                            int dstOffset) {
+        samples.copyValues(left, dst, dstOffset);
+    }
+}
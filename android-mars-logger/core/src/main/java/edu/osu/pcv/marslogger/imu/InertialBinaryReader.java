@@ -0,0 +1,131 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Streams the records of a binary inertial log written by {@link BinaryInertialSink}.
+ * <p>
+ * This is plain Java so that it can be used by desktop tools as well as on the device.
+ * <pre>
+ *   InertialBinaryReader reader = new InertialBinaryReader(file);
+ *   while (reader.next()) {
+ *       use(reader.getTimestamp(), reader.getValues());
+ *   }
+ *   reader.close();
+ * </pre>
+ */
+public class InertialBinaryReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileInputStream mStream;
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private final int mVersion;
+    private final String[] mChannelNames;
+    private final int mRecordSize;
+
+    private long mTimestamp;
+    private final float[] mValues;
+    private boolean mEndOfFile;
+
+    public InertialBinaryReader(String file) throws IOException {
+        mStream = new FileInputStream(file);
+        mChannel = mStream.getChannel();
+        mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        mBuffer.flip();
+        try {
+            if (!fill(12) || mBuffer.getInt() != BinaryInertialSink.MAGIC) {
+                throw new IOException(file + " is not a binary inertial log");
+            }
+            mVersion = mBuffer.getShort() & 0xffff;
+            if (mVersion > BinaryInertialSink.VERSION) {
+                throw new IOException("Unsupported binary inertial log version " + mVersion);
+            }
+            int channelCount = mBuffer.getShort() & 0xffff;
+            int headerLength = mBuffer.getInt();
+            if (headerLength < 12 || headerLength > BUFFER_SIZE || !fill(headerLength - 12)) {
+                throw new IOException("Truncated header in " + file);
+            }
+            mChannelNames = new String[channelCount];
+            for (int index = 0; index < channelCount; ++index) {
+                byte[] name = new byte[mBuffer.get() & 0xff];
+                mBuffer.get(name);
+                mChannelNames[index] = new String(name, BinaryInertialSink.CHANNEL_NAME_CHARSET);
+            }
+        } catch (IOException err) {
+            mStream.close();
+            throw err;
+        }
+        mRecordSize = BinaryInertialSink.recordSize(mChannelNames.length);
+        mValues = new float[mChannelNames.length];
+    }
+
+    public int getVersion() {
+        return mVersion;
+    }
+
+    public String[] getChannelNames() {
+        return mChannelNames;
+    }
+
+    /**
+     * Advances to the next record.
+     *
+     * @return false at the end of the log, including when the log ends with a partial
+     * record, e.g., because recording was interrupted
+     */
+    public boolean next() throws IOException {
+        if (!fill(mRecordSize)) {
+            return false;
+        }
+        mTimestamp = mBuffer.getLong();
+        for (int index = 0; index < mValues.length; ++index) {
+            mValues[index] = mBuffer.getFloat();
+        }
+        return true;
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * Values of the current record.  The array is reused by next().
+     */
+    public float[] getValues() {
+        return mValues;
+    }
+
+    /**
+     * Number of bytes left over after the last complete record.  Valid once next()
+     * has returned false.
+     */
+    public int getTrailingByteCount() {
+        return mBuffer.remaining();
+    }
+
+    // makes sure that at least count bytes are buffered, returns false at end of file
+    private boolean fill(int count) throws IOException {
+        if (mBuffer.remaining() >= count) {
+            return true;
+        }
+        mBuffer.compact();
+        while (mBuffer.position() < count && !mEndOfFile) {
+            if (mChannel.read(mBuffer) < 0) {
+                mEndOfFile = true;
+            }
+        }
+        mBuffer.flip();
+        return mBuffer.remaining() >= count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mStream.close();
+    }
+}
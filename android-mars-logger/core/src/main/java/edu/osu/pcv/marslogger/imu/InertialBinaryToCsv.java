@@ -0,0 +1,46 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.IOException;
+
+/**
+ * Converts a binary inertial log to the csv format of gyro_accel.csv, so that existing
+ * tools keep working.  The conversion streams, so logs of any length are fine.
+ * <p>
+ * Usage: java edu.osu.pcv.marslogger.imu.InertialBinaryToCsv gyro_accel.bin gyro_accel.csv
+ */
+public class InertialBinaryToCsv {
+    /**
+     * @return number of records converted
+     */
+    public static long convert(String binaryFile, String csvFile) throws IOException {
+        InertialBinaryReader reader = new InertialBinaryReader(binaryFile);
+        long count = 0;
+        try {
+            CsvInertialSink sink = new CsvInertialSink(csvFile, reader.getChannelNames());
+            try {
+                while (reader.next()) {
+                    sink.write(reader.getTimestamp(), reader.getValues(), 0);
+                    ++count;
+                }
+            } finally {
+                sink.close();
+            }
+            if (reader.getTrailingByteCount() > 0) {
+                System.err.println("Ignored a partial record of " +
+                        reader.getTrailingByteCount() + " bytes at the end of " + binaryFile);
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: InertialBinaryToCsv <input.bin> <output.csv>");
+            System.exit(1);
+        }
+        long count = convert(args[0], args[1]);
+        System.out.println("Converted " + count + " records to " + args[1]);
+    }
+}
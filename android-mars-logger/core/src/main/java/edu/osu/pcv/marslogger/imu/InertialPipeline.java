@@ -0,0 +1,204 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The sync and write path of a recording, from raw sensor samples to an
+ * {@link InertialSink}, free of Android types so that it can be driven by the sensor
+ * thread on the device as well as by {@link InertialReplay} on a desktop JVM.
+ * <p>
+ * Samples are fed to a {@link StreamSynchronizer} and counted in the
+ * {@link InertialStreamStats}.  While recording, synced samples are handed to an
+ * {@link InertialWriter} through a {@link SyncedSampleQueue}, and if raw capture is on,
+ * every event given to capture() through a {@link RawEventQueue} to the same writer.
+ * <p>
+ * add(), capture() and sync*() must be called from one thread, the producer of the
+ * queues.
+ * startRecording() and stopRecording() may be called from another thread.
+ */
+public class InertialPipeline {
+    private static final long QUEUE_FULL_PARK_NANOS = 100000;
+
+    private final StreamSynchronizer mSynchronizer;
+    private final InertialStreamStats mStreamStats;
+    private final int mReferenceStream;
+
+    // the queues are published to the producer thread by the write to mRecording
+    private volatile boolean mRecording = false;
+    private SyncedSampleQueue mSampleQueue = null;
+    private RawEventQueue mRawQueue = null;
+    private InertialWriter mDataWriter = null;
+    private boolean mBlockWhenFull = false;
+
+    public InertialPipeline(StreamSynchronizer synchronizer, InertialStreamStats stats) {
+        mSynchronizer = synchronizer;
+        mStreamStats = stats;
+        mReferenceStream = synchronizer.getReferenceStream();
+    }
+
+    public StreamSynchronizer getSynchronizer() {
+        return mSynchronizer;
+    }
+
+    /**
+     * If on, the producer waits for the writer when the queue is full instead of dropping
+     * the sample.  Meant for replays, which produce samples faster than a file is written;
+     * never for a sensor thread.
+     */
+    public void setBlockWhenFull(boolean blockWhenFull) {
+        mBlockWhenFull = blockWhenFull;
+    }
+
+    /**
+     * Starts writing synced samples to sink on a new writer thread.
+     *
+     * @param queueCapacity number of synced samples that may wait for the writer
+     */
+    public void startRecording(InertialSink sink, int queueCapacity) {
+        startRecording(sink, null, queueCapacity);
+    }
+
+    /**
+     * Starts writing synced samples to sink, and the events given to capture() to
+     * rawSink, on one new writer thread.
+     *
+     * @param rawSink       null to skip raw capture
+     * @param queueCapacity number of synced samples that may wait for the writer, twice
+     *                      as many raw events may
+     */
+    public void startRecording(InertialSink sink, RawEventSink rawSink, int queueCapacity) {
+        mSampleQueue = new SyncedSampleQueue(queueCapacity,
+                mSynchronizer.getChannelNames().length);
+        mRawQueue = rawSink == null ? null : new RawEventQueue(2 * queueCapacity);
+        mDataWriter = new InertialWriter(mSampleQueue, sink, mRawQueue, rawSink);
+        mDataWriter.start();
+        mStreamStats.requestReset();
+        mRecording = true;
+    }
+
+    /**
+     * Stops handing synced samples to the writer, and waits until the writer has written
+     * the queued ones and closed the sink.  Samples should be synced up to the end of the
+     * recording beforehand.
+     */
+    public void stopRecording() {
+        if (!mRecording) {
+            return;
+        }
+        mRecording = false;
+        mDataWriter.stop();
+    }
+
+    public boolean isRecording() {
+        return mRecording;
+    }
+
+    /**
+     * The queue of the last recording, for its high-water mark and overflow count.
+     */
+    public SyncedSampleQueue getSampleQueue() {
+        return mSampleQueue;
+    }
+
+    /**
+     * The raw event queue of the last recording, null if it did not capture raw events.
+     */
+    public RawEventQueue getRawEventQueue() {
+        return mRawQueue;
+    }
+
+    /**
+     * Number of samples the writer of the last recording failed to write.  Valid after
+     * stopRecording().
+     */
+    public long getWriteErrorCount() {
+        return mDataWriter == null ? 0 : mDataWriter.getWriteErrorCount();
+    }
+
+    /**
+     * Records an event as delivered, if recording with raw capture.  Meant for every
+     * event of every registered sensor, including those not fed to add().
+     *
+     * @param sensorType the android.hardware.Sensor type of the event
+     */
+    public void capture(int sensorType, long timestamp, float[] values) {
+        if (mRecording && mRawQueue != null) {
+            if (mBlockWhenFull) {
+                while (mRawQueue.size() >= mRawQueue.capacity()) {
+                    LockSupport.parkNanos(this, QUEUE_FULL_PARK_NANOS);
+                }
+            }
+            // a full queue drops the event
+            mRawQueue.offer(sensorType, timestamp, values);
+        }
+    }
+
+    /**
+     * Appends a sample to a stream of the synchronizer.
+     *
+     * @return true if stream is the reference stream, i.e., a new sample may be synced
+     */
+    public boolean add(int stream, long timestamp, float[] values) {
+        mSynchronizer.add(stream, timestamp, values);
+        if (stream < InertialStreamStats.SENSOR_COUNT) {
+            mStreamStats.onSample(stream, timestamp);
+        }
+        return stream == mReferenceStream;
+    }
+
+    /**
+     * Syncs the oldest reference sample, if possible, and accounts for the result.
+     *
+     * @return one of the InertialSynchronizer.RESULT_* constants
+     */
+    public int syncOnce() {
+        int result = mSynchronizer.sync();
+        // drops are counted in the stream statistics rather than logged one by one
+        if (result == InertialSynchronizer.RESULT_REFERENCE_DROPPED) {
+            onDropped(mReferenceStream);
+        } else if (result == InertialSynchronizer.RESULT_OTHER_DROPPED) {
+            // only the two-stream synchronizer drops samples of the other stream
+            onDropped(mReferenceStream == StreamSynchronizer.STREAM_GYRO ?
+                    StreamSynchronizer.STREAM_ACCEL : StreamSynchronizer.STREAM_GYRO);
+        } else if (result == InertialSynchronizer.RESULT_SYNCED) {
+            mStreamStats.onSynced();
+            if (mRecording) {
+                offer(mSynchronizer.getSyncedTimestamp(), mSynchronizer.getSyncedValues());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Syncs all buffered reference samples that can be synced.
+     *
+     * @return number of synced samples
+     */
+    public int syncAll() {
+        int synced = 0;
+        int result;
+        while ((result = syncOnce()) != InertialSynchronizer.RESULT_NOT_READY) {
+            if (result == InertialSynchronizer.RESULT_SYNCED) {
+                ++synced;
+            }
+        }
+        return synced;
+    }
+
+    private void onDropped(int stream) {
+        if (stream < InertialStreamStats.SENSOR_COUNT) {
+            mStreamStats.onDropped(stream, mSynchronizer.getLastDropCount());
+        }
+    }
+
+    private void offer(long timestamp, float[] values) {
+        if (mBlockWhenFull) {
+            // size() may overestimate on this thread, never underestimate
+            while (mSampleQueue.size() >= mSampleQueue.capacity()) {
+                LockSupport.parkNanos(this, QUEUE_FULL_PARK_NANOS);
+            }
+        }
+        // hand off to the writer thread, a full queue drops the sample
+        mSampleQueue.offer(timestamp, values, 0);
+    }
+}
@@ -0,0 +1,256 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a recorded {@link SensorEventSource} through an {@link InertialPipeline}, the
+ * same sync and write code that runs on the sensor thread, on a desktop JVM.
+ * <p>
+ * By default samples are replayed as fast as the pipeline takes them, which measures its
+ * throughput; in real time they are paced by their timestamps, as a device delivers
+ * them.  The output can be compared byte for byte with a golden file to catch
+ * regressions.
+ * <p>
+ * Usage: java edu.osu.pcv.marslogger.imu.InertialReplay [--realtime]
+ * [--interpolator=linear|cubic|hold] gyro_accel.csv|gyro_accel_raw.bin replayed.csv
+ * [golden.csv]
+ */
+public class InertialReplay {
+    // synced samples that may wait for the writer, as on the device
+    private static final int WRITER_QUEUE_CAPACITY = 4096;
+    private static final int SENSOR_BUFFER_CAPACITY = 256;
+
+    private final SensorEventSource mSource;
+    private final InertialStreamStats mStreamStats = new InertialStreamStats();
+    private final InertialPipeline mPipeline;
+    private boolean mRealTime = false;
+
+    public static class Result {
+        private final long mSampleCount;
+        private final long mSyncedCount;
+        private final long mElapsedNanos;
+
+        Result(long sampleCount, long syncedCount, long elapsedNanos) {
+            mSampleCount = sampleCount;
+            mSyncedCount = syncedCount;
+            mElapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Number of samples read from the source.
+         */
+        public long getSampleCount() {
+            return mSampleCount;
+        }
+
+        public long getSyncedCount() {
+            return mSyncedCount;
+        }
+
+        /**
+         * Wall time from the first sample until the sink was closed.
+         */
+        public long getElapsedNanos() {
+            return mElapsedNanos;
+        }
+
+        /**
+         * Source samples taken per second.
+         */
+        public double getThroughput() {
+            return mElapsedNanos == 0 ? 0 : mSampleCount * 1e9 / mElapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Replayed " + mSampleCount + " samples, synced " + mSyncedCount + " in " +
+                    mElapsedNanos / 1000000 + " ms, " + Math.round(getThroughput()) +
+                    " samples/s";
+        }
+    }
+
+    public InertialReplay(SensorEventSource source, StreamSynchronizer synchronizer) {
+        mSource = source;
+        mPipeline = new InertialPipeline(synchronizer, mStreamStats);
+        // unlike a sensor, the source can wait for the writer
+        mPipeline.setBlockWhenFull(true);
+    }
+
+    /**
+     * Makes the replay take as long as the recording, instead of running at full speed.
+     */
+    public void setRealTime(boolean realTime) {
+        mRealTime = realTime;
+    }
+
+    /**
+     * Creates the synchronizer that the app would use for the streams of source.  The
+     * streams of a synced log share their timestamps, so any interpolator reproduces the
+     * log.  A third stream of extra channels is held, which lets its last sample sync.
+     *
+     * @param referenceStream STREAM_GYRO or STREAM_ACCEL
+     */
+    public static StreamSynchronizer createSynchronizer(SensorEventSource source,
+                                                        int referenceStream) {
+        return createSynchronizer(source, referenceStream, new LinearInterpolator());
+    }
+
+    /**
+     * Creates a synchronizer for the streams of source that estimates gyro or accel
+     * samples with interpolator, e.g., to sync a raw event log again.
+     */
+    public static StreamSynchronizer createSynchronizer(SensorEventSource source,
+                                                        int referenceStream,
+                                                        SampleInterpolator interpolator) {
+        if (source.getStreamCount() == 2) {
+            return new InertialSynchronizer(SENSOR_BUFFER_CAPACITY, referenceStream,
+                    interpolator);
+        }
+        MultiSensorSynchronizer synchronizer =
+                new MultiSensorSynchronizer(SENSOR_BUFFER_CAPACITY);
+        for (int stream = 0; stream < source.getStreamCount(); ++stream) {
+            synchronizer.addStream(source.getChannelNames(stream), new HoldLastInterpolator());
+        }
+        synchronizer.start(referenceStream);
+        return synchronizer;
+    }
+
+    /**
+     * Copies the statistics of the replayed streams into snapshot.
+     */
+    public void getStreamStats(InertialStreamStats.Snapshot snapshot) {
+        mStreamStats.snapshot(snapshot);
+    }
+
+    /**
+     * Replays the whole source into sink, and closes the sink.
+     */
+    public Result run(InertialSink sink) throws IOException {
+        mPipeline.startRecording(sink, WRITER_QUEUE_CAPACITY);
+        long startNanos = System.nanoTime();
+        long sampleCount = 0;
+        long syncedCount = 0;
+        long firstTimestamp = 0;
+        try {
+            while (mSource.next()) {
+                long timestamp = mSource.getTimestamp();
+                if (sampleCount++ == 0) {
+                    firstTimestamp = timestamp;
+                } else if (mRealTime) {
+                    long delay;
+                    while ((delay = timestamp - firstTimestamp -
+                            (System.nanoTime() - startNanos)) > 0) {
+                        LockSupport.parkNanos(delay);
+                    }
+                }
+                if (mPipeline.add(mSource.getStream(), timestamp, mSource.getValues())) {
+                    syncedCount += mPipeline.syncAll();
+                }
+            }
+            syncedCount += mPipeline.syncAll();
+        } finally {
+            mPipeline.stopRecording();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (mPipeline.getWriteErrorCount() > 0) {
+            throw new IOException("Failed to write " + mPipeline.getWriteErrorCount() +
+                    " replayed samples");
+        }
+        return new Result(sampleCount, syncedCount, elapsedNanos);
+    }
+
+    /**
+     * @return offset of the first byte where the files differ, or -1 if they are the same
+     */
+    public static long compareFiles(String file, String goldenFile) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            InputStream golden = new BufferedInputStream(new FileInputStream(goldenFile));
+            try {
+                long offset = 0;
+                while (true) {
+                    int b = in.read();
+                    if (b != golden.read()) {
+                        return offset;
+                    }
+                    if (b < 0) {
+                        return -1;
+                    }
+                    ++offset;
+                }
+            } finally {
+                golden.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Opens a raw event log, or else a gyro_accel.csv.
+     */
+    public static SensorEventSource openSource(String file, int referenceStream)
+            throws IOException {
+        if (RawEventReader.isRawEventLog(file)) {
+            return new RawEventSource(file);
+        }
+        return new CsvEventSource(file, referenceStream);
+    }
+
+    private static SampleInterpolator parseInterpolator(String name) {
+        if (name.equals("cubic")) {
+            return new CubicHermiteInterpolator();
+        } else if (name.equals("hold")) {
+            return new HoldLastInterpolator();
+        } else if (name.equals("linear")) {
+            return new LinearInterpolator();
+        }
+        throw new IllegalArgumentException("Unknown interpolator " + name);
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean realTime = false;
+        SampleInterpolator interpolator = new LinearInterpolator();
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("--"); ++first) {
+            if (args[first].equals("--realtime")) {
+                realTime = true;
+            } else if (args[first].startsWith("--interpolator=")) {
+                interpolator = parseInterpolator(
+                        args[first].substring("--interpolator=".length()));
+            }
+        }
+        if (args.length - first < 2 || args.length - first > 3) {
+            System.err.println("Usage: InertialReplay [--realtime]" +
+                    " [--interpolator=linear|cubic|hold] <input.csv|raw.bin> <output.csv>" +
+                    " [golden.csv]");
+            System.exit(1);
+        }
+        String output = args[first + 1];
+        SensorEventSource source = openSource(args[first], StreamSynchronizer.STREAM_GYRO);
+        Result result;
+        try {
+            StreamSynchronizer synchronizer = createSynchronizer(source,
+                    StreamSynchronizer.STREAM_GYRO, interpolator);
+            InertialReplay replay = new InertialReplay(source, synchronizer);
+            replay.setRealTime(realTime);
+            result = replay.run(new CsvInertialSink(output, synchronizer.getChannelNames()));
+        } finally {
+            source.close();
+        }
+        System.out.println(result);
+        if (args.length - first == 3) {
+            long offset = compareFiles(output, args[first + 2]);
+            if (offset >= 0) {
+                System.out.println(output + " differs from " + args[first + 2] +
+                        " at byte " + offset);
+                System.exit(2);
+            }
+            System.out.println(output + " matches " + args[first + 2]);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.IOException;
+
+/**
+ * Destination of synced inertial samples, e.g., a file in some format.
+ * <p>
+ * A sink is driven by a single thread, typically the {@link InertialWriter} thread.
+ */
+public interface InertialSink {
+    /**
+     * Writes one sample.
+     *
+     * @param values array holding the sample values starting at offset; it is owned by
+     *               the caller and must not be retained
+     */
+    void write(long timestamp, float[] values, int offset) throws IOException;
+
+    void flush() throws IOException;
+
+    void close() throws IOException;
+}
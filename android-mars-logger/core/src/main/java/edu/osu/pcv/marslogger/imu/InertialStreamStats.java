@@ -0,0 +1,241 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Online health statistics of the gyro and accelerometer streams: sample counts, drops,
+ * a histogram of the intervals between samples, the largest gap, and accuracy changes.
+ * <p>
+ * The sensor thread is the only writer.  Updating does not allocate or lock; the
+ * counters live in one AtomicLongArray that is written with lazySet, and a sequence
+ * number, odd while an update is in progress, lets {@link #snapshot(Snapshot)} copy a
+ * consistent view from any thread, e.g., the UI thread, into a reusable Snapshot.
+ */
+public class InertialStreamStats {
+    public static final int SENSOR_GYRO = 0;
+    public static final int SENSOR_ACCEL = 1;
+    public static final int SENSOR_COUNT = 2;
+
+    // bin i counts intervals in [2^i, 2^(i+1)) microseconds, bin 0 also shorter ones,
+    // the last bin also longer ones
+    public static final int HISTOGRAM_BINS = 20;
+
+    // layout of the counters of one sensor
+    private static final int COUNT = 0;
+    private static final int DROP_COUNT = 1;
+    private static final int FIRST_TIMESTAMP = 2;
+    private static final int LAST_TIMESTAMP = 3;
+    private static final int MAX_GAP = 4;
+    private static final int OUT_OF_ORDER_COUNT = 5;
+    private static final int ACCURACY = 6;
+    private static final int ACCURACY_CHANGE_COUNT = 7;
+    private static final int HISTOGRAM = 8;
+    private static final int SENSOR_STRIDE = HISTOGRAM + HISTOGRAM_BINS;
+    // counters shared by the sensors follow theirs
+    private static final int SYNCED_COUNT = SENSOR_COUNT * SENSOR_STRIDE;
+    private static final int LENGTH = SYNCED_COUNT + 1;
+
+    private final AtomicLongArray mCounters = new AtomicLongArray(LENGTH);
+    private final AtomicInteger mSequence = new AtomicInteger();
+    private volatile boolean mResetRequested = false;
+
+    public InertialStreamStats() {
+        clear();
+    }
+
+    /**
+     * Makes the writer start over with its next update, e.g., when a recording starts.
+     * Safe to call from any thread.
+     */
+    public void requestReset() {
+        mResetRequested = true;
+    }
+
+    private void beginUpdate() {
+        // a full barrier, so that the odd sequence is visible before the counters change
+        mSequence.incrementAndGet();
+        if (mResetRequested) {
+            mResetRequested = false;
+            clear();
+        }
+    }
+
+    private void endUpdate() {
+        // ordered after the counter writes
+        mSequence.lazySet(mSequence.get() + 1);
+    }
+
+    private void clear() {
+        for (int i = 0; i < LENGTH; ++i) {
+            mCounters.lazySet(i, 0);
+        }
+        for (int sensor = 0; sensor < SENSOR_COUNT; ++sensor) {
+            mCounters.lazySet(sensor * SENSOR_STRIDE + ACCURACY, -1);
+        }
+    }
+
+    private void increment(int index, long delta) {
+        mCounters.lazySet(index, mCounters.get(index) + delta);
+    }
+
+    public void onSample(int sensor, long timestamp) {
+        beginUpdate();
+        int base = sensor * SENSOR_STRIDE;
+        long count = mCounters.get(base + COUNT);
+        if (count == 0) {
+            mCounters.lazySet(base + FIRST_TIMESTAMP, timestamp);
+        } else {
+            long interval = timestamp - mCounters.get(base + LAST_TIMESTAMP);
+            if (interval <= 0) {
+                increment(base + OUT_OF_ORDER_COUNT, 1);
+            } else {
+                if (interval > mCounters.get(base + MAX_GAP)) {
+                    mCounters.lazySet(base + MAX_GAP, interval);
+                }
+                increment(base + HISTOGRAM + histogramBin(interval), 1);
+            }
+        }
+        mCounters.lazySet(base + LAST_TIMESTAMP, timestamp);
+        mCounters.lazySet(base + COUNT, count + 1);
+        endUpdate();
+    }
+
+    static int histogramBin(long intervalNs) {
+        long micros = intervalNs / 1000;
+        if (micros < 1) {
+            return 0;
+        }
+        return Math.min(63 - Long.numberOfLeadingZeros(micros), HISTOGRAM_BINS - 1);
+    }
+
+    public void onDropped(int sensor, int count) {
+        beginUpdate();
+        increment(sensor * SENSOR_STRIDE + DROP_COUNT, count);
+        endUpdate();
+    }
+
+    public void onAccuracyChanged(int sensor, int accuracy) {
+        beginUpdate();
+        int base = sensor * SENSOR_STRIDE;
+        if (mCounters.get(base + ACCURACY) >= 0) {
+            increment(base + ACCURACY_CHANGE_COUNT, 1);
+        }
+        mCounters.lazySet(base + ACCURACY, accuracy);
+        endUpdate();
+    }
+
+    public void onSynced() {
+        beginUpdate();
+        increment(SYNCED_COUNT, 1);
+        endUpdate();
+    }
+
+    /**
+     * Copies the current statistics into snapshot, retrying while the writer is in the
+     * middle of an update.
+     */
+    public void snapshot(Snapshot snapshot) {
+        while (true) {
+            int sequence = mSequence.get();
+            if ((sequence & 1) == 0) {
+                for (int i = 0; i < LENGTH; ++i) {
+                    snapshot.mCounters[i] = mCounters.get(i);
+                }
+                if (mSequence.get() == sequence) {
+                    return;
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * A consistent copy of the statistics.
+     */
+    public static class Snapshot {
+        private final long[] mCounters = new long[LENGTH];
+
+        private long get(int sensor, int field) {
+            return mCounters[sensor * SENSOR_STRIDE + field];
+        }
+
+        public long getCount(int sensor) {
+            return get(sensor, COUNT);
+        }
+
+        /**
+         * Number of samples discarded by the synchronizer.
+         */
+        public long getDropCount(int sensor) {
+            return get(sensor, DROP_COUNT);
+        }
+
+        /**
+         * Samples per second between the first and the last sample, 0 before two
+         * samples have arrived.
+         */
+        public double getRateHz(int sensor) {
+            long span = get(sensor, LAST_TIMESTAMP) - get(sensor, FIRST_TIMESTAMP);
+            return span > 0 ? (getCount(sensor) - 1) * 1e9 / span : 0;
+        }
+
+        public long getMaxGapNs(int sensor) {
+            return get(sensor, MAX_GAP);
+        }
+
+        /**
+         * Number of samples whose timestamp did not increase.
+         */
+        public long getOutOfOrderCount(int sensor) {
+            return get(sensor, OUT_OF_ORDER_COUNT);
+        }
+
+        /**
+         * Last accuracy reported by onAccuracyChanged, -1 if none was.
+         */
+        public int getAccuracy(int sensor) {
+            return (int) get(sensor, ACCURACY);
+        }
+
+        public long getAccuracyChangeCount(int sensor) {
+            return get(sensor, ACCURACY_CHANGE_COUNT);
+        }
+
+        public long getHistogramCount(int sensor, int bin) {
+            return get(sensor, HISTOGRAM + bin);
+        }
+
+        public long getSyncedCount() {
+            return mCounters[SYNCED_COUNT];
+        }
+
+        public String toJson() {
+            StringBuilder sb = new StringBuilder("{\n");
+            sb.append("  \"synced\": ").append(getSyncedCount()).append(",\n");
+            String[] names = {"gyro", "accel"};
+            for (int sensor = 0; sensor < SENSOR_COUNT; ++sensor) {
+                sb.append("  \"").append(names[sensor]).append("\": {\n");
+                sb.append("    \"count\": ").append(getCount(sensor)).append(",\n");
+                sb.append("    \"dropped\": ").append(getDropCount(sensor)).append(",\n");
+                sb.append("    \"rate_hz\": ")
+                        .append(String.format(Locale.US, "%.3f", getRateHz(sensor)))
+                        .append(",\n");
+                sb.append("    \"max_gap_ns\": ").append(getMaxGapNs(sensor)).append(",\n");
+                sb.append("    \"out_of_order\": ").append(getOutOfOrderCount(sensor))
+                        .append(",\n");
+                sb.append("    \"accuracy\": ").append(getAccuracy(sensor)).append(",\n");
+                sb.append("    \"accuracy_changes\": ").append(getAccuracyChangeCount(sensor))
+                        .append(",\n");
+                // bin i holds intervals of [2^i, 2^(i+1)) us
+                sb.append("    \"interval_histogram_log2_us\": [");
+                for (int bin = 0; bin < HISTOGRAM_BINS; ++bin) {
+                    sb.append(bin == 0 ? "" : ", ").append(getHistogramCount(sensor, bin));
+                }
+                sb.append("]\n  }").append(sensor + 1 < SENSOR_COUNT ? ",\n" : "\n");
+            }
+            return sb.append("}\n").toString();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package edu.osu.pcv.marslogger.imu;
+
+/**
+ * Pairs every sample of a reference sensor, the gyro by default, with a reading of the
+ * other sensor interpolated at the reference timestamp.
+ * <p>
+ * Both streams are held in {@link SensorRingBuffer}s and the synced sample is written into
+ * a preallocated array, so feeding and syncing samples does not allocate.  The other
+ * buffer is trimmed so that its head is the left neighbor of the last synced sample, or
+ * as many samples before it as the {@link SampleInterpolator} needs, which makes
+ * bracketing the next reference sample amortized O(1) however large the backlog grows.
+ * Because the sensor events are delivered to one handler thread in order, no locking is
+ * done here.
+ */
+public class InertialSynchronizer implements StreamSynchronizer {
+    public static final int RESULT_NOT_READY = 0;
+    public static final int RESULT_SYNCED = 1;
+    // a reference sample older than all samples of the other sensor was discarded
+    public static final int RESULT_REFERENCE_DROPPED = 2;
+    // samples of the other sensor older than all reference samples were discarded
+    public static final int RESULT_OTHER_DROPPED = 3;
+
+    // reference sensors, the same as their stream indices
+    public static final int REFERENCE_GYRO = STREAM_GYRO;
+    public static final int REFERENCE_ACCEL = STREAM_ACCEL;
+
+    // number of values in a synced sample, gyro x, y, z followed by accel x, y, z
+    public static final int SYNCED_VALUE_COUNT = 6;
+
+    // if the other sensor has a sample within [t-x, t+x] of the reference
+    // sample at t, then its original values are used instead of interpolation
+    private static final long INTERPOLATION_TIME_RESOLUTION = 500; // nanoseconds
+
+    private final SensorRingBuffer mGyroData;
+    private final SensorRingBuffer mAccelData;
+    private final SensorRingBuffer mReferenceData;
+    private final SensorRingBuffer mOtherData;
+    // where the values of each stream go in the synced sample
+    private final int mReferenceOffset;
+    private final int mOtherOffset;
+    private final SampleInterpolator mInterpolator;
+    private final int mReferenceSensor;
+
+    private long mSyncedTimestamp;
+    private final float[] mSyncedValues = new float[SYNCED_VALUE_COUNT];
+    private int mLastDropCount;
+
+    /**
+     * Syncs accel samples to the gyro samples with linear interpolation.
+     *
+     * @param capacity number of samples buffered per sensor
+     */
+    public InertialSynchronizer(int capacity) {
+        this(capacity, REFERENCE_GYRO, new LinearInterpolator());
+    }
+
+    /**
+     * @param referenceSensor REFERENCE_GYRO or REFERENCE_ACCEL, whose timestamps the
+     *                        synced samples take
+     * @param interpolator    estimates the other sensor at the reference timestamps
+     */
+    public InertialSynchronizer(int capacity, int referenceSensor,
+                                SampleInterpolator interpolator) {
+        mGyroData = new SensorRingBuffer(capacity, 3);
+        mAccelData = new SensorRingBuffer(capacity, 3);
+        if (referenceSensor == REFERENCE_ACCEL) {
+            mReferenceData = mAccelData;
+            mOtherData = mGyroData;
+            mReferenceOffset = 3;
+            mOtherOffset = 0;
+        } else {
+            mReferenceData = mGyroData;
+            mOtherData = mAccelData;
+            mReferenceOffset = 0;
+            mOtherOffset = 3;
+        }
+        mInterpolator = interpolator;
+        mReferenceSensor = referenceSensor == REFERENCE_ACCEL ? REFERENCE_ACCEL : REFERENCE_GYRO;
+    }
+
+    public void addGyro(long timestamp, float[] values) {
+        mGyroData.add(timestamp, values);
+    }
+
+    public void addAccel(long timestamp, float[] values) {
+        mAccelData.add(timestamp, values);
+    }
+
+    /**
+     * @param stream STREAM_GYRO or STREAM_ACCEL
+     */
+    @Override
+    public void add(int stream, long timestamp, float[] values) {
+        if (stream == STREAM_ACCEL) {
+            mAccelData.add(timestamp, values);
+        } else {
+            mGyroData.add(timestamp, values);
+        }
+    }
+
+    @Override
+    public int getReferenceStream() {
+        return mReferenceSensor;
+    }
+
+    /**
+     * Gyro x, y, z followed by accel x, y, z, labeled as in gyro_accel.csv.
+     */
+    @Override
+    public String[] getChannelNames() {
+        return CsvInertialSink.CHANNEL_NAMES.clone();
+    }
+
+    @Override
+    public long getSyncedTimestamp() {
+        return mSyncedTimestamp;
+    }
+
+    /**
+     * Returns the values of the last synced sample.  The array is reused by the next sync().
+     */
+    @Override
+    public float[] getSyncedValues() {
+        return mSyncedValues;
+    }
+
+    /**
+     * Number of samples discarded by the last sync() that returned a *_DROPPED result.
+     */
+    @Override
+    public int getLastDropCount() {
+        return mLastDropCount;
+    }
+
+    // sync inertial data by interpolating the other sensor for the oldest reference data
+    @Override
+    public int sync() {
+        if (mReferenceData.isEmpty() || mOtherData.isEmpty()) {
+            return RESULT_NOT_READY;
+        }
+        long time = mReferenceData.getFirstTimestamp();
+        if (time < mOtherData.getFirstTimestamp()) {
+            mReferenceData.removeFirst();
+            mLastDropCount = 1;
+            return RESULT_REFERENCE_DROPPED;
+        }
+
+        // The other head is at or before the left neighbor of the previous reference
+        // sample, and reference timestamps increase, so the bracket is found by searching
+        // forward from it.
+        int left = mOtherData.floorIndex(time, 0);
+        int right = left + 1;
+        int history = mInterpolator.historyCount();
+
+        if (time - mOtherData.getTimestamp(left) <= INTERPOLATION_TIME_RESOLUTION) {
+            mOtherData.copyValues(left, mSyncedValues, mOtherOffset);
+        } else if (right < mOtherData.size() &&
+                mOtherData.getTimestamp(right) - time <= INTERPOLATION_TIME_RESOLUTION) {
+            mOtherData.copyValues(right, mSyncedValues, mOtherOffset);
+        } else if (left + mInterpolator.lookaheadCount() < mOtherData.size()) {
+            mInterpolator.interpolate(mOtherData, left, time, mSyncedValues, mOtherOffset);
+        } else {
+            // The samples that bracket the reference sample have not all arrived.  Those
+            // before the interpolator's history will not be needed again.
+            int drop = left - history;
+            if (drop <= 0) {
+                return RESULT_NOT_READY;
+            }
+            mOtherData.removeFirst(drop);
+            mLastDropCount = drop;
+            return RESULT_OTHER_DROPPED;
+        }
+
+        mSyncedTimestamp = time;
+        mReferenceData.copyValues(0, mSyncedValues, mReferenceOffset);
+        mReferenceData.removeFirst();
+        // keep the left neighbor and its history for the next reference sample, trimming
+        // older samples with one head advance
+        if (left > history) {
+            mOtherData.removeFirst(left - history);
+        }
+        return RESULT_SYNCED;
+    }
+}
@@ -0,0 +1,124 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drains a {@link SyncedSampleQueue} into an {@link InertialSink} on a dedicated thread, so
+ * that file I/O never runs on the sensor thread.  Optionally, the same thread also drains
+ * a {@link RawEventQueue} into a {@link RawEventSink}.
+ * <p>
+ * The producer does not signal the writer; instead the writer sleeps briefly whenever the
+ * queue is empty, which batches samples into few, larger writes.
+ * <p>
+ * To use:
+ * <ul>
+ * <li>create the queue and the sink, then call start()
+ * <li>offer samples to the queue from the producer thread
+ * <li>call stop(), which writes whatever is still queued and closes the sink
+ * </ul>
+ */
+public class InertialWriter implements Runnable {
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = 2000000;
+
+    private final SyncedSampleQueue mQueue;
+    private final InertialSink mSink;
+    private final RawEventQueue mRawQueue;
+    private final RawEventSink mRawSink;
+
+    private volatile boolean mRunning;
+    private Thread mThread;
+    private long mWriteErrorCount;
+
+    public InertialWriter(SyncedSampleQueue queue, InertialSink sink) {
+        this(queue, sink, null, null);
+    }
+
+    /**
+     * @param rawQueue raw events to write to rawSink, or null
+     */
+    public InertialWriter(SyncedSampleQueue queue, InertialSink sink,
+                          RawEventQueue rawQueue, RawEventSink rawSink) {
+        mQueue = queue;
+        mSink = sink;
+        mRawQueue = rawQueue;
+        mRawSink = rawSink;
+    }
+
+    public void start() {
+        mRunning = true;
+        mThread = new Thread(this, "InertialWriter");
+        mThread.start();
+    }
+
+    /**
+     * Tells the writer thread to finish, and waits until all queued samples are written
+     * and the sink is closed.
+     */
+    public void stop() {
+        mRunning = false;
+        LockSupport.unpark(mThread);
+        try {
+            mThread.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Number of samples and raw events that could not be written.  Valid after stop().
+     */
+    public long getWriteErrorCount() {
+        return mWriteErrorCount;
+    }
+
+    @Override
+    public void run() {
+        while (mRunning) {
+            if (drainBatch() == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        // the producer may have queued a few more samples before noticing the stop
+        while (drainBatch() > 0) {
+            // keep draining
+        }
+        try {
+            mSink.close();
+        } catch (IOException err) {
+            System.err.println("IOException in closing inertial data sink: " + err.getMessage());
+        }
+        if (mRawSink != null) {
+            try {
+                mRawSink.close();
+            } catch (IOException err) {
+                System.err.println("IOException in closing raw event sink: " + err.getMessage());
+            }
+        }
+    }
+
+    private int drainBatch() {
+        int count;
+        try {
+            count = mQueue.drainTo(mSink, BATCH_SIZE);
+        } catch (IOException err) {
+            if (mWriteErrorCount++ == 0) {
+                System.err.println("IOException in writing inertial data: " + err.getMessage());
+            }
+            count = 1;
+        }
+        if (mRawQueue != null) {
+            try {
+                count += mRawQueue.drainTo(mRawSink, BATCH_SIZE);
+            } catch (IOException err) {
+                if (mWriteErrorCount++ == 0) {
+                    System.err.println("IOException in writing raw events: " +
+                            err.getMessage());
+                }
+                ++count;
+            }
+        }
+        return count;
+    }
+}
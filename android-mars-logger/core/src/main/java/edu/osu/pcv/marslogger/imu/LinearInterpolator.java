@@ -0,0 +1,31 @@
+package edu.osu.pcv.marslogger.imu;
+
+/**
+ * Interpolates linearly between the samples on either side of the requested time.
+ */
+public class LinearInterpolator implements SampleInterpolator {
+    @Override
+    public int historyCount() {
+        return 0;
+    }
+
+    @Override
+    public int lookaheadCount() {
+        return 1;
+    }
+
+    @Override
+    public void interpolate(SensorRingBuffer samples, int left, long time, float[] dst,
+                            int dstOffset) {
+        long leftTime = samples.getTimestamp(left);
+        // the intervals are converted before dividing, which integer division would
+        // truncate to 0
+        float ratio = (float) ((double) (time - leftTime) /
+                (samples.getTimestamp(left + 1) - leftTime));
+        for (int axis = 0; axis < samples.stride(); ++axis) {
+            float leftValue = samples.getValue(left, axis);
+            dst[dstOffset + axis] = leftValue +
+                    (samples.getValue(left + 1, axis) - leftValue) * ratio;
+        }
+    }
+}
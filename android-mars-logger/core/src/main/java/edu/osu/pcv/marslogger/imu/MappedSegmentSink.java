@@ -0,0 +1,150 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * Crash-safe inertial storage that writes records into memory-mapped, preallocated
+ * segment files.
+ * <p>
+ * Stores into a MappedByteBuffer land in the kernel page cache immediately, so they
+ * survive the app being killed without any fsync.  What can be lost is the last record
+ * being written, so each segment header carries a committed record count that is
+ * updated every COMMIT_INTERVAL records and on flush().  After a crash,
+ * {@link SegmentRecovery} keeps the records up to the last commit.
+ * <p>
+ * A segment file, named base.NNNN.seg, has the header, all fields little-endian:
+ * <pre>
+ *   char[4]  magic "MSEG"
+ *   uint16   format version
+ *   uint16   channel count n
+ *   int32    header length in bytes, i.e., offset of the first record
+ *   int32    segment index
+ *   int64    committed record count
+ *   n times: uint8 name length, then the ASCII channel name
+ * </pre>
+ * followed by records in the layout of {@link BinaryInertialSink}.  When recording stops,
+ * the last segment is truncated to its committed records.
+ */
+public class MappedSegmentSink implements InertialSink {
+    public static final int MAGIC = 0x4745534d; // "MSEG" read as a little-endian int
+    public static final int VERSION = 1;
+    public static final int COMMIT_COUNT_OFFSET = 16;
+    public static final int COMMIT_INTERVAL = 64; // records, about 0.3 s at 200 Hz
+
+    public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private final String mBasePath;
+    private final String[] mChannelNames;
+    private final int mRecordSize;
+    private final int mSegmentSize;
+
+    private int mSegmentIndex = -1;
+    private RandomAccessFile mSegmentFile;
+    private MappedByteBuffer mSegment;
+    private int mHeaderLength;
+    private long mRecordCount; // records in the current segment
+    private long mCommittedCount;
+
+    public MappedSegmentSink(String basePath, String[] channelNames) throws IOException {
+        this(basePath, channelNames, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedSegmentSink(String basePath, String[] channelNames, int segmentSize)
+            throws IOException {
+        mBasePath = basePath;
+        mChannelNames = channelNames;
+        mRecordSize = BinaryInertialSink.recordSize(channelNames.length);
+        mSegmentSize = segmentSize;
+        openNextSegment();
+    }
+
+    public static String segmentPath(String basePath, int index) {
+        return String.format(Locale.US, "%s.%04d.seg", basePath, index);
+    }
+
+    public static int headerLength(String[] channelNames) {
+        int length = COMMIT_COUNT_OFFSET + 8;
+        for (String name : channelNames) {
+            length += 1 + name.length();
+        }
+        return length;
+    }
+
+    private void openNextSegment() throws IOException {
+        ++mSegmentIndex;
+        mHeaderLength = headerLength(mChannelNames);
+        if (mHeaderLength + mRecordSize > mSegmentSize) {
+            throw new IOException("Segment size " + mSegmentSize + " is too small");
+        }
+        mSegmentFile = new RandomAccessFile(segmentPath(mBasePath, mSegmentIndex), "rw");
+        mSegmentFile.setLength(mSegmentSize);
+        mSegment = mSegmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mSegmentSize);
+        mSegment.order(ByteOrder.LITTLE_ENDIAN);
+
+        mSegment.putInt(MAGIC);
+        mSegment.putShort((short) VERSION);
+        mSegment.putShort((short) mChannelNames.length);
+        mSegment.putInt(mHeaderLength);
+        mSegment.putInt(mSegmentIndex);
+        mSegment.putLong(0);
+        for (String name : mChannelNames) {
+            byte[] bytes = name.getBytes(BinaryInertialSink.CHANNEL_NAME_CHARSET);
+            mSegment.put((byte) bytes.length);
+            mSegment.put(bytes);
+        }
+        mRecordCount = 0;
+        mCommittedCount = 0;
+    }
+
+    // truncates the current segment to its committed records and releases it
+    private void closeSegment() throws IOException {
+        commit();
+        mSegment = null;
+        try {
+            mSegmentFile.setLength(mHeaderLength + mCommittedCount * mRecordSize);
+        } finally {
+            mSegmentFile.close();
+        }
+    }
+
+    private void commit() {
+        if (mCommittedCount != mRecordCount) {
+            mSegment.putLong(COMMIT_COUNT_OFFSET, mRecordCount);
+            mCommittedCount = mRecordCount;
+        }
+    }
+
+    @Override
+    public void write(long timestamp, float[] values, int offset) throws IOException {
+        if (mSegment.remaining() < mRecordSize) {
+            closeSegment();
+            openNextSegment();
+        }
+        mSegment.putLong(timestamp);
+        for (int index = 0; index < mChannelNames.length; ++index) {
+            mSegment.putFloat(values[offset + index]);
+        }
+        if (++mRecordCount - mCommittedCount >= COMMIT_INTERVAL) {
+            commit();
+        }
+    }
+
+    /**
+     * Commits the records written so far.  This makes them recoverable after the app is
+     * killed; it does not force them to storage.
+     */
+    @Override
+    public void flush() {
+        commit();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+}
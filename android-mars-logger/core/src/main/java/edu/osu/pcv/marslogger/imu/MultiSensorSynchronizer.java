@@ -0,0 +1,292 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aligns any number of sensor streams to the timestamps of a reference stream.
+ * <p>
+ * Each stream has its own {@link SensorRingBuffer} and {@link SampleInterpolator}.  A
+ * reference sample at time t is synced once every other stream has received the samples
+ * its interpolator needs around t.  The streams are kept in a min-heap keyed by the time
+ * up to which they can be interpolated, their watermark, so checking whether the oldest
+ * reference sample is ready is a peek at the heap top, and a new sample costs one
+ * O(log k) sift.  Only writing the synced values visits every stream.
+ * <p>
+ * A stream that stalls, e.g., a barometer that only reports changes, would hold back the
+ * reference stream until its buffer overflows.  So once half the reference buffer is
+ * waiting, samples are synced anyway, with the streams that are not ready holding their
+ * last value, or NaN if they have none.
+ * <p>
+ * The synced values of the streams are laid out one after another in the order the
+ * streams were added, and named by getChannelNames(), which makes a schema for the
+ * {@link InertialSink}s.  Add the gyro and accelerometer streams first, so that they
+ * get the STREAM_GYRO and STREAM_ACCEL indices.
+ * <p>
+ * No locking is done, so the streams must be added, fed and synced by one thread, the
+ * handler thread that receives the sensor events.
+ */
+public class MultiSensorSynchronizer implements StreamSynchronizer {
+    // if a stream has a sample within [t-x, t+x] of the reference sample at t,
+    // then its original values are used instead of interpolation
+    private static final long INTERPOLATION_TIME_RESOLUTION = 500; // nanoseconds
+
+    private final int mCapacity;
+    private final List<SensorRingBuffer> mStreamList = new ArrayList<>();
+    private final List<SampleInterpolator> mInterpolatorList = new ArrayList<>();
+    private final List<String> mChannelNameList = new ArrayList<>();
+
+    // set up by start()
+    private SensorRingBuffer[] mStreams;
+    private SampleInterpolator[] mInterpolators;
+    private int[] mValueOffsets;
+    private int[] mLeftIndices;
+    private int mReference = -1;
+    private float[] mSyncedValues;
+    private float[] mPadded;
+    // min-heap of the non-reference streams by watermark
+    private int[] mHeap;
+    private int[] mHeapPosition;
+    private long[] mWatermarks;
+
+    private long mSyncedTimestamp;
+
+    /**
+     * @param capacity number of samples buffered per stream
+     */
+    public MultiSensorSynchronizer(int capacity) {
+        mCapacity = capacity;
+    }
+
+    /**
+     * Adds a stream, before start() is called.
+     *
+     * @param channelNames names of the values of each sample, their number is the stride
+     * @return index of the stream for add()
+     */
+    public int addStream(String[] channelNames, SampleInterpolator interpolator) {
+        if (mStreams != null) {
+            throw new IllegalStateException("streams must be added before start()");
+        }
+        mStreamList.add(new SensorRingBuffer(mCapacity, channelNames.length));
+        mInterpolatorList.add(interpolator);
+        mChannelNameList.addAll(Arrays.asList(channelNames));
+        return mStreamList.size() - 1;
+    }
+
+    /**
+     * Fixes the set of streams.
+     *
+     * @param reference index of the stream whose timestamps the synced samples take
+     */
+    public void start(int reference) {
+        int count = mStreamList.size();
+        mStreams = mStreamList.toArray(new SensorRingBuffer[count]);
+        mInterpolators = mInterpolatorList.toArray(new SampleInterpolator[count]);
+        mValueOffsets = new int[count];
+        mLeftIndices = new int[count];
+        int offset = 0;
+        int maxStride = 0;
+        for (int i = 0; i < count; ++i) {
+            mValueOffsets[i] = offset;
+            offset += mStreams[i].stride();
+            maxStride = Math.max(maxStride, mStreams[i].stride());
+        }
+        mReference = reference;
+        mSyncedValues = new float[offset];
+        mPadded = new float[maxStride];
+
+        mHeap = new int[count - 1];
+        mHeapPosition = new int[count];
+        mWatermarks = new long[count];
+        int size = 0;
+        for (int i = 0; i < count; ++i) {
+            mWatermarks[i] = Long.MIN_VALUE;
+            if (i != reference) {
+                mHeapPosition[i] = size;
+                mHeap[size++] = i;
+            }
+        }
+    }
+
+    @Override
+    public int getReferenceStream() {
+        return mReference;
+    }
+
+    @Override
+    public String[] getChannelNames() {
+        return mChannelNameList.toArray(new String[mChannelNameList.size()]);
+    }
+
+    /**
+     * Number of values in a synced sample.
+     */
+    public int getSyncedValueCount() {
+        return mSyncedValues.length;
+    }
+
+    @Override
+    public long getSyncedTimestamp() {
+        return mSyncedTimestamp;
+    }
+
+    /**
+     * Returns the values of the last synced sample.  The array is reused by the next sync().
+     */
+    @Override
+    public float[] getSyncedValues() {
+        return mSyncedValues;
+    }
+
+    /**
+     * Always 1, only reference samples are dropped.
+     */
+    @Override
+    public int getLastDropCount() {
+        return 1;
+    }
+
+    /**
+     * Number of samples of the stream lost because its buffer was full.
+     */
+    public long getOverwriteCount(int stream) {
+        return mStreams[stream].getOverwriteCount();
+    }
+
+    /**
+     * Appends a sample to a stream.  values may have fewer entries than the stream's
+     * stride, e.g., from an older device, the missing ones are written as NaN.
+     */
+    @Override
+    public void add(int stream, long timestamp, float[] values) {
+        SensorRingBuffer buffer = mStreams[stream];
+        if (values.length < buffer.stride()) {
+            Arrays.fill(mPadded, Float.NaN);
+            System.arraycopy(values, 0, mPadded, 0, values.length);
+            values = mPadded;
+        }
+        buffer.add(timestamp, values);
+        if (stream != mReference) {
+            mWatermarks[stream] = watermark(stream);
+            // watermarks only grow, unless the stream went back in time
+            siftDown(mHeapPosition[stream]);
+            siftUp(mHeapPosition[stream]);
+        }
+    }
+
+    // A reference sample at time t can be synced for the stream if t < watermark: the
+    // stream has lookaheadCount() samples after the last one at or before t.
+    private long watermark(int stream) {
+        SensorRingBuffer buffer = mStreams[stream];
+        int lookahead = mInterpolators[stream].lookaheadCount();
+        if (buffer.isEmpty() || buffer.size() < lookahead) {
+            return Long.MIN_VALUE;
+        }
+        return lookahead == 0 ? Long.MAX_VALUE : buffer.getTimestamp(buffer.size() - lookahead);
+    }
+
+    private boolean less(int a, int b) {
+        return mWatermarks[mHeap[a]] < mWatermarks[mHeap[b]];
+    }
+
+    private void swap(int a, int b) {
+        int stream = mHeap[a];
+        mHeap[a] = mHeap[b];
+        mHeap[b] = stream;
+        mHeapPosition[mHeap[a]] = a;
+        mHeapPosition[mHeap[b]] = b;
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= mHeap.length) {
+                return;
+            }
+            if (child + 1 < mHeap.length && less(child + 1, child)) {
+                ++child;
+            }
+            if (!less(child, index)) {
+                return;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!less(index, parent)) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    /**
+     * Syncs the oldest reference sample.
+     *
+     * @return InertialSynchronizer.RESULT_SYNCED, RESULT_NOT_READY, or
+     * RESULT_REFERENCE_DROPPED if some stream starts after it
+     */
+    @Override
+    public int sync() {
+        SensorRingBuffer reference = mStreams[mReference];
+        if (reference.isEmpty()) {
+            return InertialSynchronizer.RESULT_NOT_READY;
+        }
+        long time = reference.getFirstTimestamp();
+        boolean ready = mHeap.length == 0 || mWatermarks[mHeap[0]] > time;
+        if (!ready && reference.size() < reference.capacity() / 2) {
+            return InertialSynchronizer.RESULT_NOT_READY;
+        }
+
+        for (int stream = 0; stream < mStreams.length; ++stream) {
+            if (stream == mReference) {
+                reference.copyValues(0, mSyncedValues, mValueOffsets[stream]);
+                continue;
+            }
+            SensorRingBuffer buffer = mStreams[stream];
+            SampleInterpolator interpolator = mInterpolators[stream];
+            int offset = mValueOffsets[stream];
+            int left = buffer.floorIndex(time, 0);
+            mLeftIndices[stream] = left;
+            int right = left + 1;
+            if (left < 0) {
+                if (ready) {
+                    // the stream starts after this reference sample
+                    reference.removeFirst();
+                    return InertialSynchronizer.RESULT_REFERENCE_DROPPED;
+                }
+                Arrays.fill(mSyncedValues, offset, offset + buffer.stride(), Float.NaN);
+            } else if (time - buffer.getTimestamp(left) <= INTERPOLATION_TIME_RESOLUTION) {
+                buffer.copyValues(left, mSyncedValues, offset);
+            } else if (right < buffer.size() &&
+                    buffer.getTimestamp(right) - time <= INTERPOLATION_TIME_RESOLUTION) {
+                buffer.copyValues(right, mSyncedValues, offset);
+            } else if (left + interpolator.lookaheadCount() < buffer.size()) {
+                interpolator.interpolate(buffer, left, time, mSyncedValues, offset);
+            } else {
+                // a stalled stream holds its last value
+                buffer.copyValues(left, mSyncedValues, offset);
+            }
+        }
+
+        mSyncedTimestamp = time;
+        reference.removeFirst();
+        // keep the left neighbors and their history for the next reference sample
+        for (int stream = 0; stream < mStreams.length; ++stream) {
+            if (stream != mReference) {
+                int drop = mLeftIndices[stream] - mInterpolators[stream].historyCount();
+                if (drop > 0) {
+                    mStreams[stream].removeFirst(drop);
+                }
+            }
+        }
+        return InertialSynchronizer.RESULT_SYNCED;
+    }
+}
@@ -0,0 +1,131 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free single-producer/single-consumer queue of raw sensor events, the
+ * counterpart of {@link SyncedSampleQueue} for events of any sensor type and value count.
+ * <p>
+ * Every slot has room for MAX_VALUE_COUNT values, the most a SensorEvent carries, and
+ * records how many were given.  As with SyncedSampleQueue, a full queue rejects the
+ * event and counts it as an overflow, and the consumer releases slots once per batch.
+ * <p>
+ * Exactly one thread may call offer() and exactly one other thread may call drainTo().
+ */
+public class RawEventQueue {
+    public static final int MAX_VALUE_COUNT = 16;
+
+    private final long[] mTimestamps;
+    private final int[] mSensorTypes;
+    private final int[] mValueCounts;
+    private final float[] mValues;
+    private final int mMask;
+
+    // next sequence to write, advanced by the producer
+    private final AtomicLong mTail = new AtomicLong();
+    // next sequence to read, advanced by the consumer
+    private final AtomicLong mHead = new AtomicLong();
+
+    // ----- accessed exclusively by the producer, published through volatile writes -----
+    private long mCachedHead;
+    private volatile int mHighWaterMark;
+    private volatile long mOverflowCount;
+
+    /**
+     * @param capacity minimum number of events to hold, rounded up to a power of two
+     */
+    public RawEventQueue(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mTimestamps = new long[slots];
+        mSensorTypes = new int[slots];
+        mValueCounts = new int[slots];
+        mValues = new float[slots * MAX_VALUE_COUNT];
+        mMask = slots - 1;
+    }
+
+    public int capacity() {
+        return mTimestamps.length;
+    }
+
+    /**
+     * Copies an event into the queue, values beyond MAX_VALUE_COUNT are cut off.  (Call
+     * from the producer thread.)
+     *
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean offer(int sensorType, long timestamp, float[] values) {
+        long tail = mTail.get();
+        if (tail - mCachedHead >= mTimestamps.length) {
+            mCachedHead = mHead.get();
+            if (tail - mCachedHead >= mTimestamps.length) {
+                mOverflowCount = mOverflowCount + 1;
+                return false;
+            }
+        }
+        int slot = (int) tail & mMask;
+        int count = Math.min(values.length, MAX_VALUE_COUNT);
+        mTimestamps[slot] = timestamp;
+        mSensorTypes[slot] = sensorType;
+        mValueCounts[slot] = count;
+        System.arraycopy(values, 0, mValues, slot * MAX_VALUE_COUNT, count);
+        mTail.lazySet(tail + 1);
+
+        if (tail + 1 - mCachedHead > mHighWaterMark) {
+            // the cached head may be stale, refresh it before raising the mark
+            mCachedHead = mHead.get();
+            int size = (int) (tail + 1 - mCachedHead);
+            if (size > mHighWaterMark) {
+                mHighWaterMark = size;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands up to maxCount queued events to the sink, oldest first, and then releases
+     * their slots to the producer in one step.  (Call from the consumer thread.)
+     * <p>
+     * If the sink throws, the events before the failing one and the failing one itself
+     * are consumed, so that a broken sink cannot wedge the queue.
+     *
+     * @return number of events handed to the sink
+     */
+    public int drainTo(RawEventSink sink, int maxCount) throws IOException {
+        long head = mHead.get();
+        int count = (int) Math.min(mTail.get() - head, maxCount);
+        int consumed = 0;
+        try {
+            while (consumed < count) {
+                int slot = (int) (head + consumed) & mMask;
+                ++consumed;
+                sink.write(mSensorTypes[slot], mTimestamps[slot], mValues,
+                        slot * MAX_VALUE_COUNT, mValueCounts[slot]);
+            }
+        } finally {
+            mHead.lazySet(head + consumed);
+        }
+        return count;
+    }
+
+    /**
+     * Number of events waiting to be drained.  Exact only on the consumer thread.
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    /**
+     * Largest number of events observed in the queue by the producer.
+     */
+    public int getHighWaterMark() {
+        return mHighWaterMark;
+    }
+
+    /**
+     * Number of events rejected because the queue was full.
+     */
+    public long getOverflowCount() {
+        return mOverflowCount;
+    }
+}
@@ -0,0 +1,159 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Streams the events of a raw event log written by {@link BinaryRawEventSink}.
+ * <pre>
+ *   RawEventReader reader = new RawEventReader(file);
+ *   while (reader.next()) {
+ *       use(reader.getSensorType(), reader.getTimestamp(), reader.getValues(),
+ *               reader.getValueCount());
+ *   }
+ *   reader.close();
+ * </pre>
+ */
+public class RawEventReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileInputStream mStream;
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private final int mVersion;
+
+    private int mSensorType;
+    private long mTimestamp;
+    private int mValueCount;
+    private final float[] mValues = new float[RawEventQueue.MAX_VALUE_COUNT];
+    private boolean mEndOfFile;
+
+    public RawEventReader(String file) throws IOException {
+        mStream = new FileInputStream(file);
+        mChannel = mStream.getChannel();
+        mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        mBuffer.flip();
+        try {
+            if (!fill(BinaryRawEventSink.HEADER_LENGTH) ||
+                    mBuffer.getInt() != BinaryRawEventSink.MAGIC) {
+                throw new IOException(file + " is not a raw event log");
+            }
+            mVersion = mBuffer.getShort() & 0xffff;
+            if (mVersion > BinaryRawEventSink.VERSION) {
+                throw new IOException("Unsupported raw event log version " + mVersion);
+            }
+            int headerLength = mBuffer.getShort() & 0xffff;
+            if (headerLength < BinaryRawEventSink.HEADER_LENGTH ||
+                    !fill(headerLength - BinaryRawEventSink.HEADER_LENGTH)) {
+                throw new IOException("Truncated header in " + file);
+            }
+            // skip fields of newer minor versions
+            mBuffer.position(mBuffer.position() + headerLength -
+                    BinaryRawEventSink.HEADER_LENGTH);
+        } catch (IOException err) {
+            mStream.close();
+            throw err;
+        }
+    }
+
+    /**
+     * Returns true if file starts like a raw event log.
+     */
+    public static boolean isRawEventLog(String file) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            byte[] magic = new byte[4];
+            return stream.read(magic) == 4 &&
+                    ByteBuffer.wrap(magic).order(ByteOrder.LITTLE_ENDIAN).getInt() ==
+                            BinaryRawEventSink.MAGIC;
+        } finally {
+            stream.close();
+        }
+    }
+
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Advances to the next event.
+     *
+     * @return false at the end of the log, including when the log ends with a partial
+     * record, e.g., because recording was interrupted
+     */
+    public boolean next() throws IOException {
+        if (!fill(BinaryRawEventSink.recordSize(0))) {
+            return false;
+        }
+        int start = mBuffer.position();
+        int sensorType = mBuffer.getShort() & 0xffff;
+        int valueCount = mBuffer.getShort() & 0xffff;
+        if (valueCount > mValues.length) {
+            throw new IOException("Corrupt raw event with " + valueCount + " values");
+        }
+        mBuffer.position(start);
+        if (!fill(BinaryRawEventSink.recordSize(valueCount))) {
+            return false;
+        }
+        mBuffer.position(mBuffer.position() + 4);
+        mSensorType = sensorType;
+        mValueCount = valueCount;
+        mTimestamp = mBuffer.getLong();
+        for (int index = 0; index < valueCount; ++index) {
+            mValues[index] = mBuffer.getFloat();
+        }
+        return true;
+    }
+
+    public int getSensorType() {
+        return mSensorType;
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * Values of the current event, the first getValueCount() of them are valid.  The
+     * array is reused by next().
+     */
+    public float[] getValues() {
+        return mValues;
+    }
+
+    public int getValueCount() {
+        return mValueCount;
+    }
+
+    /**
+     * Number of bytes left over after the last complete event.  Valid once next() has
+     * returned false.
+     */
+    public int getTrailingByteCount() {
+        return mBuffer.remaining();
+    }
+
+    // makes sure that at least count bytes are buffered, returns false at end of file
+    private boolean fill(int count) throws IOException {
+        if (mBuffer.remaining() >= count) {
+            return true;
+        }
+        mBuffer.compact();
+        while (mBuffer.position() < count && !mEndOfFile) {
+            if (mChannel.read(mBuffer) < 0) {
+                mEndOfFile = true;
+            }
+        }
+        mBuffer.flip();
+        return mBuffer.remaining() >= count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mStream.close();
+    }
+}
@@ -0,0 +1,24 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.IOException;
+
+/**
+ * Destination of raw sensor events, as delivered before any syncing.
+ * <p>
+ * A sink is driven by a single thread, typically the {@link InertialWriter} thread.
+ */
+public interface RawEventSink {
+    /**
+     * Writes one event.
+     *
+     * @param sensorType the android.hardware.Sensor type of the event
+     * @param values     array holding count values starting at offset; it is owned by
+     *                   the caller and must not be retained
+     */
+    void write(int sensorType, long timestamp, float[] values, int offset, int count)
+            throws IOException;
+
+    void flush() throws IOException;
+
+    void close() throws IOException;
+}
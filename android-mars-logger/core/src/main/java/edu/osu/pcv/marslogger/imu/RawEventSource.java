@@ -0,0 +1,69 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Replays the gyro and accelerometer events of a raw event log, see
+ * {@link BinaryRawEventSink}, in the order they were delivered on the device.  Events of
+ * other sensors are skipped.
+ */
+public class RawEventSource implements SensorEventSource {
+    // android.hardware.Sensor types
+    public static final int TYPE_ACCELEROMETER = 1;
+    public static final int TYPE_GYROSCOPE = 4;
+
+    private final RawEventReader mReader;
+    private int mStream;
+
+    public RawEventSource(String file) throws IOException {
+        mReader = new RawEventReader(file);
+    }
+
+    @Override
+    public int getStreamCount() {
+        return 2;
+    }
+
+    @Override
+    public String[] getChannelNames(int stream) {
+        return stream == StreamSynchronizer.STREAM_GYRO ?
+                Arrays.copyOfRange(CsvInertialSink.CHANNEL_NAMES, 0, 3) :
+                Arrays.copyOfRange(CsvInertialSink.CHANNEL_NAMES, 3, 6);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (mReader.next()) {
+            int type = mReader.getSensorType();
+            if (type == TYPE_GYROSCOPE) {
+                mStream = StreamSynchronizer.STREAM_GYRO;
+                return true;
+            } else if (type == TYPE_ACCELEROMETER) {
+                mStream = StreamSynchronizer.STREAM_ACCEL;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getStream() {
+        return mStream;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return mReader.getTimestamp();
+    }
+
+    @Override
+    public float[] getValues() {
+        return mReader.getValues();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
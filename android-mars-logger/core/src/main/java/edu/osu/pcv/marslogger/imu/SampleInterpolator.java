@@ -0,0 +1,30 @@
+package edu.osu.pcv.marslogger.imu;
+
+/**
+ * Estimates the values of a sensor stream between its samples, for
+ * {@link InertialSynchronizer}.
+ * <p>
+ * Implementations must not allocate, as they run once per synced sample.
+ */
+public interface SampleInterpolator {
+    /**
+     * Number of samples before the left neighbor that the synchronizer keeps buffered
+     * for interpolate().  Fewer may be available at the start of a stream.
+     */
+    int historyCount();
+
+    /**
+     * Number of samples after the left neighbor that must have arrived before
+     * interpolate() is called.
+     */
+    int lookaheadCount();
+
+    /**
+     * Writes the values of samples at time into dst.
+     *
+     * @param left index of the last sample at or before time; samples
+     *             [left - historyCount(), left + lookaheadCount()] are valid, except
+     *             for those before index 0
+     */
+    void interpolate(SensorRingBuffer samples, int left, long time, float[] dst, int dstOffset);
+}
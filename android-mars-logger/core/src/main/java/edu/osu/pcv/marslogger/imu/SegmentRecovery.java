@@ -0,0 +1,170 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Recovers the segments written by {@link MappedSegmentSink}, e.g., after the app was
+ * killed while recording.
+ * <p>
+ * Every segment is truncated to its committed records, which removes a torn tail and the
+ * unused preallocated space.  Timestamps are checked to be nondecreasing across all
+ * segments; records that go back in time are reported and left out of the export.
+ * Optionally the records are exported to a binary log that {@link InertialBinaryToCsv}
+ * understands.
+ * <p>
+ * Usage: java edu.osu.pcv.marslogger.imu.SegmentRecovery gyro_accel [gyro_accel.bin]
+ */
+public class SegmentRecovery {
+    /**
+     * Outcome of a recovery.
+     */
+    public static class Report {
+        public int segmentCount;
+        public long recoveredRecords;
+        public long discardedBytes;
+        public long nonMonotonicRecords;
+        public long firstTimestamp = Long.MIN_VALUE;
+        public long lastTimestamp = Long.MIN_VALUE;
+
+        @Override
+        public String toString() {
+            return "Recovered " + recoveredRecords + " records from " + segmentCount +
+                    " segments, discarded " + discardedBytes + " bytes after the last commits, " +
+                    nonMonotonicRecords + " records out of time order";
+        }
+    }
+
+    /**
+     * @param basePath   path the segments were written with, without .NNNN.seg
+     * @param exportPath binary log to write the recovered records to, or null
+     */
+    public static Report recover(String basePath, String exportPath) throws IOException {
+        Report report = new Report();
+        String[] channelNames = null;
+        BinaryInertialSink export = null;
+        float[] values = null;
+        try {
+            for (int index = 0; ; ++index) {
+                File segment = new File(MappedSegmentSink.segmentPath(basePath, index));
+                if (!segment.exists()) {
+                    break;
+                }
+                RandomAccessFile file = new RandomAccessFile(segment, "rw");
+                try {
+                    FileChannel channel = file.getChannel();
+                    ByteBuffer header = readFully(channel, 0, MappedSegmentSink.COMMIT_COUNT_OFFSET + 8);
+                    if (header.getInt() != MappedSegmentSink.MAGIC) {
+                        throw new IOException(segment + " is not an inertial data segment");
+                    }
+                    int version = header.getShort() & 0xffff;
+                    if (version > MappedSegmentSink.VERSION) {
+                        throw new IOException("Unsupported segment version " + version);
+                    }
+                    int channelCount = header.getShort() & 0xffff;
+                    int headerLength = header.getInt();
+                    header.getInt(); // segment index
+                    if (headerLength < MappedSegmentSink.COMMIT_COUNT_OFFSET + 8 ||
+                            headerLength > file.length()) {
+                        throw new IOException("Corrupt header length in " + segment);
+                    }
+                    long committed = header.getLong();
+
+                    String[] names = readChannelNames(channel, channelCount, headerLength);
+                    if (channelNames == null) {
+                        channelNames = names;
+                        values = new float[channelCount];
+                        if (exportPath != null) {
+                            export = new BinaryInertialSink(exportPath, channelNames);
+                        }
+                    } else if (!Arrays.equals(channelNames, names)) {
+                        throw new IOException("Channels of " + segment + " differ from earlier segments");
+                    }
+
+                    int recordSize = BinaryInertialSink.recordSize(channelCount);
+                    long available = (file.length() - headerLength) / recordSize;
+                    if (committed > available || committed < 0) {
+                        System.err.println("Commit count " + committed + " of " + segment +
+                                " exceeds its size, keeping " + available + " records");
+                        committed = Math.max(0, available);
+                    }
+
+                    ByteBuffer records = readFully(channel, headerLength, (int) (committed * recordSize));
+                    for (long record = 0; record < committed; ++record) {
+                        long timestamp = records.getLong();
+                        for (int channelIndex = 0; channelIndex < channelCount; ++channelIndex) {
+                            values[channelIndex] = records.getFloat();
+                        }
+                        if (timestamp < report.lastTimestamp) {
+                            ++report.nonMonotonicRecords;
+                            continue;
+                        }
+                        if (report.firstTimestamp == Long.MIN_VALUE) {
+                            report.firstTimestamp = timestamp;
+                        }
+                        report.lastTimestamp = timestamp;
+                        ++report.recoveredRecords;
+                        if (export != null) {
+                            export.write(timestamp, values, 0);
+                        }
+                    }
+
+                    long validLength = headerLength + committed * recordSize;
+                    report.discardedBytes += file.length() - validLength;
+                    file.setLength(validLength);
+                    ++report.segmentCount;
+                } finally {
+                    file.close();
+                }
+            }
+        } finally {
+            if (export != null) {
+                export.close();
+            }
+        }
+        return report;
+    }
+
+    private static String[] readChannelNames(FileChannel channel, int channelCount,
+                                             int headerLength) throws IOException {
+        int namesOffset = MappedSegmentSink.COMMIT_COUNT_OFFSET + 8;
+        ByteBuffer buffer = readFully(channel, namesOffset, headerLength - namesOffset);
+        String[] names = new String[channelCount];
+        for (int index = 0; index < channelCount; ++index) {
+            byte[] name = new byte[buffer.get() & 0xff];
+            buffer.get(name);
+            names[index] = new String(name, BinaryInertialSink.CHANNEL_NAME_CHARSET);
+        }
+        return names;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment at " + position);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: SegmentRecovery <segment base path> [output.bin]");
+            System.exit(1);
+        }
+        Report report = recover(args[0], args.length == 2 ? args[1] : null);
+        System.out.println(report);
+        if (report.recoveredRecords > 0) {
+            System.out.println("Timestamps span [" + report.firstTimestamp + ", " +
+                    report.lastTimestamp + "] ns");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A recorded sequence of sensor samples, in the order they were delivered, for
+ * {@link InertialReplay}.
+ * <pre>
+ *   while (source.next()) {
+ *       use(source.getStream(), source.getTimestamp(), source.getValues());
+ *   }
+ *   source.close();
+ * </pre>
+ */
+public interface SensorEventSource extends Closeable {
+    /**
+     * Number of streams, numbered from StreamSynchronizer.STREAM_GYRO.
+     */
+    int getStreamCount();
+
+    /**
+     * Names of the values of the samples of a stream.
+     */
+    String[] getChannelNames(int stream);
+
+    /**
+     * Advances to the next sample.
+     *
+     * @return false at the end of the recording
+     */
+    boolean next() throws IOException;
+
+    int getStream();
+
+    long getTimestamp();
+
+    /**
+     * Returns the values of the current sample.  The array is reused by next().
+     */
+    float[] getValues();
+}
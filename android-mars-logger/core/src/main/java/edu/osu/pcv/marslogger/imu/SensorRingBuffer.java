@@ -0,0 +1,156 @@
+package edu.osu.pcv.marslogger.imu;
+
+/**
+ * Fixed-capacity FIFO of timestamped sensor samples backed by parallel primitive arrays.
+ * <p>
+ * Values are copied out of the caller's array on arrival, so the buffer never keeps a
+ * reference to a SensorEvent, and adding or removing samples does not allocate.  When the
+ * buffer is full the oldest sample is overwritten.
+ * <p>
+ * This class is not thread-safe; it is meant to be owned by the sensor thread.
+ */
+public class SensorRingBuffer {
+    private final long[] mTimestamps;
+    private final float[] mValues;
+    private final int mStride;
+    private final int mMask;
+
+    private int mHead; // slot of the oldest sample
+    private int mSize;
+    private long mOverwriteCount;
+
+    /**
+     * @param capacity minimum number of samples to hold, rounded up to a power of two
+     * @param stride   number of values per sample, e.g., 3 for x, y, z
+     */
+    public SensorRingBuffer(int capacity, int stride) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mTimestamps = new long[slots];
+        mValues = new float[slots * stride];
+        mStride = stride;
+        mMask = slots - 1;
+    }
+
+    public int capacity() {
+        return mTimestamps.length;
+    }
+
+    public int stride() {
+        return mStride;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Number of samples lost because the buffer was full when they arrived.
+     */
+    public long getOverwriteCount() {
+        return mOverwriteCount;
+    }
+
+    /**
+     * Appends a sample, copying the first stride() entries of values.
+     */
+    public void add(long timestamp, float[] values) {
+        add(timestamp, values, 0);
+    }
+
+    public void add(long timestamp, float[] values, int offset) {
+        if (mSize == mTimestamps.length) {
+            mHead = (mHead + 1) & mMask;
+            --mSize;
+            ++mOverwriteCount;
+        }
+        int slot = (mHead + mSize) & mMask;
+        mTimestamps[slot] = timestamp;
+        System.arraycopy(values, offset, mValues, slot * mStride, mStride);
+        ++mSize;
+    }
+
+    /**
+     * @param index position relative to the oldest sample, in [0, size())
+     */
+    public long getTimestamp(int index) {
+        return mTimestamps[(mHead + index) & mMask];
+    }
+
+    public float getValue(int index, int axis) {
+        return mValues[((mHead + index) & mMask) * mStride + axis];
+    }
+
+    public void copyValues(int index, float[] dst, int dstOffset) {
+        System.arraycopy(mValues, ((mHead + index) & mMask) * mStride, dst, dstOffset, mStride);
+    }
+
+    /**
+     * Finds the last sample at or before time, assuming timestamps are nondecreasing.
+     * <p>
+     * The search gallops forward from fromIndex and then bisects, so it costs O(1) when
+     * the answer is close to fromIndex, as it is when successive queries move forward in
+     * time, and O(log n) after a burst.
+     *
+     * @return index of the last sample with timestamp <= time among [fromIndex, size()),
+     * or fromIndex - 1 if there is none
+     */
+    public int floorIndex(long time, int fromIndex) {
+        if (fromIndex >= mSize || getTimestamp(fromIndex) > time) {
+            return fromIndex - 1;
+        }
+        int lo = fromIndex; // invariant: getTimestamp(lo) <= time
+        int step = 1;
+        int hi = lo + step;
+        while (hi < mSize && getTimestamp(hi) <= time) {
+            lo = hi;
+            step <<= 1;
+            hi = lo + step;
+        }
+        if (hi > mSize) {
+            hi = mSize;
+        }
+        // invariant: hi == size() or getTimestamp(hi) > time
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (getTimestamp(mid) <= time) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public long getFirstTimestamp() {
+        return mTimestamps[mHead];
+    }
+
+    public long getLastTimestamp() {
+        return mTimestamps[(mHead + mSize - 1) & mMask];
+    }
+
+    public void removeFirst() {
+        removeFirst(1);
+    }
+
+    /**
+     * Drops the count oldest samples by advancing the head.
+     */
+    public void removeFirst(int count) {
+        if (count >= mSize) {
+            clear();
+            return;
+        }
+        mHead = (mHead + count) & mMask;
+        mSize -= count;
+    }
+
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+}
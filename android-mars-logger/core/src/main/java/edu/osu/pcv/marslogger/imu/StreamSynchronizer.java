@@ -0,0 +1,47 @@
+package edu.osu.pcv.marslogger.imu;
+
+/**
+ * Aligns sensor streams to the timestamps of a reference stream, see
+ * {@link InertialSynchronizer} and {@link MultiSensorSynchronizer}.
+ * <p>
+ * Streams are numbered from 0, with the gyro and the accelerometer first, so that their
+ * indices double as the sensor indices of {@link InertialStreamStats}.
+ */
+public interface StreamSynchronizer {
+    int STREAM_GYRO = 0;
+    int STREAM_ACCEL = 1;
+
+    /**
+     * Appends a sample to a stream.  values is copied, not retained.
+     */
+    void add(int stream, long timestamp, float[] values);
+
+    /**
+     * Index of the stream whose timestamps the synced samples take.
+     */
+    int getReferenceStream();
+
+    /**
+     * Syncs the oldest reference sample.
+     *
+     * @return one of the InertialSynchronizer.RESULT_* constants
+     */
+    int sync();
+
+    long getSyncedTimestamp();
+
+    /**
+     * Returns the values of the last synced sample.  The array is reused by the next sync().
+     */
+    float[] getSyncedValues();
+
+    /**
+     * Number of samples discarded by the last sync() that returned a *_DROPPED result.
+     */
+    int getLastDropCount();
+
+    /**
+     * Names of the synced values, the schema for an {@link InertialSink}.
+     */
+    String[] getChannelNames();
+}
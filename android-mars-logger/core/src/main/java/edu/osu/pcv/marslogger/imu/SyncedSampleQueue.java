@@ -0,0 +1,127 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free single-producer/single-consumer queue of timestamped samples.
+ * <p>
+ * Samples are copied into preallocated primitive slots, so neither side allocates.  The
+ * producer, typically the sensor thread, never blocks: when the queue is full the sample
+ * is rejected and counted as an overflow.  The consumer drains samples in batches and
+ * publishes its progress once per batch.
+ * <p>
+ * Exactly one thread may call offer() and exactly one other thread may call drainTo().
+ */
+public class SyncedSampleQueue {
+    private final long[] mTimestamps;
+    private final float[] mValues;
+    private final int mWidth;
+    private final int mMask;
+
+    // next sequence to write, advanced by the producer
+    private final AtomicLong mTail = new AtomicLong();
+    // next sequence to read, advanced by the consumer
+    private final AtomicLong mHead = new AtomicLong();
+
+    // ----- accessed exclusively by the producer, published through volatile writes -----
+    private long mCachedHead;
+    private volatile int mHighWaterMark;
+    private volatile long mOverflowCount;
+
+    /**
+     * @param capacity minimum number of samples to hold, rounded up to a power of two
+     * @param width    number of values per sample
+     */
+    public SyncedSampleQueue(int capacity, int width) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        mTimestamps = new long[slots];
+        mValues = new float[slots * width];
+        mWidth = width;
+        mMask = slots - 1;
+    }
+
+    public int capacity() {
+        return mTimestamps.length;
+    }
+
+    public int width() {
+        return mWidth;
+    }
+
+    /**
+     * Copies a sample into the queue.  (Call from the producer thread.)
+     *
+     * @return false if the queue was full and the sample was dropped
+     */
+    public boolean offer(long timestamp, float[] values, int offset) {
+        long tail = mTail.get();
+        if (tail - mCachedHead >= mTimestamps.length) {
+            mCachedHead = mHead.get();
+            if (tail - mCachedHead >= mTimestamps.length) {
+                mOverflowCount = mOverflowCount + 1;
+                return false;
+            }
+        }
+        int slot = (int) tail & mMask;
+        mTimestamps[slot] = timestamp;
+        System.arraycopy(values, offset, mValues, slot * mWidth, mWidth);
+        mTail.lazySet(tail + 1);
+
+        if (tail + 1 - mCachedHead > mHighWaterMark) {
+            // the cached head may be stale, refresh it before raising the mark
+            mCachedHead = mHead.get();
+            int size = (int) (tail + 1 - mCachedHead);
+            if (size > mHighWaterMark) {
+                mHighWaterMark = size;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands up to maxCount queued samples to the sink, oldest first, and then releases
+     * their slots to the producer in one step.  (Call from the consumer thread.)
+     * <p>
+     * If the sink throws, the samples before the failing one and the failing one itself
+     * are consumed, so that a broken sink cannot wedge the queue.
+     *
+     * @return number of samples handed to the sink
+     */
+    public int drainTo(InertialSink sink, int maxCount) throws IOException {
+        long head = mHead.get();
+        int count = (int) Math.min(mTail.get() - head, maxCount);
+        int consumed = 0;
+        try {
+            while (consumed < count) {
+                int slot = (int) (head + consumed) & mMask;
+                ++consumed;
+                sink.write(mTimestamps[slot], mValues, slot * mWidth);
+            }
+        } finally {
+            mHead.lazySet(head + consumed);
+        }
+        return count;
+    }
+
+    /**
+     * Number of samples waiting to be drained.  Exact only on the consumer thread.
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    /**
+     * Largest number of samples observed in the queue by the producer.
+     */
+    public int getHighWaterMark() {
+        return mHighWaterMark;
+    }
+
+    /**
+     * Number of samples rejected because the queue was full.
+     */
+    public long getOverflowCount() {
+        return mOverflowCount;
+    }
+}
@@ -0,0 +1,266 @@
+package edu.osu.pcv.marslogger.util;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Garbage-free encoder of numeric csv lines.
+ * <p>
+ * Numbers are formatted as ASCII digits straight into a reusable byte buffer, which is
+ * handed to the channel in whole blocks.  Unlike building lines with String
+ * concatenation or a StringBuilder, appending a field does not create any objects.
+ * <p>
+ * Floats are written either with a fixed number of decimals, or with the fewest
+ * significant digits that read back as the same float.  Both use plain decimal notation,
+ * e.g., 0.0001 rather than 1.0E-4.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class CsvLineEncoder implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final byte[] NULL = "null".getBytes(ASCII);
+    // the longest field, a long with its sign
+    private static final int MAX_NUMBER_LENGTH = 20;
+
+    // powers of ten exactly representable as double and long
+    private static final double[] POW10 = new double[19];
+    private static final long[] LONG_POW10 = new long[19];
+
+    static {
+        POW10[0] = 1.0;
+        LONG_POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; ++i) {
+            POW10[i] = POW10[i - 1] * 10.0;
+            LONG_POW10[i] = LONG_POW10[i - 1] * 10L;
+        }
+    }
+
+    private final WritableByteChannel mChannel;
+    private final byte[] mBuffer;
+    private final ByteBuffer mByteBuffer;
+    private final byte[] mDigits = new byte[MAX_NUMBER_LENGTH];
+    private int mCount;
+    private char mDelimiter = ',';
+
+    public CsvLineEncoder(String file) throws IOException {
+        this(new FileOutputStream(file, false).getChannel(), DEFAULT_BUFFER_SIZE);
+    }
+
+    public CsvLineEncoder(WritableByteChannel channel, int bufferSize) {
+        mChannel = channel;
+        mBuffer = new byte[Math.max(bufferSize, 64)];
+        mByteBuffer = ByteBuffer.wrap(mBuffer);
+    }
+
+    public CsvLineEncoder setDelimiter(char delimiter) {
+        mDelimiter = delimiter;
+        return this;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (mCount + length > mBuffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        mByteBuffer.clear();
+        mByteBuffer.limit(mCount);
+        while (mByteBuffer.hasRemaining()) {
+            mChannel.write(mByteBuffer);
+        }
+        mCount = 0;
+    }
+
+    public CsvLineEncoder delimiter() throws IOException {
+        return append(mDelimiter);
+    }
+
+    /**
+     * Ends the current line.
+     */
+    public CsvLineEncoder endLine() throws IOException {
+        return append('\n');
+    }
+
+    public CsvLineEncoder append(char c) throws IOException {
+        ensure(1);
+        mBuffer[mCount++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Appends an ASCII string, e.g., a header.  Meant for rare output, as the string is
+     * encoded on each call.
+     */
+    public CsvLineEncoder appendAscii(String text) throws IOException {
+        return appendBytes(text.getBytes(ASCII));
+    }
+
+    /**
+     * Appends null, as the boxed variants do for a null value.
+     */
+    public CsvLineEncoder appendNull() throws IOException {
+        return appendBytes(NULL);
+    }
+
+    private CsvLineEncoder appendBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int count = Math.min(bytes.length - offset, mBuffer.length - mCount);
+            System.arraycopy(bytes, offset, mBuffer, mCount, count);
+            mCount += count;
+            offset += count;
+        }
+        return this;
+    }
+
+    public CsvLineEncoder append(int value) throws IOException {
+        return append((long) value);
+    }
+
+    public CsvLineEncoder append(long value) throws IOException {
+        ensure(MAX_NUMBER_LENGTH);
+        if (value == Long.MIN_VALUE) {
+            // its magnitude does not fit in a long
+            return appendAscii("-9223372036854775808");
+        }
+        if (value < 0) {
+            mBuffer[mCount++] = '-';
+            value = -value;
+        }
+        appendDigits(value, 1);
+        return this;
+    }
+
+    // writes value with at least minDigits digits, padding with leading zeros
+    private void appendDigits(long value, int minDigits) {
+        int length = 0;
+        do {
+            mDigits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (length < minDigits) {
+            mDigits[length++] = '0';
+        }
+        while (length > 0) {
+            mBuffer[mCount++] = mDigits[--length];
+        }
+    }
+
+    /**
+     * Appends value rounded half away from zero to the given number of decimals, at most 9.
+     */
+    public CsvLineEncoder appendFixed(float value, int decimals) throws IOException {
+        if (Float.isNaN(value) || Float.isInfinite(value) ||
+                Math.abs(value) * POW10[decimals] >= POW10[18]) {
+            return append(value);
+        }
+        ensure(MAX_NUMBER_LENGTH + 2);
+        long scaled = Math.round(Math.abs((double) value) * POW10[decimals]);
+        if (value < 0 && scaled != 0) {
+            mBuffer[mCount++] = '-';
+        }
+        appendDigits(scaled / LONG_POW10[decimals], 1);
+        if (decimals > 0) {
+            mBuffer[mCount++] = '.';
+            appendDigits(scaled % LONG_POW10[decimals], decimals);
+        }
+        return this;
+    }
+
+    /**
+     * Appends value with the fewest significant digits that parse back to the same float.
+     */
+    public CsvLineEncoder append(float value) throws IOException {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            return appendAscii(Float.toString(value));
+        }
+        if (value == 0.0f) {
+            return appendAscii(1.0f / value < 0 ? "-0.0" : "0.0");
+        }
+        double magnitude = Math.abs((double) value);
+        int exponent = (int) Math.floor(Math.log10(magnitude));
+        // scaling below stays exact for powers of ten up to 10^18
+        if (exponent < -9 || exponent > 9) {
+            return appendAscii(Float.toString(value));
+        }
+        for (int digits = 1; digits <= 9; ++digits) {
+            int shift = digits - 1 - exponent;
+            long mantissa = Math.round(shift >= 0 ?
+                    magnitude * POW10[shift] : magnitude / POW10[-shift]);
+            double parsed = shift >= 0 ?
+                    mantissa / POW10[shift] : mantissa * POW10[-shift];
+            if ((float) parsed == (float) magnitude) {
+                appendDecimal(value < 0, mantissa, shift);
+                return this;
+            }
+        }
+        return appendAscii(Float.toString(value));
+    }
+
+    // appends mantissa * 10^-shift in plain notation with at least one decimal
+    private void appendDecimal(boolean negative, long mantissa, int shift) throws IOException {
+        ensure(MAX_NUMBER_LENGTH + 12);
+        if (negative) {
+            mBuffer[mCount++] = '-';
+        }
+        if (shift <= 0) {
+            appendDigits(mantissa, 1);
+            for (int i = 0; i < -shift; ++i) {
+                mBuffer[mCount++] = '0';
+            }
+            mBuffer[mCount++] = '.';
+            mBuffer[mCount++] = '0';
+            return;
+        }
+        appendDigits(mantissa / LONG_POW10[shift], 1);
+        mBuffer[mCount++] = '.';
+        long fraction = mantissa % LONG_POW10[shift];
+        // drop trailing zeros, e.g., from a mantissa that rounded up to a power of ten
+        int fractionDigits = shift;
+        while (fractionDigits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            --fractionDigits;
+        }
+        appendDigits(fraction, fractionDigits);
+    }
+
+    // The boxed variants write null the way String.valueOf does, e.g., for a
+    // CaptureResult key that the device does not report.
+
+    public CsvLineEncoder append(Long value) throws IOException {
+        return value == null ? appendBytes(NULL) : append(value.longValue());
+    }
+
+    public CsvLineEncoder append(Integer value) throws IOException {
+        return value == null ? appendBytes(NULL) : append(value.longValue());
+    }
+
+    public CsvLineEncoder append(Float value) throws IOException {
+        return value == null ? appendBytes(NULL) : append(value.floatValue());
+    }
+
+    /**
+     * Writes out all buffered lines.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            mChannel.close();
+        }
+    }
+}
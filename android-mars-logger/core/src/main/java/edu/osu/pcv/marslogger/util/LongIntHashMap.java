@@ -0,0 +1,128 @@
+package edu.osu.pcv.marslogger.util;
+
+/**
+ * Map from long keys to int values, e.g., from timestamps to ring slots, that neither
+ * boxes nor allocates after construction.
+ * <p>
+ * Open addressing with linear probing in a table at most half full; remove() shifts the
+ * following entries back instead of leaving tombstones, so lookups stay short however
+ * many entries come and go.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class LongIntHashMap {
+    private final long[] mKeys;
+    private final int[] mValues;
+    private final boolean[] mUsed;
+    private final int mMask;
+    private final int mCapacity;
+    private int mSize;
+
+    /**
+     * @param capacity maximum number of entries
+     */
+    public LongIntHashMap(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(2 * capacity - 1, 1)) << 1;
+        mKeys = new long[slots];
+        mValues = new int[slots];
+        mUsed = new boolean[slots];
+        mMask = slots - 1;
+        mCapacity = capacity;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int capacity() {
+        return mCapacity;
+    }
+
+    /**
+     * @return the value of key, or missing if the map has no such key
+     */
+    public int get(long key, int missing) {
+        int slot = find(key);
+        return slot < 0 ? missing : mValues[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Maps key to value, replacing any value it had.
+     *
+     * @throws IllegalStateException if the key is new and the map is at capacity
+     */
+    public void put(long key, int value) {
+        int slot = home(key);
+        while (mUsed[slot]) {
+            if (mKeys[slot] == key) {
+                mValues[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        if (mSize == mCapacity) {
+            throw new IllegalStateException("Map is full at " + mCapacity + " entries");
+        }
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        mUsed[slot] = true;
+        ++mSize;
+    }
+
+    /**
+     * @return false if the map had no such key
+     */
+    public boolean remove(long key) {
+        int hole = find(key);
+        if (hole < 0) {
+            return false;
+        }
+        // move back the entries of the probe run after the hole that may not skip it
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mMask;
+            if (!mUsed[slot]) {
+                break;
+            }
+            int home = home(mKeys[slot]);
+            boolean staysPut = hole <= slot ? hole < home && home <= slot :
+                    hole < home || home <= slot;
+            if (!staysPut) {
+                mKeys[hole] = mKeys[slot];
+                mValues[hole] = mValues[slot];
+                hole = slot;
+            }
+        }
+        mUsed[hole] = false;
+        --mSize;
+        return true;
+    }
+
+    public void clear() {
+        for (int slot = 0; slot < mUsed.length; ++slot) {
+            mUsed[slot] = false;
+        }
+        mSize = 0;
+    }
+
+    private int find(long key) {
+        int slot = home(key);
+        while (mUsed[slot]) {
+            if (mKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        return -1;
+    }
+
+    private int home(long key) {
+        // Fibonacci hashing, so that keys in steps of a frame period spread out
+        long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash >>> 32) & mMask;
+    }
+}
@@ -0,0 +1,167 @@
+package edu.osu.pcv.marslogger.util;
+
+/**
+ * Running median of the last window values, updated in O(log window) without
+ * allocation.
+ * <p>
+ * The values of the window are split between a max-heap of the lower half and a
+ * min-heap of the upper half, whose tops meet at the median.  The heaps hold the slots
+ * of a ring of values, and every slot knows its place in its heap, so that the oldest
+ * value can be removed from the middle of a heap when a new one arrives.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class RollingMedian {
+    private static final int LOW = 0;
+    private static final int HIGH = 1;
+
+    private final long[] mValues;
+    // the heap of each slot, and its index there
+    private final int[] mHeapOf;
+    private final int[] mIndexOf;
+    // slots of the lower half, largest first, and of the upper half, smallest first
+    private final int[][] mHeaps;
+    private final int[] mSizes = new int[2];
+    private int mNext;
+    private int mCount;
+
+    public RollingMedian(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window " + window + " is empty");
+        }
+        mValues = new long[window];
+        mHeapOf = new int[window];
+        mIndexOf = new int[window];
+        mHeaps = new int[][]{new int[window], new int[window]};
+    }
+
+    public int window() {
+        return mValues.length;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    public void clear() {
+        mSizes[LOW] = 0;
+        mSizes[HIGH] = 0;
+        mNext = 0;
+        mCount = 0;
+    }
+
+    /**
+     * Adds a value, dropping the oldest one if the window is full.
+     */
+    public void add(long value) {
+        int slot = mNext;
+        mNext = (mNext + 1) % mValues.length;
+        if (mCount == mValues.length) {
+            remove(slot);
+        } else {
+            ++mCount;
+        }
+        mValues[slot] = value;
+        if (mSizes[LOW] == 0 || value <= mValues[mHeaps[LOW][0]]) {
+            push(LOW, slot);
+        } else {
+            push(HIGH, slot);
+        }
+        rebalance();
+    }
+
+    /**
+     * The median of the window, the lower of the two middle values for an even count.
+     *
+     * @throws IllegalStateException if no value was added
+     */
+    public long getMedian() {
+        if (mCount == 0) {
+            throw new IllegalStateException("No values");
+        }
+        return mValues[mHeaps[LOW][0]];
+    }
+
+    // keeps the lower half as large as the upper half, or one larger
+    private void rebalance() {
+        if (mSizes[LOW] > mSizes[HIGH] + 1) {
+            push(HIGH, pop(LOW));
+        } else if (mSizes[HIGH] > mSizes[LOW]) {
+            push(LOW, pop(HIGH));
+        }
+    }
+
+    private void remove(int slot) {
+        int heap = mHeapOf[slot];
+        int index = mIndexOf[slot];
+        int last = --mSizes[heap];
+        if (index != last) {
+            place(heap, mHeaps[heap][last], index);
+            siftDown(heap, siftUp(heap, index));
+        }
+        rebalance();
+    }
+
+    private void push(int heap, int slot) {
+        int index = mSizes[heap]++;
+        mHeapOf[slot] = heap;
+        place(heap, slot, index);
+        siftUp(heap, index);
+    }
+
+    private int pop(int heap) {
+        int top = mHeaps[heap][0];
+        int last = --mSizes[heap];
+        if (last > 0) {
+            place(heap, mHeaps[heap][last], 0);
+            siftDown(heap, 0);
+        }
+        return top;
+    }
+
+    private void place(int heap, int slot, int index) {
+        mHeaps[heap][index] = slot;
+        mIndexOf[slot] = index;
+    }
+
+    // whether slot a belongs above slot b in heap
+    private boolean above(int heap, int a, int b) {
+        return heap == LOW ? mValues[a] > mValues[b] : mValues[a] < mValues[b];
+    }
+
+    private int siftUp(int heap, int index) {
+        int[] slots = mHeaps[heap];
+        int slot = slots[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!above(heap, slot, slots[parent])) {
+                break;
+            }
+            place(heap, slots[parent], index);
+            index = parent;
+        }
+        place(heap, slot, index);
+        return index;
+    }
+
+    private void siftDown(int heap, int index) {
+        int[] slots = mHeaps[heap];
+        int size = mSizes[heap];
+        int slot = slots[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && above(heap, slots[child + 1], slots[child])) {
+                ++child;
+            }
+            if (!above(heap, slots[child], slot)) {
+                break;
+            }
+            place(heap, slots[child], index);
+            index = child;
+        }
+        place(heap, slot, index);
+    }
+}
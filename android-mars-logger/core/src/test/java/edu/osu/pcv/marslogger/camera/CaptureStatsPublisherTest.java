@@ -0,0 +1,77 @@
+package edu.osu.pcv.marslogger.camera;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class CaptureStatsPublisherTest {
+    private static void fill(FrameMetadata frame, long number) {
+        frame.clear();
+        frame.setFrameNumber(number);
+        frame.setFocalLengthPixel(number, number);
+        frame.setExposureTime(number * 10);
+        frame.setAfMode((int) (number % 4));
+    }
+
+    @Test
+    public void readReportsOnlyChanges() {
+        CaptureStatsPublisher publisher = new CaptureStatsPublisher();
+        CaptureStatsPublisher.Snapshot snapshot = new CaptureStatsPublisher.Snapshot();
+        assertTrue(publisher.read(snapshot));
+        assertFalse(publisher.read(snapshot));
+
+        FrameMetadata frame = new FrameMetadata();
+        fill(frame, 7);
+        publisher.publish(frame);
+        frame.clear();
+        frame.setFrameNumber(8);
+        publisher.publish(frame);
+        assertTrue(publisher.read(snapshot));
+        assertEquals(8, snapshot.getFrameNumber());
+        assertEquals(CaptureStatsPublisher.NO_EXPOSURE_TIME, snapshot.getExposureTime());
+        assertEquals(CaptureStatsPublisher.NO_AF_MODE, snapshot.getAfMode());
+        assertFalse(publisher.read(snapshot));
+
+        publisher.setFrameRate(29.5f);
+        assertTrue(publisher.read(snapshot));
+        assertEquals(29.5f, snapshot.getFrameRate(), 0f);
+    }
+
+    @Test
+    public void snapshotsAreNeverTorn() throws InterruptedException {
+        final CaptureStatsPublisher publisher = new CaptureStatsPublisher();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread camera = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                FrameMetadata frame = new FrameMetadata();
+                for (long number = 1; running.get(); ++number) {
+                    fill(frame, number);
+                    publisher.publish(frame);
+                }
+            }
+        });
+        camera.start();
+        CaptureStatsPublisher.Snapshot snapshot = new CaptureStatsPublisher.Snapshot();
+        long changes = 0;
+        try {
+            for (int i = 0; i < 200000; ++i) {
+                if (publisher.read(snapshot)) {
+                    ++changes;
+                    long number = snapshot.getFrameNumber();
+                    if (number > 0) {
+                        assertEquals((float) number, snapshot.getFocalLengthPixel(), 0f);
+                        assertEquals(number * 10, snapshot.getExposureTime());
+                        assertEquals(number % 4, snapshot.getAfMode());
+                    }
+                }
+            }
+        } finally {
+            running.set(false);
+            camera.join();
+        }
+        assertTrue(changes > 1);
+    }
+}
@@ -0,0 +1,131 @@
+package edu.osu.pcv.marslogger.camera;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameCadenceMonitorTest {
+    private static final long PERIOD_NANOS = 33333333L;
+
+    // remembers the events as (event, sequence, missing)
+    private static class Collector implements FrameCadenceMonitor.Listener {
+        final List<long[]> mEvents = new ArrayList<>();
+
+        @Override
+        public void onCadenceEvent(FrameCadenceMonitor monitor, int event, long sequence,
+                                   long timestamp, long interval, long expectedPeriod,
+                                   long missing) {
+            mEvents.add(new long[]{event, sequence, missing});
+        }
+    }
+
+    @Test
+    public void flagsGapsDuplicatesAndJitterByFrameDuration() throws IOException {
+        Collector collector = new Collector();
+        FrameCadenceMonitor monitor = new FrameCadenceMonitor("capture", 0.25f, collector);
+        long timestamp = 1000000000L;
+        for (long number = 0; number < 20; ++number) {
+            if (number == 5 || number == 6) {
+                // the sensor skips two frames, numbered as usual
+                timestamp += PERIOD_NANOS;
+                continue;
+            }
+            long late = number == 15 ? PERIOD_NANOS / 3 : 0;
+            monitor.addFrame(number, timestamp + late, PERIOD_NANOS);
+            if (number == 10) {
+                monitor.addFrame(number, timestamp, PERIOD_NANOS);
+            }
+            timestamp += PERIOD_NANOS;
+        }
+        assertEquals(19, monitor.getFrameCount());
+        assertEquals(1, monitor.getDropCount());
+        assertEquals(2, monitor.getMissingFrameCount());
+        assertEquals(1, monitor.getDuplicateCount());
+        // frame 15 is late, and frame 16 early
+        assertEquals(2, monitor.getJitterCount());
+        assertEquals(PERIOD_NANOS / 3, monitor.getMaxJitter());
+        assertEquals(1, monitor.getHistogramCount(0));
+        assertEquals(1, monitor.getHistogramCount(3));
+
+        assertEquals(4, collector.mEvents.size());
+        assertArrayEquals(new long[]{FrameCadenceMonitor.EVENT_DROP, 7, 2},
+                collector.mEvents.get(0));
+        assertArrayEquals(new long[]{FrameCadenceMonitor.EVENT_DUPLICATE, 10, 0},
+                collector.mEvents.get(1));
+        assertArrayEquals(new long[]{FrameCadenceMonitor.EVENT_JITTER, 15, 0},
+                collector.mEvents.get(2));
+        assertArrayEquals(new long[]{FrameCadenceMonitor.EVENT_JITTER, 16, 0},
+                collector.mEvents.get(3));
+    }
+
+    @Test
+    public void flagsGapsByMedianIntervalWithoutSequence() throws IOException {
+        Collector collector = new Collector();
+        FrameCadenceMonitor monitor = new FrameCadenceMonitor("encoded", 0.25f, collector);
+        long timestamp = 0;
+        for (int i = 0; i < 30; ++i) {
+            // the encoder skips one frame after 20 frames
+            timestamp += i == 20 ? 2 * PERIOD_NANOS : PERIOD_NANOS;
+            monitor.addFrame(FrameCadenceMonitor.NO_SEQUENCE, timestamp,
+                    FrameCadenceMonitor.NO_PERIOD);
+        }
+        // a second frame with the same presentation time
+        monitor.addFrame(FrameCadenceMonitor.NO_SEQUENCE, timestamp,
+                FrameCadenceMonitor.NO_PERIOD);
+        assertEquals(1, monitor.getDropCount());
+        assertEquals(1, monitor.getMissingFrameCount());
+        assertEquals(1, monitor.getDuplicateCount());
+        assertEquals(0, monitor.getJitterCount());
+        assertEquals(27, monitor.getHistogramCount(1));
+        assertEquals(1, monitor.getHistogramCount(2));
+    }
+
+    @Test
+    public void sinkWritesOneLinePerEvent() throws IOException {
+        File file = File.createTempFile("frame_events", ".csv");
+        try {
+            FrameCadenceSink sink = new FrameCadenceSink(file.getPath(), 0.25f, 4);
+            FrameMetadata frame = new FrameMetadata();
+            for (long number = 0; number < 4; ++number) {
+                if (number == 2) {
+                    continue;
+                }
+                long timestamp = 1000000000L + number * PERIOD_NANOS;
+                sink.onFrameEncoded(timestamp / 1000);
+                sink.writeStart(number, timestamp);
+                frame.clear();
+                frame.setFrameNumber(number);
+                frame.setTimestamp(timestamp);
+                sink.write(frame);
+            }
+            sink.close();
+            assertEquals(3, sink.getCaptureMonitor().getFrameCount());
+            assertEquals(3, sink.getEncodedMonitor().getFrameCount());
+            assertEquals(1, sink.getCaptureMonitor().getDropCount());
+            assertEquals(0, sink.getOverflowCount());
+
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                assertEquals(FrameCadenceSink.CSV_HEADER, reader.readLine());
+                // the presentation times are checked before the frame start, and
+                // without SENSOR_FRAME_DURATION the median of one interval is the period
+                assertEquals("encoded,drop,2,1099999000,66666000,33333000,1",
+                        reader.readLine());
+                assertEquals("capture,drop,3,1099999999,66666666,33333333,1",
+                        reader.readLine());
+                assertNull(reader.readLine());
+            } finally {
+                reader.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package edu.osu.pcv.marslogger.camera;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameJoinerTest {
+    private static final long PERIOD_NANOS = 33333333L;
+
+    // remembers the emitted frames as (encoded index or -1, frame number or -1)
+    private static class Collector implements FrameJoiner.Listener {
+        final List<long[]> mFrames = new ArrayList<>();
+
+        @Override
+        public void onFrame(JoinedFrame frame) {
+            mFrames.add(new long[]{
+                    frame.hasEncodedFrame() ? frame.getEncodedIndex() : -1,
+                    frame.hasMetadata() ? frame.getFrameNumber() : -1});
+            if (frame.hasEncodedFrame() && frame.hasMetadata()) {
+                assertEquals(frame.getTimestamp() / 1000, frame.getPresentationTimeUs());
+                assertEquals(frame.getFrameNumber() * 10, frame.getExposureTime());
+            }
+        }
+    }
+
+    private static void fill(FrameMetadata frame, long number) {
+        frame.clear();
+        frame.setFrameNumber(number);
+        // sensor timestamps are not whole microseconds
+        frame.setTimestamp(1000000007L + number * PERIOD_NANOS);
+        frame.setExposureTime(number * 10);
+        frame.setFocalLengthPixel(1480f, 1481f);
+    }
+
+    private static long presentationTimeUs(long number) {
+        return (1000000007L + number * PERIOD_NANOS) / 1000;
+    }
+
+    @Test
+    public void joinsEitherOrderAndFlagsGaps() throws IOException {
+        Collector collector = new Collector();
+        FrameJoiner joiner = new FrameJoiner(8, collector);
+        FrameMetadata frame = new FrameMetadata();
+        // frame numbers in encoding order; the encoder runs ahead and drops frame 5
+        List<Long> encoded = new ArrayList<>();
+        for (long number = 0; number < 20; ++number) {
+            long ahead = number == 0 ? 3 : number + 3;
+            if (ahead < 20 && ahead != 5) {
+                joiner.addEncodedFrame(presentationTimeUs(ahead));
+                encoded.add(ahead);
+            }
+            if (number == 0) {
+                for (long early = 0; early < 3; ++early) {
+                    joiner.addEncodedFrame(presentationTimeUs(early));
+                    encoded.add(early);
+                }
+            }
+            // the metadata of frame 12 is dropped
+            if (number != 12) {
+                fill(frame, number);
+                joiner.addMetadata(frame);
+            }
+        }
+        joiner.flush();
+        assertEquals(18, joiner.getMatchedCount());
+        assertEquals(1, joiner.getUnmatchedMetadataCount());
+        assertEquals(1, joiner.getUnmatchedEncodedCount());
+        assertEquals(20, collector.mFrames.size());
+        for (long[] pair : collector.mFrames) {
+            if (pair[0] < 0) {
+                assertEquals(5, pair[1]);
+            } else if (pair[1] < 0) {
+                assertEquals(12L, (long) encoded.get((int) pair[0]));
+            } else {
+                assertEquals(pair[1], (long) encoded.get((int) pair[0]));
+            }
+        }
+    }
+
+    @Test
+    public void evictsFramesThatFallOutOfTheWindow() throws IOException {
+        Collector collector = new Collector();
+        FrameJoiner joiner = new FrameJoiner(4, collector);
+        FrameMetadata frame = new FrameMetadata();
+        for (long number = 0; number < 6; ++number) {
+            fill(frame, number);
+            joiner.addMetadata(frame);
+        }
+        // frames 0 and 1 were pushed out by frames 4 and 5
+        assertEquals(2, joiner.getUnmatchedMetadataCount());
+        joiner.addEncodedFrame(presentationTimeUs(0));
+        joiner.addEncodedFrame(presentationTimeUs(5));
+        assertEquals(1, joiner.getMatchedCount());
+        assertArrayEquals(new long[]{1, 5}, collector.mFrames.get(2));
+        joiner.flush();
+        assertEquals(5, joiner.getUnmatchedMetadataCount());
+        assertEquals(1, joiner.getUnmatchedEncodedCount());
+        assertEquals(7, collector.mFrames.size());
+    }
+
+    @Test
+    public void sinkWritesOneLinePerFrame() throws IOException {
+        File file = File.createTempFile("frames", ".csv");
+        try {
+            FrameJoinSink sink = new FrameJoinSink(file.getPath(), 8, 4);
+            FrameMetadata frame = new FrameMetadata();
+            for (long number = 0; number < 3; ++number) {
+                sink.onFrameEncoded(presentationTimeUs(number));
+            }
+            fill(frame, 0);
+            sink.write(frame);
+            fill(frame, 1);
+            frame.setIntrinsics(new float[]{1500f, 1501f, 960f, 540f, 0f});
+            sink.write(frame);
+            sink.close();
+            assertEquals(2, sink.getJoiner().getMatchedCount());
+            assertEquals(1, sink.getJoiner().getUnmatchedEncodedCount());
+
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                assertEquals(JoinedFrame.CSV_HEADER, reader.readLine());
+                assertEquals("0," + presentationTimeUs(0) + ",0,1000000007,0,1480.0,1481.0," +
+                        "null,null", reader.readLine());
+                assertEquals("1," + presentationTimeUs(1) + ",1,1033333340,10,1500.0,1501.0," +
+                        "960.0,540.0", reader.readLine());
+                assertEquals("2," + presentationTimeUs(2) + ",null,null,null,null,null," +
+                        "null,null", reader.readLine());
+                assertNull(reader.readLine());
+            } finally {
+                reader.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
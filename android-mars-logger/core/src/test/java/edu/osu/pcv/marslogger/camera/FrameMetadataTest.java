@@ -0,0 +1,139 @@
+package edu.osu.pcv.marslogger.camera;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import edu.osu.pcv.marslogger.util.CsvLineEncoder;
+
+import static org.junit.Assert.*;
+
+public class FrameMetadataTest {
+    private final ByteArrayOutputStream mOutput = new ByteArrayOutputStream();
+    private final CsvLineEncoder mEncoder = new CsvLineEncoder(Channels.newChannel(mOutput), 64);
+
+    private String text() throws IOException {
+        mEncoder.flush();
+        String text = mOutput.toString("US-ASCII");
+        mOutput.reset();
+        return text;
+    }
+
+    private static void fill(FrameMetadata frame, long number) {
+        frame.setTimestamp(1000000L * number);
+        frame.setFocalLengthPixel(1480.5f, 1481f);
+        frame.setFrameNumber(number);
+        frame.setExposureTime(10000000L);
+        frame.setFrameDuration(33333333L);
+        frame.setRollingShutterSkew(null);
+        frame.setSensitivity(400);
+        frame.setFocalLength(4.38f);
+        frame.setFocusDistance(0f);
+        frame.setAfMode(null);
+    }
+
+    @Test
+    public void writesTheColumnsOfTheHeader() throws IOException {
+        FrameMetadata frame = new FrameMetadata();
+        fill(frame, 7);
+        frame.writeCsv(mEncoder);
+        assertEquals("7000000,7,10000000,33333333,null,400,4.38,0.0,null\n", text());
+        assertEquals(9, FrameMetadata.CSV_HEADER.split(",").length);
+        frame.writeCsv(mEncoder, true);
+        assertEquals("7000000,1480.5,1481.0,7,10000000,33333333,null,400,4.38,0.0,null\n",
+                text());
+        assertEquals(11, FrameMetadata.CSV_HEADER_WITH_FOCAL_LENGTH_PIXEL.split(",").length);
+    }
+
+    @Test
+    public void clearedRecordWritesNullForEveryMissingKey() throws IOException {
+        FrameMetadata frame = new FrameMetadata();
+        fill(frame, 7);
+        frame.clear();
+        frame.setFrameNumber(8);
+        assertFalse(frame.has(FrameMetadata.EXPOSURE_TIME));
+        frame.writeCsv(mEncoder);
+        assertEquals("null,8,null,null,null,null,null,null,null\n", text());
+    }
+
+    @Test
+    public void poolRecyclesItsRecords() {
+        FrameMetadataPool pool = new FrameMetadataPool(3);
+        assertEquals(4, pool.capacity());
+        FrameMetadata[] taken = new FrameMetadata[4];
+        for (int i = 0; i < 4; ++i) {
+            taken[i] = pool.acquire();
+            assertNotNull(taken[i]);
+            fill(taken[i], i);
+        }
+        assertNull(pool.acquire());
+        assertEquals(1, pool.getExhaustedCount());
+
+        pool.release(taken[2]);
+        FrameMetadata again = pool.acquire();
+        assertSame(taken[2], again);
+        assertFalse(again.has(FrameMetadata.TIMESTAMP));
+        for (int i = 0; i < 4; ++i) {
+            pool.release(taken[i]);
+        }
+        assertEquals(4, pool.available());
+    }
+
+    private static FrameMetadataSchema extraSchema() {
+        return new FrameMetadataSchema.Builder()
+                .addColumn("android.lens.poseRotation", FrameMetadataSchema.TYPE_FLOAT, 4)
+                .addColumn("android.control.aeState", FrameMetadataSchema.TYPE_INT, 1)
+                .addColumn("android.sensor.frameDuration", FrameMetadataSchema.TYPE_LONG, 1)
+                .addColumn("android.lens.aperture", FrameMetadataSchema.TYPE_FLOAT, 1)
+                .build();
+    }
+
+    @Test
+    public void writesExtraColumnsOfTheSchema() throws IOException {
+        FrameMetadataSchema schema = extraSchema();
+        assertEquals(",android.lens.poseRotation[0]:f32,android.lens.poseRotation[1]:f32," +
+                "android.lens.poseRotation[2]:f32,android.lens.poseRotation[3]:f32," +
+                "android.control.aeState:i32,android.sensor.frameDuration:i64," +
+                "android.lens.aperture:f32", schema.csvHeader());
+
+        FrameMetadata frame = new FrameMetadata(schema);
+        fill(frame, 7);
+        for (int i = 0; i < 4; ++i) {
+            frame.setExtraFloat(schema.getOffset(0) + i, 0.5f * i);
+        }
+        frame.markExtraPresent(0);
+        frame.setExtraLong(schema.getOffset(1), 2);
+        frame.markExtraPresent(1);
+        frame.setExtraFloat(schema.getOffset(3), 1.8f);
+        frame.markExtraPresent(3);
+        frame.writeCsv(mEncoder);
+        assertEquals("7000000,7,10000000,33333333,null,400,4.38,0.0,null," +
+                "0.0,0.5,1.0,1.5,2,null,1.8\n", text());
+
+        frame.clear();
+        assertFalse(frame.hasExtra(0));
+        frame.writeCsv(mEncoder);
+        assertTrue(text().endsWith(",null,null,null,null,null,null,null\n"));
+    }
+
+    @Test
+    public void schemaIsRecoveredFromTheHeader() {
+        FrameMetadataSchema schema = extraSchema();
+        for (String fixed : new String[]{FrameMetadata.CSV_HEADER,
+                FrameMetadata.CSV_HEADER_WITH_FOCAL_LENGTH_PIXEL}) {
+            FrameMetadataSchema parsed = FrameMetadataSchema.parseCsvHeader(
+                    fixed + schema.csvHeader() + "\n");
+            assertEquals(schema.getColumnCount(), parsed.getColumnCount());
+            for (int column = 0; column < schema.getColumnCount(); ++column) {
+                assertEquals(schema.getName(column), parsed.getName(column));
+                assertEquals(schema.getType(column), parsed.getType(column));
+                assertEquals(schema.getCount(column), parsed.getCount(column));
+                assertEquals(schema.getOffset(column), parsed.getOffset(column));
+            }
+        }
+        assertEquals(0, FrameMetadataSchema.parseCsvHeader(FrameMetadata.CSV_HEADER)
+                .getColumnCount());
+    }
+}
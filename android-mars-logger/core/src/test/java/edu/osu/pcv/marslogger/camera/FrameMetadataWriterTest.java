@@ -0,0 +1,161 @@
+package edu.osu.pcv.marslogger.camera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class FrameMetadataWriterTest {
+    // checks that frames arrive in order, optionally stalling on the first one, and
+    // remembers the frame numbers of the starts
+    private static class CheckingSink implements FrameMetadataSink {
+        final CountDownLatch mStall;
+        final List<Long> mStarts = new ArrayList<>();
+        long mExpected;
+        int mWritten;
+        boolean mClosed;
+
+        CheckingSink(CountDownLatch stall) {
+            mStall = stall;
+        }
+
+        @Override
+        public void write(FrameMetadata frame) {
+            try {
+                mStall.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            assertTrue(frame.getFrameNumber() >= mExpected);
+            assertEquals(frame.getFrameNumber() * 10, frame.getExposureTime());
+            mExpected = frame.getFrameNumber() + 1;
+            ++mWritten;
+        }
+
+        @Override
+        public void writeStart(long frameNumber, long timestamp) {
+            assertEquals(1000 + frameNumber, timestamp);
+            mStarts.add(frameNumber);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            mClosed = true;
+        }
+    }
+
+    private static boolean submit(FrameMetadataWriter writer, long number) {
+        FrameMetadata frame = writer.acquire();
+        assertNotNull(frame);
+        assertFalse(frame.has(FrameMetadata.EXPOSURE_TIME));
+        frame.setFrameNumber(number);
+        frame.setExposureTime(number * 10);
+        return writer.submit(frame);
+    }
+
+    @Test
+    public void writesEveryFrameFromAnotherThread() {
+        CheckingSink sink = new CheckingSink(new CountDownLatch(0));
+        FrameMetadataWriter writer = new FrameMetadataWriter(sink, 16);
+        writer.start();
+        int submitted = 0;
+        for (long i = 0; i < 100000; ++i) {
+            if (submit(writer, i)) {
+                ++submitted;
+            }
+            if (i % 64 == 0) {
+                Thread.yield();
+            }
+        }
+        writer.stop();
+        assertTrue(sink.mClosed);
+        assertEquals(submitted, sink.mWritten);
+        assertEquals(100000 - submitted, writer.getDropCount());
+        assertEquals(0, writer.getWriteErrorCount());
+    }
+
+    @Test
+    public void dropsFramesWhileTheSinkStalls() {
+        CountDownLatch stall = new CountDownLatch(1);
+        CheckingSink sink = new CheckingSink(stall);
+        FrameMetadataWriter writer = new FrameMetadataWriter(sink, 4);
+        writer.start();
+        // a batch keeps its slots until it is written, so the stalled writer frees none
+        int submitted = 0;
+        for (long i = 0; i < 20; ++i) {
+            if (submit(writer, i)) {
+                ++submitted;
+            }
+        }
+        assertEquals(4, submitted);
+        assertEquals(16, writer.getDropCount());
+        assertEquals(4, writer.getQueue().getHighWaterMark());
+
+        stall.countDown();
+        writer.stop();
+        assertEquals(submitted, sink.mWritten);
+    }
+
+    @Test
+    public void fillsOneRecordOverTheLifeOfAFrame() {
+        final long[] timestamps = new long[8];
+        CheckingSink sink = new CheckingSink(new CountDownLatch(0)) {
+            @Override
+            public void write(FrameMetadata frame) {
+                super.write(frame);
+                timestamps[(int) frame.getFrameNumber()] =
+                        frame.has(FrameMetadata.TIMESTAMP) ? frame.getTimestamp() : -1;
+            }
+        };
+        FrameMetadataWriter writer = new FrameMetadataWriter(sink, 16,
+                FrameMetadataSchema.EMPTY, 4);
+        writer.start();
+        // frames 0 to 2 are in flight at once
+        for (long i = 0; i < 3; ++i) {
+            assertNotNull(writer.begin(i, 1000 + i));
+        }
+        assertNull(writer.pending(3));
+        writer.pending(1).setExposureTime(10L);
+        writer.abandon(2);
+        assertNull(writer.pending(2));
+        for (long i = 0; i < 2; ++i) {
+            FrameMetadata frame = writer.complete(i);
+            assertEquals(1000 + i, frame.getTimestamp());
+            assertEquals(i == 1, frame.has(FrameMetadata.EXPOSURE_TIME));
+            frame.setExposureTime(i * 10);
+            assertTrue(writer.submit(frame));
+        }
+        // a frame that did not begin gets a cleared record
+        FrameMetadata frame = writer.complete(3);
+        assertFalse(frame.has(FrameMetadata.TIMESTAMP));
+        frame.setFrameNumber(3);
+        frame.setExposureTime(30L);
+        assertTrue(writer.submit(frame));
+        // frame 4 shares its slot with frame 8, which evicts it
+        assertNotNull(writer.begin(4, 1004));
+        assertNotNull(writer.begin(8, 1008));
+        assertNull(writer.pending(4));
+        frame = writer.complete(4);
+        assertFalse(frame.has(FrameMetadata.TIMESTAMP));
+        writer.abandon(frame);
+        writer.abandon(8);
+
+        writer.stop();
+        assertEquals(3, sink.mWritten);
+        assertEquals(1000, timestamps[0]);
+        assertEquals(1001, timestamps[1]);
+        assertEquals(-1, timestamps[3]);
+        assertEquals(0, writer.getDropCount());
+        // every begin() reached the sink, also of the frames abandoned or evicted
+        assertEquals(Arrays.asList(0L, 1L, 2L, 4L, 8L), sink.mStarts);
+        assertEquals(0, writer.getStartDropCount());
+    }
+}
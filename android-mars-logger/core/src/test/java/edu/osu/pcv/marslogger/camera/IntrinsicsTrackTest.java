@@ -0,0 +1,99 @@
+package edu.osu.pcv.marslogger.camera;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class IntrinsicsTrackTest {
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("intrinsics", ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private static int countLines(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            int count = 0;
+            while (reader.readLine() != null) {
+                ++count;
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void writesOnlyChanges() throws IOException {
+        IntrinsicsTrackSink sink = new IntrinsicsTrackSink(mFile.getPath());
+        FrameMetadata frame = new FrameMetadata();
+        float[] intrinsics = {1500f, 1502f, 960f, 540f, 0f};
+        float[] distortion = {0.1f, -0.2f, 0.01f, 0f, 0f, 0f};
+        for (int number = 10; number < 1010; ++number) {
+            frame.clear();
+            frame.setFrameNumber(number);
+            frame.setTimestamp(number * 33000000L);
+            if (number < 20) {
+                // no calibration yet, only the estimate
+                frame.setFocalLengthPixel(1480f, 1480f);
+            } else {
+                // refocusing at frame 500 changes fx and fy
+                intrinsics[0] = number < 500 ? 1500f : 1510f;
+                intrinsics[1] = number < 500 ? 1502f : 1512f;
+                frame.setIntrinsics(intrinsics);
+                frame.setDistortion(distortion);
+            }
+            sink.write(frame);
+        }
+        sink.close();
+        assertEquals(3, sink.getChangeCount());
+        assertEquals(4, countLines(mFile));
+
+        IntrinsicsTrackReader track = new IntrinsicsTrackReader(mFile.getPath());
+        assertEquals(3, track.getChangeCount());
+        assertFalse(track.select(9));
+        for (int number = 10; number < 1010; ++number) {
+            assertTrue(track.select(number));
+            if (number < 20) {
+                assertEquals(10, track.getFrameNumber());
+                assertEquals(1480f, track.getIntrinsic(0), 0f);
+                assertTrue(Float.isNaN(track.getIntrinsic(2)));
+                assertTrue(Float.isNaN(track.getDistortion(0)));
+            } else {
+                assertEquals(number < 500 ? 20 : 500, track.getFrameNumber());
+                assertEquals(number < 500 ? 1500f : 1510f, track.getIntrinsic(0), 0f);
+                assertEquals(number < 500 ? 1502f : 1512f, track.getIntrinsic(1), 0f);
+                assertEquals(960f, track.getIntrinsic(2), 0f);
+                assertEquals(540f, track.getIntrinsic(3), 0f);
+                assertEquals(-0.2f, track.getDistortion(1), 0f);
+            }
+        }
+        // random access, back and past the end
+        assertTrue(track.select(15));
+        assertEquals(10, track.getFrameNumber());
+        assertTrue(track.select(100000));
+        assertEquals(500, track.getFrameNumber());
+        assertEquals(500 * 33000000L, track.getTimestamp());
+        assertFalse(track.select(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        new CsvFrameMetadataSink(mFile.getPath()).close();
+        new IntrinsicsTrackReader(mFile.getPath());
+    }
+}
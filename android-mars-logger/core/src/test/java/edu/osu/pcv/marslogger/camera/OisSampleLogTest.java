@@ -0,0 +1,97 @@
+package edu.osu.pcv.marslogger.camera;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class OisSampleLogTest {
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("ois", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private static void fill(FrameMetadata frame, long number, int sampleCount) {
+        frame.clear();
+        frame.setFrameNumber(number);
+        frame.setTimestamp(number * 33000000L);
+        for (int i = 0; i < sampleCount; ++i) {
+            frame.addOisSample(number * 33000000L + i * 1000L, i * 0.25f, -i);
+        }
+    }
+
+    @Test
+    public void framesRoundTrip() throws IOException {
+        // one record, reused as the pool would, grows to the largest frame
+        FrameMetadata frame = new FrameMetadata();
+        BinaryOisSampleSink sink = new BinaryOisSampleSink(mFile.getPath());
+        int[] counts = {3, 0, 8000, 1};
+        for (int number = 0; number < counts.length; ++number) {
+            fill(frame, number, counts[number]);
+            sink.write(frame);
+        }
+        frame.clear();
+        frame.setFrameNumber(4);
+        frame.addOisSample(5, 1f, 2f);
+        sink.write(frame);
+        sink.close();
+        assertEquals(BinaryOisSampleSink.HEADER_LENGTH +
+                        4 * BinaryOisSampleSink.FRAME_HEADER_SIZE +
+                        8005 * BinaryOisSampleSink.SAMPLE_SIZE, mFile.length());
+
+        OisSampleReader reader = new OisSampleReader(mFile.getPath());
+        for (int number = 0; number < counts.length; ++number) {
+            if (counts[number] == 0) {
+                continue;
+            }
+            assertTrue(reader.next());
+            assertEquals(number, reader.getFrameNumber());
+            assertEquals(number * 33000000L, reader.getFrameTimestamp());
+            assertEquals(counts[number], reader.getSampleCount());
+            int last = counts[number] - 1;
+            assertEquals(number * 33000000L + last * 1000L, reader.getTimestamp(last));
+            assertEquals(last * 0.25f, reader.getXShift(last), 0f);
+            assertEquals(-last, reader.getYShift(last), 0f);
+        }
+        assertTrue(reader.next());
+        assertEquals(4, reader.getFrameNumber());
+        assertEquals(-1, reader.getFrameTimestamp());
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void stopsBeforeAPartialFrame() throws IOException {
+        FrameMetadata frame = new FrameMetadata();
+        BinaryOisSampleSink sink = new BinaryOisSampleSink(mFile.getPath());
+        fill(frame, 1, 4);
+        sink.write(frame);
+        fill(frame, 2, 4);
+        sink.write(frame);
+        sink.close();
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(file.length() - 3);
+        } finally {
+            file.close();
+        }
+
+        OisSampleReader reader = new OisSampleReader(mFile.getPath());
+        assertTrue(reader.next());
+        assertEquals(1, reader.getFrameNumber());
+        assertFalse(reader.next());
+        reader.close();
+    }
+}
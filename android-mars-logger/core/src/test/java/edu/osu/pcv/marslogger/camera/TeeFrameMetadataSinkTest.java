@@ -0,0 +1,86 @@
+package edu.osu.pcv.marslogger.camera;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TeeFrameMetadataSinkTest {
+    // counts the calls, failing each of them if asked to
+    private static class CountingSink implements FrameMetadataSink {
+        final boolean mFail;
+        int mWritten;
+        int mStarted;
+        int mFlushed;
+        int mClosed;
+
+        CountingSink(boolean fail) {
+            mFail = fail;
+        }
+
+        private void call() throws IOException {
+            if (mFail) {
+                throw new IOException("failing sink");
+            }
+        }
+
+        @Override
+        public void write(FrameMetadata frame) throws IOException {
+            ++mWritten;
+            call();
+        }
+
+        @Override
+        public void writeStart(long frameNumber, long timestamp) throws IOException {
+            ++mStarted;
+            call();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            ++mFlushed;
+            call();
+        }
+
+        @Override
+        public void close() throws IOException {
+            ++mClosed;
+            call();
+        }
+    }
+
+    @Test
+    public void failureOfOneSinkReachesTheOthers() throws IOException {
+        CountingSink first = new CountingSink(true);
+        CountingSink second = new CountingSink(false);
+        CountingSink third = new CountingSink(true);
+        TeeFrameMetadataSink tee = new TeeFrameMetadataSink(first, second, third);
+        try {
+            tee.write(new FrameMetadata());
+            fail("expected the failure of a sink");
+        } catch (IOException expected) {
+        }
+        try {
+            tee.writeStart(0, 0);
+            fail("expected the failure of a sink");
+        } catch (IOException expected) {
+        }
+        try {
+            tee.flush();
+            fail("expected the failure of a sink");
+        } catch (IOException expected) {
+        }
+        try {
+            tee.close();
+            fail("expected the failure of a sink");
+        } catch (IOException expected) {
+        }
+        for (CountingSink sink : new CountingSink[]{first, second, third}) {
+            assertEquals(1, sink.mWritten);
+            assertEquals(1, sink.mStarted);
+            assertEquals(1, sink.mFlushed);
+            assertEquals(1, sink.mClosed);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package edu.osu.pcv.marslogger.imu;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class BinaryInertialLogTest {
+    private static final int NUM_SAMPLES = 10000;
+
+    private static void writeSamples(InertialSink sink) throws IOException {
+        float[] values = new float[CsvInertialSink.CHANNEL_NAMES.length];
+        for (int i = 0; i < NUM_SAMPLES; ++i) {
+            for (int index = 0; index < values.length; ++index) {
+                values[index] = (float) Math.sin(0.001 * i + index) * (index < 3 ? 1 : 9.81f);
+            }
+            sink.write(1000000000L + 5000000L * i, values, 0);
+        }
+        sink.close();
+    }
+
+    @Test
+    public void convertedLogMatchesCsvOutput() throws IOException {
+        File csv = File.createTempFile("gyro_accel", ".csv");
+        File bin = File.createTempFile("gyro_accel", ".bin");
+        File converted = File.createTempFile("converted", ".csv");
+        try {
+            writeSamples(new CsvInertialSink(csv.getPath()));
+            writeSamples(new BinaryInertialSink(bin.getPath(), CsvInertialSink.CHANNEL_NAMES));
+            assertEquals(NUM_SAMPLES, InertialBinaryToCsv.convert(bin.getPath(), converted.getPath()));
+            assertArrayEquals(Files.readAllBytes(csv.toPath()),
+                    Files.readAllBytes(converted.toPath()));
+            assertTrue(bin.length() * 2 < csv.length());
+        } finally {
+            csv.delete();
+            bin.delete();
+            converted.delete();
+        }
+    }
+
+    @Test
+    public void readerStopsAtPartialRecord() throws IOException {
+        File bin = File.createTempFile("gyro_accel", ".bin");
+        try {
+            writeSamples(new BinaryInertialSink(bin.getPath(), CsvInertialSink.CHANNEL_NAMES));
+            RandomAccessFile file = new RandomAccessFile(bin, "rw");
+            file.setLength(file.length() - 5);
+            file.close();
+
+            InertialBinaryReader reader = new InertialBinaryReader(bin.getPath());
+            assertEquals(BinaryInertialSink.VERSION, reader.getVersion());
+            assertEquals("gz[m/s^2]", reader.getChannelNames()[5]);
+            int count = 0;
+            long lastTimestamp = 0;
+            while (reader.next()) {
+                lastTimestamp = reader.getTimestamp();
+                ++count;
+            }
+            reader.close();
+            assertEquals(NUM_SAMPLES - 1, count);
+            assertEquals(1000000000L + 5000000L * (NUM_SAMPLES - 2), lastTimestamp);
+            assertEquals(BinaryInertialSink.recordSize(6) - 5, reader.getTrailingByteCount());
+        } finally {
+            bin.delete();
+        }
+    }
+}
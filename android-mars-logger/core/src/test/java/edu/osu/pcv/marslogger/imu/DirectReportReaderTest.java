@@ -0,0 +1,102 @@
+package edu.osu.pcv.marslogger.imu;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class DirectReportReaderTest {
+    private static final int ACCEL_TOKEN = 1;
+    private static final int GYRO_TOKEN = 2;
+    private static final int OTHER_TOKEN = 3;
+    private static final long PERIOD_NS = 1250000; // 800 Hz
+
+    private File mFile;
+    private FileReportRing mRing;
+    private final InertialSynchronizer mSynchronizer = new InertialSynchronizer(256);
+    private final InertialStreamStats mStats = new InertialStreamStats();
+    private final InertialPipeline mPipeline = new InertialPipeline(mSynchronizer, mStats);
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("direct_channel", ".bin");
+        mRing = new FileReportRing(mFile, 32);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mRing.close();
+        mFile.delete();
+    }
+
+    // writes the gyro samples [first, first + count) with their accel neighbors
+    private void writeSamples(int first, int count) throws IOException {
+        for (int i = first; i < first + count; ++i) {
+            long time = i * PERIOD_NS;
+            mRing.write(GYRO_TOKEN, 4, time, i, 0f, 0f);
+            mRing.write(ACCEL_TOKEN, 1, time + PERIOD_NS / 2, 0f, 0f, i);
+        }
+    }
+
+    @Test
+    public void decodesEventsAcrossTheRingWrap() throws IOException {
+        DirectReportReader reader =
+                new DirectReportReader(mRing, ACCEL_TOKEN, GYRO_TOKEN, mPipeline);
+        assertEquals(0, reader.poll(1000));
+
+        int synced = 0;
+        // 10 events per round trip through a ring of 32 slots
+        for (int round = 0; round < 20; ++round) {
+            writeSamples(round * 5, 5);
+            assertEquals(10, reader.poll(1000));
+            synced += mPipeline.syncAll();
+        }
+        assertEquals(0, reader.poll(1000));
+        assertEquals(200, reader.getEventCount());
+        assertEquals(0, reader.getLostEventCount());
+        // only the first gyro sample, which precedes all accel samples, is dropped
+        assertEquals(99, synced);
+        assertEquals(99 * PERIOD_NS, mSynchronizer.getSyncedTimestamp());
+        assertEquals(99f, mSynchronizer.getSyncedValues()[0], 0f);
+        InertialStreamStats.Snapshot snapshot = new InertialStreamStats.Snapshot();
+        mStats.snapshot(snapshot);
+        assertEquals(100, snapshot.getCount(InertialStreamStats.SENSOR_GYRO));
+        assertEquals(1, snapshot.getDropCount(InertialStreamStats.SENSOR_GYRO));
+        assertEquals(99, snapshot.getSyncedCount());
+    }
+
+    @Test
+    public void skipsOtherSensorsAndHonorsTheEventLimit() throws IOException {
+        DirectReportReader reader =
+                new DirectReportReader(mRing, ACCEL_TOKEN, GYRO_TOKEN, mPipeline);
+        mRing.write(OTHER_TOKEN, 2, 0, 1f, 2f, 3f);
+        writeSamples(0, 4);
+        assertEquals(5, reader.poll(5));
+        writeSamples(4, 4);
+        assertEquals(3, reader.poll(3));
+        assertEquals(9, reader.poll(1000));
+        assertEquals(0, reader.poll(1000));
+        assertEquals(7, mPipeline.syncAll());
+    }
+
+    @Test
+    public void countsEventsOverwrittenBeforeTheyWereRead() throws IOException {
+        DirectReportReader reader =
+                new DirectReportReader(mRing, ACCEL_TOKEN, GYRO_TOKEN, mPipeline);
+        writeSamples(0, 4);
+        assertEquals(8, reader.poll(1000));
+        // counters 9 to 88 into a ring of 32, the reader is lapped twice and resumes at
+        // its slot with counter 73, the rest of the latest lap runs up to counter 88
+        writeSamples(4, 40);
+        assertEquals(16, reader.poll(1000));
+        assertEquals(73 - 9, reader.getLostEventCount());
+        writeSamples(44, 2);
+        assertEquals(4, reader.poll(1000));
+        assertEquals(0, reader.poll(1000));
+        assertEquals(8 + 16 + 4, reader.getEventCount());
+    }
+}
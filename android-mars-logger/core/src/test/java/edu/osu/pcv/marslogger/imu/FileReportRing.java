@@ -0,0 +1,63 @@
+package edu.osu.pcv.marslogger.imu;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Stands in for the shared memory of a sensor direct channel, writing events the way the
+ * sensor HAL does into a plain file.
+ */
+class FileReportRing implements DirectReportRing {
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mSlotCount;
+    private final ByteBuffer mEvent =
+            ByteBuffer.allocate(DirectReportReader.EVENT_SIZE).order(ByteOrder.nativeOrder());
+    private int mCounter = 0;
+
+    FileReportRing(File file, int slotCount) throws IOException {
+        mFile = new RandomAccessFile(file, "rw");
+        mFile.setLength((long) slotCount * DirectReportReader.EVENT_SIZE);
+        mChannel = mFile.getChannel();
+        mSlotCount = slotCount;
+    }
+
+    @Override
+    public int length() {
+        return mSlotCount * DirectReportReader.EVENT_SIZE;
+    }
+
+    @Override
+    public void read(int offset, byte[] dst, int dstOffset, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(dst, dstOffset, count);
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer, offset + buffer.position() - dstOffset) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+    }
+
+    void write(int token, int sensorType, long timestamp, float x, float y, float z)
+            throws IOException {
+        if (++mCounter == 0) {
+            mCounter = 1;
+        }
+        mEvent.clear();
+        mEvent.putInt(DirectReportReader.EVENT_SIZE).putInt(token).putInt(sensorType)
+                .putInt(mCounter).putLong(timestamp).putFloat(x).putFloat(y).putFloat(z);
+        while (mEvent.position() < DirectReportReader.EVENT_SIZE) {
+            mEvent.put((byte) 0);
+        }
+        mEvent.flip();
+        long slot = (mCounter - 1L) % mSlotCount;
+        mChannel.write(mEvent, slot * DirectReportReader.EVENT_SIZE);
+    }
+
+    void close() throws IOException {
+        mFile.close();
+    }
+}
@@ -0,0 +1,97 @@
+package edu.osu.pcv.marslogger.imu;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class InertialReplayTest {
+    private static final long PERIOD_NS = 5000000; // 200 Hz
+    private static final int SAMPLE_COUNT = 2000;
+
+    private File mGolden;
+    private File mOutput;
+
+    @Before
+    public void setUp() throws IOException {
+        mGolden = File.createTempFile("golden", ".csv");
+        mOutput = File.createTempFile("replayed", ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        mGolden.delete();
+        mOutput.delete();
+    }
+
+    // writes a synced log the way the app does
+    private void writeGolden(String[] channelNames) throws IOException {
+        CsvInertialSink sink = new CsvInertialSink(mGolden.getPath(), channelNames);
+        float[] values = new float[channelNames.length];
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            for (int channel = 0; channel < values.length; ++channel) {
+                values[channel] = (float) Math.sin(i * 0.01 + channel) * (channel + 1);
+            }
+            sink.write(1000000000L + i * PERIOD_NS + i % 7, values, 0);
+        }
+        sink.close();
+    }
+
+    private InertialReplay.Result replay() throws IOException {
+        CsvEventSource source = new CsvEventSource(mGolden.getPath(),
+                StreamSynchronizer.STREAM_GYRO);
+        try {
+            StreamSynchronizer synchronizer =
+                    InertialReplay.createSynchronizer(source, StreamSynchronizer.STREAM_GYRO);
+            InertialReplay replay = new InertialReplay(source, synchronizer);
+            return replay.run(new CsvInertialSink(mOutput.getPath(),
+                    synchronizer.getChannelNames()));
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test
+    public void replayOfAGyroAccelLogReproducesIt() throws IOException {
+        writeGolden(CsvInertialSink.CHANNEL_NAMES);
+        InertialReplay.Result result = replay();
+        assertEquals(2 * SAMPLE_COUNT, result.getSampleCount());
+        assertEquals(SAMPLE_COUNT, result.getSyncedCount());
+        assertTrue(result.getThroughput() > 0);
+        assertEquals(-1, InertialReplay.compareFiles(mOutput.getPath(), mGolden.getPath()));
+    }
+
+    @Test
+    public void replayOfAMotionSensorLogReproducesIt() throws IOException {
+        writeGolden(new String[]{"ax[rad/s]", "ay[rad/s]", "az[rad/s]",
+                "gx[m/s^2]", "gy[m/s^2]", "gz[m/s^2]", "mx[uT]", "my[uT]", "mz[uT]",
+                "pressure[hPa]"});
+        InertialReplay.Result result = replay();
+        assertEquals(3 * SAMPLE_COUNT, result.getSampleCount());
+        assertEquals(SAMPLE_COUNT, result.getSyncedCount());
+        assertEquals(-1, InertialReplay.compareFiles(mOutput.getPath(), mGolden.getPath()));
+    }
+
+    @Test
+    public void reportsTheFirstDifferentByte() throws IOException {
+        writeGolden(CsvInertialSink.CHANNEL_NAMES);
+        replay();
+        RandomAccessFile file = new RandomAccessFile(mOutput, "rw");
+        long length = file.length();
+        file.seek(length - 2);
+        int last = file.read();
+        file.seek(length - 2);
+        file.write(last == '1' ? '2' : '1');
+        assertEquals(length - 2,
+                InertialReplay.compareFiles(mOutput.getPath(), mGolden.getPath()));
+        file.setLength(length - 10);
+        file.close();
+        assertEquals(length - 10,
+                InertialReplay.compareFiles(mOutput.getPath(), mGolden.getPath()));
+    }
+}
@@ -0,0 +1,80 @@
+package edu.osu.pcv.marslogger.imu;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class InertialStreamStatsTest {
+    private static final long PERIOD_NS = 5000000; // 200 Hz
+
+    @Test
+    public void tracksCountsGapsAndAccuracy() {
+        InertialStreamStats stats = new InertialStreamStats();
+        for (int i = 0; i < 100; ++i) {
+            stats.onSample(InertialStreamStats.SENSOR_GYRO, i * PERIOD_NS);
+        }
+        // a 40 ms gap and a repeated timestamp
+        stats.onSample(InertialStreamStats.SENSOR_GYRO, 139 * PERIOD_NS);
+        stats.onSample(InertialStreamStats.SENSOR_GYRO, 139 * PERIOD_NS);
+        stats.onDropped(InertialStreamStats.SENSOR_ACCEL, 3);
+        stats.onAccuracyChanged(InertialStreamStats.SENSOR_GYRO, 3);
+        stats.onAccuracyChanged(InertialStreamStats.SENSOR_GYRO, 2);
+        stats.onSynced();
+
+        InertialStreamStats.Snapshot snapshot = new InertialStreamStats.Snapshot();
+        stats.snapshot(snapshot);
+        int gyro = InertialStreamStats.SENSOR_GYRO;
+        assertEquals(102, snapshot.getCount(gyro));
+        assertEquals(40 * PERIOD_NS, snapshot.getMaxGapNs(gyro));
+        assertEquals(1, snapshot.getOutOfOrderCount(gyro));
+        // 5000 us falls in [4096, 8192), 200000 us in [131072, 262144)
+        assertEquals(99, snapshot.getHistogramCount(gyro, 12));
+        assertEquals(1, snapshot.getHistogramCount(gyro, 17));
+        assertEquals(101 * 1e9 / (139 * PERIOD_NS), snapshot.getRateHz(gyro), 1e-9);
+        assertEquals(2, snapshot.getAccuracy(gyro));
+        assertEquals(1, snapshot.getAccuracyChangeCount(gyro));
+        assertEquals(3, snapshot.getDropCount(InertialStreamStats.SENSOR_ACCEL));
+        assertEquals(-1, snapshot.getAccuracy(InertialStreamStats.SENSOR_ACCEL));
+        assertEquals(1, snapshot.getSyncedCount());
+        assertTrue(snapshot.toJson().contains("\"max_gap_ns\": 200000000"));
+
+        stats.requestReset();
+        stats.onSample(InertialStreamStats.SENSOR_ACCEL, 0);
+        stats.snapshot(snapshot);
+        assertEquals(0, snapshot.getCount(gyro));
+        assertEquals(1, snapshot.getCount(InertialStreamStats.SENSOR_ACCEL));
+    }
+
+    @Test
+    public void snapshotsAreConsistentWhileUpdating() throws InterruptedException {
+        final InertialStreamStats stats = new InertialStreamStats();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (long i = 0; !done.get(); ++i) {
+                    stats.onSample(InertialStreamStats.SENSOR_GYRO, i * PERIOD_NS);
+                }
+            }
+        });
+        writer.start();
+        InertialStreamStats.Snapshot snapshot = new InertialStreamStats.Snapshot();
+        try {
+            for (int i = 0; i < 20000; ++i) {
+                stats.snapshot(snapshot);
+                long count = snapshot.getCount(InertialStreamStats.SENSOR_GYRO);
+                long intervals = 0;
+                for (int bin = 0; bin < InertialStreamStats.HISTOGRAM_BINS; ++bin) {
+                    intervals += snapshot.getHistogramCount(InertialStreamStats.SENSOR_GYRO, bin);
+                }
+                // every sample after the first adds one interval
+                assertEquals(Math.max(count - 1, 0), intervals);
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package edu.osu.pcv.marslogger.imu;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the synchronizer with a synthetic 1 kHz gyro and accelerometer stream.
+ */
+public class InertialSynchronizerTest {
+    private static final long PERIOD_NS = 1000000; // 1 kHz
+    private static final long ACCEL_OFFSET_NS = 300000;
+    private static final int WARM_UP_SAMPLES = 20000;
+    private static final int MEASURED_SAMPLES = 60000;
+
+    // small deterministic jitter so that the accel never lands on the gyro grid
+    private static long accelTime(int i) {
+        return i * PERIOD_NS + ACCEL_OFFSET_NS + (i % 7) * 10000;
+    }
+
+    // Replays numSamples gyro samples and their accel neighbors in timestamp order,
+    // returning the number of synced samples.
+    private static int feed(InertialSynchronizer synchronizer, int firstSample, int numSamples,
+                            float[] values) {
+        int synced = 0;
+        for (int i = firstSample; i < firstSample + numSamples; ++i) {
+            long gyroTime = i * PERIOD_NS;
+            values[0] = i;
+            values[1] = -i;
+            values[2] = 0.5f * i;
+            synchronizer.addGyro(gyroTime, values);
+            if (synchronizer.sync() == InertialSynchronizer.RESULT_SYNCED) {
+                ++synced;
+            }
+            synchronizer.addAccel(accelTime(i), values);
+        }
+        return synced;
+    }
+
+    @Test
+    public void syncsEveryGyroSampleInsideTheAccelRange() {
+        InertialSynchronizer synchronizer = new InertialSynchronizer(64);
+        float[] values = new float[3];
+        // the first gyro sample, which precedes all accel samples, is dropped once the
+        // first accel sample arrives, and as each call syncs one gyro sample, one gyro
+        // sample stays queued for the rest of the stream
+        int synced = feed(synchronizer, 0, 1000, values);
+        assertEquals(998, synced);
+        assertEquals(998 * PERIOD_NS, synchronizer.getSyncedTimestamp());
+        float[] syncedValues = synchronizer.getSyncedValues();
+        assertEquals(998f, syncedValues[0], 0f);
+        assertEquals(-998f, syncedValues[1], 0f);
+        assertEquals(499f, syncedValues[2], 0f);
+        // gyro sample i lies between accel samples i - 1 and i
+        long left = accelTime(997);
+        long right = accelTime(998);
+        float expected = 997f + (float) (998 * PERIOD_NS - left) / (right - left);
+        assertEquals(expected, syncedValues[3], 1e-4f);
+    }
+
+    @Test
+    public void syncsGyroToAccelTimestamps() {
+        InertialSynchronizer synchronizer = new InertialSynchronizer(
+                64, InertialSynchronizer.REFERENCE_ACCEL, new LinearInterpolator());
+        float[] values = new float[3];
+        int synced = 0;
+        for (int i = 0; i < 100; ++i) {
+            values[0] = i;
+            synchronizer.addGyro(i * PERIOD_NS, values);
+            synchronizer.addAccel(accelTime(i), values);
+            if (synchronizer.sync() == InertialSynchronizer.RESULT_SYNCED) {
+                ++synced;
+            }
+        }
+        // accel sample i waits for gyro sample i + 1
+        assertEquals(99, synced);
+        assertEquals(accelTime(98), synchronizer.getSyncedTimestamp());
+        float[] syncedValues = synchronizer.getSyncedValues();
+        assertEquals(98f, syncedValues[3], 0f);
+        assertEquals(98f + (float) (accelTime(98) - 98 * PERIOD_NS) / PERIOD_NS,
+                syncedValues[0], 1e-4f);
+    }
+
+    @Test
+    public void holdLastSyncsWithoutWaitingForTheNextSample() {
+        InertialSynchronizer synchronizer = new InertialSynchronizer(
+                64, InertialSynchronizer.REFERENCE_GYRO, new HoldLastInterpolator());
+        float[] values = new float[3];
+        values[0] = 1f;
+        synchronizer.addAccel(0, values);
+        values[0] = 2f;
+        synchronizer.addGyro(PERIOD_NS, values);
+        assertEquals(InertialSynchronizer.RESULT_SYNCED, synchronizer.sync());
+        assertEquals(1f, synchronizer.getSyncedValues()[3], 0f);
+        assertEquals(2f, synchronizer.getSyncedValues()[0], 0f);
+    }
+
+    @Test
+    public void steadyStateDoesNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        InertialSynchronizer synchronizer = new InertialSynchronizer(64);
+        float[] values = new float[3];
+        feed(synchronizer, 0, WARM_UP_SAMPLES, values);
+
+        // calibrate for the bytes the measurement itself may allocate
+        long before = allocationBean.getThreadAllocatedBytes(threadId);
+        long overhead = allocationBean.getThreadAllocatedBytes(threadId) - before;
+
+        before = allocationBean.getThreadAllocatedBytes(threadId);
+        int synced = feed(synchronizer, WARM_UP_SAMPLES, MEASURED_SAMPLES, values);
+        long allocated = allocationBean.getThreadAllocatedBytes(threadId) - before - overhead;
+
+        assertEquals(MEASURED_SAMPLES, synced);
+        assertEquals("bytes allocated in steady state", 0, allocated);
+    }
+}
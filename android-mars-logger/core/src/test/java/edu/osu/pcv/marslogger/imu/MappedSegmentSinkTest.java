@@ -0,0 +1,105 @@
+package edu.osu.pcv.marslogger.imu;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class MappedSegmentSinkTest {
+    private static final String[] CHANNELS = CsvInertialSink.CHANNEL_NAMES;
+    private static final int RECORDS_PER_SEGMENT = 300;
+    private static final int SEGMENT_SIZE = MappedSegmentSink.headerLength(CHANNELS) +
+            RECORDS_PER_SEGMENT * BinaryInertialSink.recordSize(CHANNELS.length);
+
+    private File mDir;
+    private String mBasePath;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("segments", "");
+        mDir.delete();
+        mDir.mkdir();
+        mBasePath = new File(mDir, "gyro_accel").getPath();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : mDir.listFiles()) {
+            file.delete();
+        }
+        mDir.delete();
+    }
+
+    private static void writeRecords(InertialSink sink, int first, int count) throws IOException {
+        float[] values = new float[CHANNELS.length];
+        for (int i = first; i < first + count; ++i) {
+            values[0] = i;
+            sink.write(1000L * i, values, 0);
+        }
+    }
+
+    @Test
+    public void cleanCloseKeepsEveryRecord() throws IOException {
+        MappedSegmentSink sink = new MappedSegmentSink(mBasePath, CHANNELS, SEGMENT_SIZE);
+        writeRecords(sink, 0, 1000);
+        sink.close();
+
+        File exported = new File(mDir, "recovered.bin");
+        SegmentRecovery.Report report = SegmentRecovery.recover(mBasePath, exported.getPath());
+        assertEquals(4, report.segmentCount);
+        assertEquals(1000, report.recoveredRecords);
+        assertEquals(0, report.discardedBytes);
+        assertEquals(0, report.nonMonotonicRecords);
+
+        InertialBinaryReader reader = new InertialBinaryReader(exported.getPath());
+        int count = 0;
+        while (reader.next()) {
+            assertEquals(1000L * count, reader.getTimestamp());
+            assertEquals((float) count, reader.getValues()[0], 0f);
+            ++count;
+        }
+        reader.close();
+        assertEquals(1000, count);
+    }
+
+    @Test
+    public void crashLosesOnlyUncommittedRecords() throws IOException {
+        MappedSegmentSink sink = new MappedSegmentSink(mBasePath, CHANNELS, SEGMENT_SIZE);
+        writeRecords(sink, 0, 1000);
+        // the app dies without closing the sink, in the middle of writing the next record
+        File lastSegment = new File(MappedSegmentSink.segmentPath(mBasePath, 3));
+        RandomAccessFile file = new RandomAccessFile(lastSegment, "rw");
+        file.seek(MappedSegmentSink.headerLength(CHANNELS) +
+                100 * BinaryInertialSink.recordSize(CHANNELS.length));
+        file.write(new byte[]{1, 2, 3, 4, 5});
+        file.close();
+
+        SegmentRecovery.Report report = SegmentRecovery.recover(mBasePath, null);
+        // three full segments, then one commit of the last one
+        int expected = 3 * RECORDS_PER_SEGMENT + MappedSegmentSink.COMMIT_INTERVAL;
+        assertEquals(expected, report.recoveredRecords);
+        assertEquals(1000L * (expected - 1), report.lastTimestamp);
+        assertEquals(MappedSegmentSink.headerLength(CHANNELS) +
+                        MappedSegmentSink.COMMIT_INTERVAL * BinaryInertialSink.recordSize(CHANNELS.length),
+                lastSegment.length());
+    }
+
+    @Test
+    public void reportsRecordsOutOfTimeOrder() throws IOException {
+        MappedSegmentSink sink = new MappedSegmentSink(mBasePath, CHANNELS, SEGMENT_SIZE);
+        writeRecords(sink, 0, 10);
+        writeRecords(sink, 5, 2);
+        writeRecords(sink, 10, 10);
+        sink.close();
+
+        SegmentRecovery.Report report = SegmentRecovery.recover(mBasePath, null);
+        assertEquals(20, report.recoveredRecords);
+        assertEquals(2, report.nonMonotonicRecords);
+        assertEquals(19000L, report.lastTimestamp);
+    }
+}
@@ -0,0 +1,126 @@
+package edu.osu.pcv.marslogger.imu;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MultiSensorSynchronizerTest {
+    private static final long MS = 1000000;
+
+    private final MultiSensorSynchronizer mSynchronizer = new MultiSensorSynchronizer(64);
+    private final int mGyro = mSynchronizer.addStream(
+            new String[]{"gx", "gy", "gz"}, new LinearInterpolator());
+    private final int mAccel = mSynchronizer.addStream(
+            new String[]{"ax", "ay", "az"}, new LinearInterpolator());
+    private final int mPressure = mSynchronizer.addStream(
+            new String[]{"pressure"}, new LinearInterpolator());
+    private final float[] mValues = new float[3];
+
+    // every stream samples the line 2 * t in milliseconds
+    private void add(int stream, long time) {
+        mValues[0] = mValues[1] = mValues[2] = 2f * time / MS;
+        mSynchronizer.add(stream, time, mValues);
+    }
+
+    private int syncAll() {
+        int synced = 0;
+        while (mSynchronizer.sync() != InertialSynchronizer.RESULT_NOT_READY) {
+            ++synced;
+        }
+        return synced;
+    }
+
+    @Test
+    public void alignsStreamsOfDifferentRates() {
+        mSynchronizer.start(mGyro);
+        assertArrayEquals(new String[]{"gx", "gy", "gz", "ax", "ay", "az", "pressure"},
+                mSynchronizer.getChannelNames());
+        assertEquals(7, mSynchronizer.getSyncedValueCount());
+        int synced = 0;
+        // gyro at 200 Hz, accel at 100 Hz and pressure at 25 Hz, each with its own phase
+        for (long time = 0; time <= 200 * MS; time += MS) {
+            if (time % (5 * MS) == 0) {
+                add(mGyro, time + 1 * MS);
+            }
+            if (time % (10 * MS) == 0) {
+                add(mAccel, time + 3 * MS);
+            }
+            if (time % (40 * MS) == 0) {
+                add(mPressure, time);
+            }
+            synced += syncAll();
+            if (synced > 0) {
+                float[] values = mSynchronizer.getSyncedValues();
+                float expected = 2f * mSynchronizer.getSyncedTimestamp() / MS;
+                for (int i = 0; i < values.length; ++i) {
+                    assertEquals(expected, values[i], 1e-3f);
+                }
+            }
+        }
+        // gyro samples are synced up to 196 ms, the last one before the last pressure
+        // sample at 200 ms
+        assertEquals(196 * MS, mSynchronizer.getSyncedTimestamp());
+    }
+
+    @Test
+    public void waitsForTheSlowestStream() {
+        mSynchronizer.start(mGyro);
+        add(mAccel, 0);
+        add(mPressure, 0);
+        for (long time = MS; time < 10 * MS; time += MS) {
+            add(mGyro, time);
+            add(mAccel, time);
+        }
+        assertEquals(InertialSynchronizer.RESULT_NOT_READY, mSynchronizer.sync());
+        add(mPressure, 5 * MS);
+        // gyro samples at 1 to 4 ms are bracketed by the pressure samples
+        assertEquals(4, syncAll());
+        assertEquals(4 * MS, mSynchronizer.getSyncedTimestamp());
+    }
+
+    @Test
+    public void dropsReferenceSamplesBeforeEveryStreamStarted() {
+        mSynchronizer.start(mGyro);
+        add(mGyro, MS);
+        add(mAccel, 2 * MS);
+        add(mPressure, 0);
+        add(mGyro, 3 * MS);
+        add(mAccel, 4 * MS);
+        add(mPressure, 4 * MS);
+        assertEquals(InertialSynchronizer.RESULT_REFERENCE_DROPPED, mSynchronizer.sync());
+        assertEquals(InertialSynchronizer.RESULT_SYNCED, mSynchronizer.sync());
+        assertEquals(3 * MS, mSynchronizer.getSyncedTimestamp());
+        assertEquals(InertialSynchronizer.RESULT_NOT_READY, mSynchronizer.sync());
+    }
+
+    @Test
+    public void stalledStreamHoldsItsLastValue() {
+        mSynchronizer.start(mGyro);
+        add(mPressure, 0);
+        int synced = 0;
+        for (long time = 0; time < 100 * MS; time += MS) {
+            add(mGyro, time);
+            add(mAccel, time);
+            synced += syncAll();
+        }
+        // syncing resumes once half of the 64 gyro slots are waiting, and keeps 31 waiting
+        assertEquals(100 - 31, synced);
+        assertEquals(0f, mSynchronizer.getSyncedValues()[6], 0f);
+        assertEquals(2f * mSynchronizer.getSyncedTimestamp() / MS,
+                mSynchronizer.getSyncedValues()[3], 1e-3f);
+    }
+
+    @Test
+    public void padsShortSamplesWithNaN() {
+        MultiSensorSynchronizer synchronizer = new MultiSensorSynchronizer(8);
+        int reference = synchronizer.addStream(new String[]{"x"}, new LinearInterpolator());
+        int rotation = synchronizer.addStream(
+                new String[]{"qx", "qy", "qz", "qw"}, new HoldLastInterpolator());
+        synchronizer.start(reference);
+        synchronizer.add(rotation, 0, new float[]{1f, 2f, 3f});
+        synchronizer.add(reference, 1, new float[]{5f});
+        assertEquals(InertialSynchronizer.RESULT_SYNCED, synchronizer.sync());
+        assertArrayEquals(new float[]{5f, 1f, 2f, 3f, Float.NaN},
+                synchronizer.getSyncedValues(), 0f);
+    }
+}
@@ -0,0 +1,146 @@
+package edu.osu.pcv.marslogger.imu;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class RawEventLogTest {
+    private static final int TYPE_MAGNETIC_FIELD = 2;
+    private static final long PERIOD_NS = 5000000; // 200 Hz
+
+    private File mRawFile;
+    private File mSyncedFile;
+    private File mReplayedFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mRawFile = File.createTempFile("raw", ".bin");
+        mSyncedFile = File.createTempFile("synced", ".csv");
+        mReplayedFile = File.createTempFile("replayed", ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        mRawFile.delete();
+        mSyncedFile.delete();
+        mReplayedFile.delete();
+    }
+
+    @Test
+    public void eventsRoundTrip() throws IOException {
+        BinaryRawEventSink sink = new BinaryRawEventSink(mRawFile.getPath());
+        float[] values = {1f, -2.5f, Float.NaN, 4f, 5f, 6f};
+        for (int i = 0; i < 10000; ++i) {
+            values[0] = i;
+            sink.write(i % 3 + 1, 1000L * i, values, 0, i % 7);
+        }
+        sink.close();
+        assertEquals(8 + 10000 * 12 + 4 * 29994, mRawFile.length());
+
+        RawEventReader reader = new RawEventReader(mRawFile.getPath());
+        for (int i = 0; i < 10000; ++i) {
+            assertTrue(reader.next());
+            assertEquals(i % 3 + 1, reader.getSensorType());
+            assertEquals(1000L * i, reader.getTimestamp());
+            assertEquals(i % 7, reader.getValueCount());
+            if (i % 7 > 2) {
+                assertEquals(i, reader.getValues()[0], 0f);
+                assertTrue(Float.isNaN(reader.getValues()[2]));
+            }
+        }
+        assertFalse(reader.next());
+        assertEquals(0, reader.getTrailingByteCount());
+        reader.close();
+    }
+
+    @Test
+    public void stopsBeforeAPartialEvent() throws IOException {
+        BinaryRawEventSink sink = new BinaryRawEventSink(mRawFile.getPath());
+        float[] values = {1f, 2f, 3f};
+        sink.write(RawEventSource.TYPE_GYROSCOPE, 1, values, 0, 3);
+        sink.write(RawEventSource.TYPE_GYROSCOPE, 2, values, 0, 3);
+        sink.close();
+        RandomAccessFile file = new RandomAccessFile(mRawFile, "rw");
+        file.setLength(file.length() - 5);
+        file.close();
+
+        RawEventReader reader = new RawEventReader(mRawFile.getPath());
+        assertTrue(reader.next());
+        assertFalse(reader.next());
+        assertEquals(19, reader.getTrailingByteCount());
+        reader.close();
+    }
+
+    // records through a pipeline as IMUManager does, with an extra magnetometer event
+    private void record() throws IOException {
+        InertialSynchronizer synchronizer = new InertialSynchronizer(256);
+        InertialPipeline pipeline = new InertialPipeline(synchronizer, new InertialStreamStats());
+        pipeline.startRecording(new CsvInertialSink(mSyncedFile.getPath()),
+                new BinaryRawEventSink(mRawFile.getPath()), 4096);
+        float[] gyro = new float[3];
+        float[] accel = new float[3];
+        float[] magnetic = {20f, -5f, 40f};
+        for (int i = 0; i < 1000; ++i) {
+            long accelTime = i * PERIOD_NS + 1700000;
+            accel[2] = (float) Math.cos(i * 0.05) * 9.81f;
+            pipeline.capture(RawEventSource.TYPE_ACCELEROMETER, accelTime, accel);
+            pipeline.add(StreamSynchronizer.STREAM_ACCEL, accelTime, accel);
+            long gyroTime = i * PERIOD_NS + 2500000;
+            gyro[0] = (float) Math.sin(i * 0.05);
+            pipeline.capture(RawEventSource.TYPE_GYROSCOPE, gyroTime, gyro);
+            if (pipeline.add(StreamSynchronizer.STREAM_GYRO, gyroTime, gyro)) {
+                pipeline.syncOnce();
+            }
+            if (i % 20 == 0) {
+                pipeline.capture(TYPE_MAGNETIC_FIELD, gyroTime, magnetic);
+            }
+        }
+        pipeline.syncAll();
+        pipeline.stopRecording();
+        assertEquals(0, pipeline.getRawEventQueue().getOverflowCount());
+    }
+
+    @Test
+    public void writerThreadCapturesEveryEvent() throws IOException {
+        record();
+        RawEventReader reader = new RawEventReader(mRawFile.getPath());
+        int[] counts = new int[5];
+        long lastGyroTime = 0;
+        while (reader.next()) {
+            ++counts[reader.getSensorType()];
+            if (reader.getSensorType() == RawEventSource.TYPE_GYROSCOPE) {
+                lastGyroTime = reader.getTimestamp();
+            }
+        }
+        reader.close();
+        assertEquals(1000, counts[RawEventSource.TYPE_ACCELEROMETER]);
+        assertEquals(1000, counts[RawEventSource.TYPE_GYROSCOPE]);
+        assertEquals(50, counts[TYPE_MAGNETIC_FIELD]);
+        assertEquals(999 * PERIOD_NS + 2500000, lastGyroTime);
+    }
+
+    @Test
+    public void replayOfTheRawEventsReproducesTheSyncedLog() throws IOException {
+        record();
+        SensorEventSource source = InertialReplay.openSource(mRawFile.getPath(),
+                StreamSynchronizer.STREAM_GYRO);
+        try {
+            assertTrue(source instanceof RawEventSource);
+            StreamSynchronizer synchronizer =
+                    InertialReplay.createSynchronizer(source, StreamSynchronizer.STREAM_GYRO);
+            InertialReplay.Result result = new InertialReplay(source, synchronizer).run(
+                    new CsvInertialSink(mReplayedFile.getPath()));
+            assertEquals(2000, result.getSampleCount());
+        } finally {
+            source.close();
+        }
+        assertEquals(-1, InertialReplay.compareFiles(mReplayedFile.getPath(),
+                mSyncedFile.getPath()));
+    }
+}
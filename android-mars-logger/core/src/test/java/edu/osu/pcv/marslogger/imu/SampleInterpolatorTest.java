@@ -0,0 +1,89 @@
+package edu.osu.pcv.marslogger.imu;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how well each interpolator recovers an analytic signal from jittery samples.
+ */
+public class SampleInterpolatorTest {
+    static final long PERIOD_NS = 5000000; // 200 Hz
+    static final long JITTER_NS = 200000;
+    // a 3 Hz sinusoid, about the fastest motion of a handheld phone
+    static final double FREQUENCY_HZ = 3.0;
+
+    static double signal(long timeNs, int axis) {
+        return Math.sin(2 * Math.PI * FREQUENCY_HZ * timeNs * 1e-9 + axis);
+    }
+
+    /**
+     * Syncs a sampled sinusoid at a second, offset sample clock.
+     *
+     * @return RMS error of the synced values against the signal
+     */
+    static double rmsError(SampleInterpolator interpolator, int numSamples) {
+        InertialSynchronizer synchronizer = new InertialSynchronizer(
+                64, InertialSynchronizer.REFERENCE_GYRO, interpolator);
+        Random random = new Random(3);
+        float[] values = new float[3];
+        double squaredError = 0;
+        int synced = 0;
+        for (int i = 0; i < numSamples; ++i) {
+            long accelTime = i * PERIOD_NS + (long) (random.nextGaussian() * JITTER_NS);
+            for (int axis = 0; axis < 3; ++axis) {
+                values[axis] = (float) signal(accelTime, axis);
+            }
+            synchronizer.addAccel(accelTime, values);
+            synchronizer.addGyro(i * PERIOD_NS + PERIOD_NS / 3, values);
+            int result;
+            while ((result = synchronizer.sync()) != InertialSynchronizer.RESULT_NOT_READY) {
+                if (result != InertialSynchronizer.RESULT_SYNCED) {
+                    continue;
+                }
+                long time = synchronizer.getSyncedTimestamp();
+                for (int axis = 0; axis < 3; ++axis) {
+                    double error = synchronizer.getSyncedValues()[3 + axis] - signal(time, axis);
+                    squaredError += error * error;
+                }
+                ++synced;
+            }
+        }
+        assertTrue(synced > numSamples - 10);
+        return Math.sqrt(squaredError / (3 * synced));
+    }
+
+    @Test
+    public void smootherInterpolatorsTrackTheSignalCloser() {
+        double hold = rmsError(new HoldLastInterpolator(), 2000);
+        double linear = rmsError(new LinearInterpolator(), 2000);
+        double cubic = rmsError(new CubicHermiteInterpolator(), 2000);
+        // a hold lags by a third of a period on average, 3 Hz moves about 0.03 in that time
+        assertTrue("hold " + hold, hold > 0.02 && hold < 0.05);
+        assertTrue("linear " + linear, linear < hold / 10);
+        assertTrue("cubic " + cubic + " linear " + linear, cubic < linear / 2);
+    }
+
+    @Test
+    public void interpolatorsReproduceALine() {
+        SensorRingBuffer samples = new SensorRingBuffer(8, 1);
+        float[] value = new float[1];
+        long[] times = {0, 900, 2100, 3000};
+        for (long time : times) {
+            value[0] = 2f * time;
+            samples.add(time, value);
+        }
+        float[] result = new float[1];
+        new LinearInterpolator().interpolate(samples, 1, 1500, result, 0);
+        assertEquals(3000f, result[0], 1e-3f);
+        new CubicHermiteInterpolator().interpolate(samples, 1, 1500, result, 0);
+        assertEquals(3000f, result[0], 1e-3f);
+        // the first sample has no history
+        new CubicHermiteInterpolator().interpolate(samples, 0, 300, result, 0);
+        assertEquals(600f, result[0], 1e-3f);
+        new HoldLastInterpolator().interpolate(samples, 1, 1500, result, 0);
+        assertEquals(1800f, result[0], 0f);
+    }
+}
@@ -0,0 +1,75 @@
+package edu.osu.pcv.marslogger.imu;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class SyncedSampleQueueTest {
+    // checks that samples arrive complete and in order
+    private static class CheckingSink implements InertialSink {
+        long mExpected;
+        boolean mClosed;
+
+        @Override
+        public void write(long timestamp, float[] values, int offset) {
+            assertEquals(mExpected, timestamp);
+            assertEquals((float) mExpected, values[offset], 0f);
+            assertEquals(-(float) mExpected, values[offset + 1], 0f);
+            ++mExpected;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            mClosed = true;
+        }
+    }
+
+    @Test
+    public void rejectsSamplesWhenFull() throws IOException {
+        SyncedSampleQueue queue = new SyncedSampleQueue(4, 2);
+        float[] values = new float[2];
+        for (int i = 0; i < 6; ++i) {
+            values[0] = i;
+            values[1] = -i;
+            assertEquals(i < 4, queue.offer(i, values, 0));
+        }
+        assertEquals(4, queue.getHighWaterMark());
+        assertEquals(2, queue.getOverflowCount());
+
+        CheckingSink sink = new CheckingSink();
+        assertEquals(3, queue.drainTo(sink, 3));
+        assertEquals(1, queue.drainTo(sink, 3));
+        assertEquals(0, queue.drainTo(sink, 3));
+        assertEquals(4, sink.mExpected);
+    }
+
+    @Test
+    public void writerReceivesEverySampleFromAnotherThread() {
+        final int numSamples = 200000;
+        final SyncedSampleQueue queue = new SyncedSampleQueue(64, 2);
+        CheckingSink sink = new CheckingSink();
+        InertialWriter writer = new InertialWriter(queue, sink);
+        writer.start();
+
+        float[] values = new float[2];
+        for (int i = 0; i < numSamples; ++i) {
+            values[0] = i;
+            values[1] = -i;
+            while (!queue.offer(i, values, 0)) {
+                Thread.yield();
+            }
+        }
+        writer.stop();
+
+        assertEquals(numSamples, sink.mExpected);
+        assertTrue(sink.mClosed);
+        assertEquals(0, writer.getWriteErrorCount());
+        assertTrue(queue.getHighWaterMark() <= queue.capacity());
+    }
+}
@@ -0,0 +1,85 @@
+package edu.osu.pcv.marslogger.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CsvLineEncoderTest {
+    private final ByteArrayOutputStream mOutput = new ByteArrayOutputStream();
+    // a small buffer so that lines straddle block flushes
+    private final CsvLineEncoder mEncoder = new CsvLineEncoder(Channels.newChannel(mOutput), 64);
+
+    private String text() throws IOException {
+        mEncoder.flush();
+        String text = mOutput.toString("US-ASCII");
+        mOutput.reset();
+        return text;
+    }
+
+    @Test
+    public void writesIntegers() throws IOException {
+        mEncoder.append(0L).delimiter().append(-7).delimiter().append(1234567890123L)
+                .delimiter().append(Long.MAX_VALUE).delimiter().append(Long.MIN_VALUE)
+                .delimiter().append(Integer.MIN_VALUE).endLine();
+        assertEquals("0,-7,1234567890123,9223372036854775807,-9223372036854775808,"
+                + "-2147483648\n", text());
+    }
+
+    @Test
+    public void writesNullForMissingBoxedValues() throws IOException {
+        mEncoder.append((Long) null).delimiter().append(Integer.valueOf(3)).delimiter()
+                .append((Float) null).delimiter().append(Float.valueOf(1.5f)).endLine();
+        assertEquals("null,3,null,1.5\n", text());
+    }
+
+    @Test
+    public void writesShortestFloats() throws IOException {
+        float[] values = {1.0f, -0.5f, 9.81f, 0.1f, 100f, 1.0e-4f, 123456.7f, 0f, -0f,
+                3.4028235e38f, Float.NaN};
+        for (float value : values) {
+            mEncoder.append(value).delimiter();
+        }
+        assertEquals("1.0,-0.5,9.81,0.1,100.0,0.0001,123456.7,0.0,-0.0,3.4028235E38,NaN,",
+                text());
+    }
+
+    @Test
+    public void shortestFloatsRoundTrip() throws IOException {
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; ++i) {
+            float value = i % 2 == 0 ? (random.nextFloat() - 0.5f) * 40f :
+                    Float.intBitsToFloat(random.nextInt());
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            mEncoder.append(value);
+            String text = text();
+            assertEquals(text, value, Float.parseFloat(text), 0f);
+        }
+    }
+
+    @Test
+    public void writesFixedFloats() throws IOException {
+        mEncoder.appendFixed(3.14159f, 3).delimiter().appendFixed(-0.0004f, 3).delimiter()
+                .appendFixed(2.5f, 0).delimiter().appendFixed(-1.25f, 1).delimiter()
+                .appendFixed(7f, 2).endLine();
+        assertEquals("3.142,0.000,3,-1.3,7.00\n", text());
+    }
+
+    @Test
+    public void writesLongLinesAcrossBlocks() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            mEncoder.append(i * 1000003L).delimiter();
+            expected.append(i * 1000003L).append(',');
+        }
+        mEncoder.appendAscii(expected.toString()).endLine();
+        expected.append(expected).append('\n');
+        assertEquals(expected.toString(), text());
+    }
+}
@@ -0,0 +1,65 @@
+package edu.osu.pcv.marslogger.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongIntHashMapTest {
+    @Test
+    public void putGetRemove() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        assertEquals(-1, map.get(7, -1));
+        map.put(7, 1);
+        map.put(-3, 2);
+        map.put(7, 3);
+        assertEquals(2, map.size());
+        assertEquals(3, map.get(7, -1));
+        assertEquals(2, map.get(-3, -1));
+        assertTrue(map.remove(7));
+        assertFalse(map.remove(7));
+        assertFalse(map.containsKey(7));
+        assertEquals(1, map.size());
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(-3));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsEntriesBeyondCapacity() {
+        LongIntHashMap map = new LongIntHashMap(2);
+        map.put(1, 1);
+        map.put(2, 2);
+        map.put(3, 3);
+    }
+
+    @Test
+    public void matchesHashMapUnderChurn() {
+        // a sliding window of timestamps, as the frame join keeps
+        Random random = new Random(24);
+        LongIntHashMap map = new LongIntHashMap(64);
+        Map<Long, Integer> expected = new HashMap<>();
+        long[] window = new long[64];
+        for (int i = 0; i < 100000; ++i) {
+            int slot = i % window.length;
+            if (i >= window.length) {
+                assertEquals(expected.remove(window[slot]) != null, map.remove(window[slot]));
+            }
+            long key = i * 33333L + random.nextInt(3) * 64L;
+            window[slot] = key;
+            if (!expected.containsKey(key)) {
+                expected.put(key, i);
+                map.put(key, i);
+            } else {
+                window[slot] = Long.MIN_VALUE;
+            }
+            long probe = key - random.nextInt(64) * 33333L;
+            Integer value = expected.get(probe);
+            assertEquals(value == null ? -1 : value, map.get(probe, -1));
+            assertEquals(expected.size(), map.size());
+        }
+    }
+}
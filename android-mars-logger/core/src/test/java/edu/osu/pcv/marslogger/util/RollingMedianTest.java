@@ -0,0 +1,58 @@
+package edu.osu.pcv.marslogger.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RollingMedianTest {
+    @Test
+    public void fillingWindow() {
+        RollingMedian median = new RollingMedian(5);
+        assertEquals(0, median.size());
+        median.add(30);
+        assertEquals(30, median.getMedian());
+        median.add(10);
+        assertEquals(10, median.getMedian());
+        median.add(20);
+        assertEquals(20, median.getMedian());
+        median.add(20);
+        assertEquals(20, median.getMedian());
+        median.add(-5);
+        assertEquals(20, median.getMedian());
+        assertEquals(5, median.size());
+        // drops 30
+        median.add(0);
+        assertEquals(10, median.getMedian());
+        assertEquals(5, median.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void emptyHasNoMedian() {
+        RollingMedian median = new RollingMedian(3);
+        median.add(1);
+        median.clear();
+        median.getMedian();
+    }
+
+    @Test
+    public void matchesSortedWindow() {
+        Random random = new Random(20);
+        for (int window = 1; window <= 16; ++window) {
+            RollingMedian median = new RollingMedian(window);
+            long[] values = new long[500];
+            for (int i = 0; i < values.length; ++i) {
+                // few distinct values so that ties are common
+                values[i] = random.nextInt(window + 3) * 1000000L;
+                median.add(values[i]);
+                int from = Math.max(0, i + 1 - window);
+                long[] sorted = Arrays.copyOfRange(values, from, i + 1);
+                Arrays.sort(sorted);
+                assertEquals("window " + window + " at " + i,
+                        sorted[(sorted.length - 1) / 2], median.getMedian());
+            }
+        }
+    }
+}